@@ -0,0 +1,47 @@
+import java.util.Random;
+
+// Кошельки для бенчмарков: categories категорий с бюджетами и transactions операций за последний
+// год, каждая пятая операция — доход. Генератор с постоянным зерном, поэтому данные одинаковы от
+// запуска к запуску и результаты можно сравнивать.
+final class BenchmarkWallets {
+  private static final long SEED = 42;
+  private static final int DAYS = 365;
+  private static final int MONTHS = 12;
+  // Наибольшая сумма операции в целых единицах; в кошелёк суммы попадают в копейках
+  private static final int MAX_SUM = 2000;
+
+  private BenchmarkWallets() {}
+
+  static Wallet create(int transactions, int categories) {
+    Wallet wallet = new Wallet();
+    // Бюджет — около среднего расхода категории за месяц, так что часть бюджетов превышена
+    long budget = Money.ofUnits(Math.max(1, transactions / categories / MONTHS * MAX_SUM / 2));
+    for (int i = 0; i < categories; i++) {
+      wallet.addCategory(categoryName(i));
+      wallet.saveCategoryBudget(categoryName(i), budget);
+    }
+
+    Random random = new Random(SEED);
+    int today = (int) wallet.getCurrentDate().toEpochDay();
+    TransactionBatch batch = new TransactionBatch();
+    for (int i = 0; i < transactions; i++) {
+      TransactionType type =
+          random.nextInt(5) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+      batch.add(
+          Money.ofUnits(1 + random.nextInt(MAX_SUM)),
+          random.nextInt(categories),
+          type,
+          today - random.nextInt(DAYS));
+      if (batch.isFull()) {
+        wallet.addTransactions(batch);
+        batch.clear();
+      }
+    }
+    wallet.addTransactions(batch);
+    return wallet;
+  }
+
+  static String categoryName(int index) {
+    return "Категория " + index;
+  }
+}
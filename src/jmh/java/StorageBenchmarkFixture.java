@@ -0,0 +1,33 @@
+import finflow.jmh.StorageFixture;
+import java.io.Writer;
+import java.nio.file.Path;
+
+public class StorageBenchmarkFixture implements StorageFixture {
+  private static final String LOGIN = "bench";
+
+  private Path dataDir;
+  private StorageFormat format;
+  private final User user = new User(LOGIN);
+
+  @Override
+  public void build(Path dataDir, String format, int transactions, int categories) {
+    this.dataDir = dataDir;
+    this.format = StorageFormat.valueOf(format);
+    user.getWallet().copyFrom(BenchmarkWallets.create(transactions, categories));
+  }
+
+  // Без журнала кошелёк сохраняется целым снимком, как в пакетном режиме. Загрузка ждёт фоновой
+  // записи снимка, поэтому в замер входят и сохранение, и чтение
+  @Override
+  public long saveAndLoad() {
+    FileService fileService =
+        new FileService(dataDir, CheckpointPolicy.fromSystemProperties(), format);
+    fileService.setOutput(new Output(Writer.nullWriter(), 0));
+    fileService.setJournalEnabled(false);
+    fileService.saveCurrentWallet(user);
+    Wallet loaded = new Wallet();
+    fileService.loadWallet(LOGIN, loaded);
+    fileService.shutdown();
+    return loaded.getVersion();
+  }
+}
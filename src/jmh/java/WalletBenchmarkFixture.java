@@ -0,0 +1,101 @@
+import finflow.jmh.WalletFixture;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class WalletBenchmarkFixture implements WalletFixture {
+  private Wallet wallet;
+  private BudgetAlerts alerts;
+  private String[] names;
+  private LocalDate today;
+  private YearMonth month;
+  private ParallelAggregator aggregator;
+  // Собственный пул при threads > 1; общий пул не закрывается
+  private ForkJoinPool pool;
+  // Отчёт в основной валюте: курсы не нужны
+  private final FxRates rates = new FxRates(List.of());
+
+  @Override
+  public void build(int transactions, int categories) {
+    wallet = BenchmarkWallets.create(transactions, categories);
+    alerts = new BudgetAlerts(wallet, 80, 100, 120);
+    wallet.addListener(alerts);
+    names = new String[categories];
+    for (int i = 0; i < categories; i++) names[i] = BenchmarkWallets.categoryName(i);
+    today = wallet.getCurrentDate();
+    month = YearMonth.from(today);
+  }
+
+  @Override
+  public long totalIncomes() {
+    return wallet.getTotalIncomes();
+  }
+
+  @Override
+  public long totalExpenses() {
+    return wallet.getTotalExpenses();
+  }
+
+  @Override
+  public long expensesByCategory(int category) {
+    return wallet.getExpensesByCategory(names[category]);
+  }
+
+  @Override
+  public long monthExpensesByCategory(int category) {
+    return wallet.getExpensesByCategory(names[category], month);
+  }
+
+  @Override
+  public long lastDaysExpenses(int days) {
+    return wallet.getTotalExpenses(today.minusDays(days - 1), today);
+  }
+
+  @Override
+  public Object categorySummaries() {
+    return wallet.getCategorySummaries();
+  }
+
+  @Override
+  public void setParallelism(int threads) {
+    shutdown();
+    if (threads == 1) {
+      aggregator = new ParallelAggregator(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+    } else {
+      pool = new ForkJoinPool(threads);
+      aggregator = new ParallelAggregator(pool, 0);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    if (pool == null) return;
+    pool.shutdown();
+    pool = null;
+  }
+
+  @Override
+  public long aggregateLastDays(int days) {
+    int from = (int) today.minusDays(days - 1).toEpochDay();
+    return wallet
+        .aggregate((sum, categoryId, type, day) -> day >= from, aggregator)
+        .getTotalExpenses();
+  }
+
+  // Как команда addexp: расход и оповещения BudgetAlerts о пройденных порогах бюджета и баланса
+  @Override
+  public int addExpenseWithBudgetCheck(int category, long sum) {
+    wallet.addExpenseTransaction(sum, names[category], today);
+    return alerts.takeAlerts().size();
+  }
+
+  @Override
+  public void writeReport(Writer out) {
+    PrintWriter writer = new PrintWriter(out);
+    CsvReport.write(wallet, rates, Currency.BASE, writer);
+    writer.flush();
+  }
+}
@@ -0,0 +1,49 @@
+package finflow.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Команда addexp без ввода-вывода: расход и проверка бюджета категории и общего баланса.
+// Кошелёк пересоздаётся перед каждой итерацией, чтобы его размер не уплывал от заданного
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExpenseBenchmark {
+  // Сумма расхода в копейках (150)
+  private static final long SUM = 15_000;
+
+  @Param({"10000", "100000", "1000000"})
+  int transactions;
+
+  @Param({"10", "100", "1000"})
+  int categories;
+
+  private WalletFixture wallet;
+  private int category;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    wallet = Fixtures.create(WalletFixture.class, "WalletBenchmarkFixture");
+    wallet.build(transactions, categories);
+  }
+
+  @Benchmark
+  public int addExpenseWithBudgetCheck() {
+    category = category + 1 == categories ? 0 : category + 1;
+    return wallet.addExpenseWithBudgetCheck(category, SUM);
+  }
+}
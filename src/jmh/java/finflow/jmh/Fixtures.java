@@ -0,0 +1,17 @@
+package finflow.jmh;
+
+// Классы FinFlow лежат в пакете по умолчанию, а JMH требует, чтобы бенчмарки были в именованном
+// пакете, откуда пакет по умолчанию не виден. Поэтому бенчмарки обращаются к приложению через
+// интерфейсы этого пакета, а их реализации (в пакете по умолчанию) создаются по имени один раз при
+// подготовке замера. Сам замер идёт через обычный вызов интерфейса, который JIT встраивает.
+final class Fixtures {
+  private Fixtures() {}
+
+  static <T> T create(Class<T> type, String implementation) {
+    try {
+      return type.cast(Class.forName(implementation).getDeclaredConstructor().newInstance());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Не удалось создать " + implementation, e);
+    }
+  }
+}
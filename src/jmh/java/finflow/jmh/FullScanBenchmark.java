@@ -0,0 +1,56 @@
+package finflow.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Полный проход по истории с произвольным фильтром (Wallet.aggregate) в пуле из threads потоков;
+// threads = 1 — последовательный проход. Показывает, как отчёт масштабируется по ядрам
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FullScanBenchmark {
+  private static final int LAST_DAYS = 90;
+
+  @Param({"100000", "1000000"})
+  int transactions;
+
+  @Param({"10", "1000"})
+  int categories;
+
+  @Param({"1", "2", "4", "8"})
+  int threads;
+
+  private WalletFixture wallet;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    wallet = Fixtures.create(WalletFixture.class, "WalletBenchmarkFixture");
+    wallet.build(transactions, categories);
+    wallet.setParallelism(threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    wallet.shutdown();
+  }
+
+  @Benchmark
+  public long aggregateLastDays() {
+    return wallet.aggregateLastDays(LAST_DAYS);
+  }
+}
@@ -0,0 +1,44 @@
+package finflow.jmh;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Отчёт stats file без записи на диск: сводка по категориям и форматирование CSV
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReportBenchmark {
+  @Param({"10000", "100000", "1000000"})
+  int transactions;
+
+  @Param({"10", "100", "1000"})
+  int categories;
+
+  private WalletFixture wallet;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    wallet = Fixtures.create(WalletFixture.class, "WalletBenchmarkFixture");
+    wallet.build(transactions, categories);
+  }
+
+  @Benchmark
+  public void csvReport() {
+    wallet.writeReport(Writer.nullWriter());
+  }
+}
@@ -0,0 +1,61 @@
+package finflow.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Сохранение снимка кошелька через FileService и загрузка его обратно, в каждом формате хранения
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+  @Param({"10000", "100000", "1000000"})
+  int transactions;
+
+  @Param({"10", "100", "1000"})
+  int categories;
+
+  @Param({"JSON", "BINARY", "MAPPED"})
+  String format;
+
+  private Path dataDir;
+  private StorageFixture storage;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dataDir = Files.createTempDirectory("finflow-jmh");
+    storage = Fixtures.create(StorageFixture.class, "StorageBenchmarkFixture");
+    storage.build(dataDir, format, transactions, categories);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(dataDir)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+    }
+  }
+
+  @Benchmark
+  public long saveAndLoad() {
+    return storage.saveAndLoad();
+  }
+}
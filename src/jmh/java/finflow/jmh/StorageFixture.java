@@ -0,0 +1,12 @@
+package finflow.jmh;
+
+import java.nio.file.Path;
+
+// Сохранение и загрузка кошелька через FileService (реализация — StorageBenchmarkFixture)
+public interface StorageFixture {
+  void build(Path dataDir, String format, int transactions, int categories);
+
+  // Сохраняет кошелёк, дожидается записи на диск и загружает его заново; возвращает версию
+  // загруженного кошелька
+  long saveAndLoad();
+}
@@ -0,0 +1,77 @@
+package finflow.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Итоговые суммы кошелька: общие, по категории, за текущий месяц и за последние дни
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WalletAggregateBenchmark {
+  private static final int LAST_DAYS = 30;
+
+  @Param({"10000", "100000", "1000000"})
+  int transactions;
+
+  @Param({"10", "100", "1000"})
+  int categories;
+
+  private WalletFixture wallet;
+  private int category;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    wallet = Fixtures.create(WalletFixture.class, "WalletBenchmarkFixture");
+    wallet.build(transactions, categories);
+  }
+
+  @Benchmark
+  public long totalIncomes() {
+    return wallet.totalIncomes();
+  }
+
+  @Benchmark
+  public long totalExpenses() {
+    return wallet.totalExpenses();
+  }
+
+  @Benchmark
+  public long expensesByCategory() {
+    return wallet.expensesByCategory(nextCategory());
+  }
+
+  @Benchmark
+  public long monthExpensesByCategory() {
+    return wallet.monthExpensesByCategory(nextCategory());
+  }
+
+  @Benchmark
+  public long lastDaysExpenses() {
+    return wallet.lastDaysExpenses(LAST_DAYS);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object categorySummaries() {
+    return wallet.categorySummaries();
+  }
+
+  private int nextCategory() {
+    category = category + 1 == categories ? 0 : category + 1;
+    return category;
+  }
+}
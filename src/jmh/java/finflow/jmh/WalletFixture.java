@@ -0,0 +1,36 @@
+package finflow.jmh;
+
+import java.io.Writer;
+
+// Кошелёк из transactions операций по categories категориям (реализация — WalletBenchmarkFixture)
+public interface WalletFixture {
+  void build(int transactions, int categories);
+
+  long totalIncomes();
+
+  long totalExpenses();
+
+  long expensesByCategory(int category);
+
+  long monthExpensesByCategory(int category);
+
+  long lastDaysExpenses(int days);
+
+  Object categorySummaries();
+
+  // Пул для aggregateLastDays; 1 — проход в вызывающем потоке
+  void setParallelism(int threads);
+
+  // Останавливает пул, созданный setParallelism
+  void shutdown();
+
+  // Расходы за последние дни полным проходом по истории с фильтром по дате
+  long aggregateLastDays(int days);
+
+  // Добавляет расход (в копейках) и проверяет бюджеты, как команда addexp; возвращает число
+  // предупреждений
+  int addExpenseWithBudgetCheck(int category, long sum);
+
+  // Отчёт в CSV, как команда stats file
+  void writeReport(Writer out);
+}
@@ -1,34 +1,129 @@
-import java.util.HashMap;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Регистрация, проверка паролей и сессии пользователей. Учётные данные хранятся в UserStore,
+// состояние входа — по токену сессии, а не в одном поле, поэтому один экземпляр обслуживает и
+// консоль, и сервер с любым числом клиентов. Потокобезопасен; кошельки пользователей
+// защищаются их собственными блокировками (User).
 public class AuthService {
-  private final Map<String, User> users = new HashMap<>();
+  static final Duration DEFAULT_SESSION_IDLE =
+      Duration.ofMinutes(Long.getLong("finflow.session.idle.minutes", 30));
 
-  private User currentUser;
+  private static final int TOKEN_BYTES = 16;
+
+  private final UserStore userStore;
+  // Сессия, к которой не обращались дольше этого срока, закрывается; null — сессии бессрочные
+  private final Duration idleTimeout;
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+  // Один пользователь может войти из нескольких сессий одновременно. Множества токенов меняются
+  // только внутри compute по логину
+  private final Map<String, Set<String>> tokensByLogin = new ConcurrentHashMap<>();
+  private final SecureRandom random = new SecureRandom();
+  private volatile Clock clock = Clock.systemUTC();
+
+  public AuthService(UserStore userStore) {
+    this(userStore, null);
+  }
+
+  public AuthService(UserStore userStore, Duration idleTimeout) {
+    this.userStore = userStore;
+    this.idleTimeout = idleTimeout;
+  }
 
   public boolean checkLogin(String login) {
-    return users.containsKey(login);
+    return userStore.contains(login);
   }
 
   public boolean checkPassword(String login, String password) {
-    User user = users.get(login);
-    if (user == null) return false;
-    return user.getPassword().equals(password);
+    return userStore.checkPassword(login, password);
+  }
+
+  // Возвращает false, если логин уже занят
+  public boolean register(String login, String password) {
+    return userStore.register(login, password);
   }
 
-  public void saveUser(User user) {
-    users.put(user.getLogin(), user);
+  public String openSession(User user) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    sessions.put(token, new Session(user, clock.instant()));
+    tokensByLogin.compute(
+        user.getLogin(),
+        (login, tokens) -> {
+          Set<String> updated = tokens == null ? new HashSet<>() : tokens;
+          updated.add(token);
+          return updated;
+        });
+    return token;
   }
 
-  public void logout() {
-    currentUser = null;
+  // Продлевает сессию; для неизвестной или истёкшей сессии возвращает null
+  public User getSessionUser(String token) {
+    Session session = token == null ? null : sessions.get(token);
+    if (session == null) return null;
+    Instant now = clock.instant();
+    if (isExpired(session, now)) {
+      closeSession(token);
+      return null;
+    }
+    session.lastUsed = now;
+    return session.user;
   }
 
-  public void setCurrentUser(String login) {
-    currentUser = users.get(login);
+  // Возвращает пользователя закрытой сессии или null, если сессии с таким токеном нет
+  public User closeSession(String token) {
+    Session session = token == null ? null : sessions.remove(token);
+    if (session == null) return null;
+    tokensByLogin.computeIfPresent(
+        session.user.getLogin(),
+        (login, tokens) -> {
+          tokens.remove(token);
+          return tokens.isEmpty() ? null : tokens;
+        });
+    return session.user;
   }
 
-  public User getCurrentUser() {
-    return currentUser;
+  // Заодно закрывает истёкшие сессии пользователя, чтобы его кошелёк можно было выгрузить
+  public boolean hasSessions(String login) {
+    Instant now = clock.instant();
+    return tokensByLogin.computeIfPresent(
+            login,
+            (key, tokens) -> {
+              tokens.removeIf(
+                  token -> {
+                    Session session = sessions.get(token);
+                    if (session != null && !isExpired(session, now)) return false;
+                    if (session != null) sessions.remove(token, session);
+                    return true;
+                  });
+              return tokens.isEmpty() ? null : tokens;
+            })
+        != null;
+  }
+
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
+  private boolean isExpired(Session session, Instant now) {
+    return idleTimeout != null && session.lastUsed.plus(idleTimeout).isBefore(now);
+  }
+
+  private static final class Session {
+    final User user;
+    volatile Instant lastUsed;
+
+    Session(User user, Instant lastUsed) {
+      this.user = user;
+      this.lastUsed = lastUsed;
+    }
   }
 }
@@ -0,0 +1,7 @@
+// Оповещение о бюджете: расходы категории за месяц превысили threshold процентов бюджета limit,
+// или (category == null) общие расходы amount превысили доходы limit
+public record BudgetAlert(String category, int threshold, long limit, long amount) {
+  public boolean isTotal() {
+    return category == null;
+  }
+}
@@ -0,0 +1,215 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+// Оповещения о бюджетах по событиям кошелька. Для каждой категории хранится, сколько порогов
+// бюджета (в процентах, по умолчанию только 100) уже пройдено расходами текущего месяца, поэтому
+// оповещение появляется один раз — когда операция или новый бюджет переводят категорию через
+// порог, — а не после каждой следующей операции. Отдельное правило следит за общим балансом:
+// расходы превысили доходы. Бюджеты и баланс считаются в основной валюте: итоги месяца в других
+// валютах пересчитываются в неё по текущим курсам, по разу на итог. Пока какого-то курса нет,
+// учитываются только операции в основной валюте, а о недостающем курсе сообщают отчёты.
+//
+// Категории с бюджетом упорядочены по остатку бюджета. Операция переставляет одну категорию —
+// O(log C), а превышенные бюджеты читаются с начала порядка без обхода всех категорий.
+//
+//   -Dfinflow.alerts.thresholds=80,100,120
+public class BudgetAlerts implements WalletListener {
+  public static final String DEFAULT_THRESHOLDS = "100";
+
+  private final Wallet wallet;
+  private final Supplier<FxRates> rates;
+  // Пороги в процентах бюджета, по возрастанию
+  private final int[] thresholds;
+  private final List<BudgetAlert> alerts = new ArrayList<>();
+
+  // По номеру категории: пройдено порогов и остаток бюджета в текущем месяце
+  private int[] levels = new int[0];
+  private long[] remaining = new long[0];
+  private final TreeSet<Integer> byRemaining =
+      new TreeSet<>(
+          Comparator.comparingLong((Integer id) -> remaining[id]).thenComparingInt(id -> id));
+  private boolean overspent;
+
+  // Текущий месяц — дни [monthStart, nextMonthStart); с его сменой уровни считаются заново
+  private int monthStart;
+  private int nextMonthStart;
+
+  public BudgetAlerts(Wallet wallet, int... thresholds) {
+    this(wallet, () -> FxRates.NONE, thresholds);
+  }
+
+  public BudgetAlerts(Wallet wallet, Supplier<FxRates> rates, int... thresholds) {
+    if (thresholds.length == 0) {
+      throw new IllegalArgumentException("Не заданы пороги оповещений о бюджете");
+    }
+    this.wallet = wallet;
+    this.rates = rates;
+    this.thresholds = thresholds.clone();
+    Arrays.sort(this.thresholds);
+    if (this.thresholds[0] <= 0) {
+      throw new IllegalArgumentException("Порог оповещения должен быть больше нуля");
+    }
+    FxRates fx = rates.get();
+    startMonth(fx);
+    overspent = totalExpenses(fx) > totalIncomes(fx);
+  }
+
+  public static BudgetAlerts fromSystemProperties(Wallet wallet, Supplier<FxRates> rates) {
+    String[] values =
+        System.getProperty("finflow.alerts.thresholds", DEFAULT_THRESHOLDS).split(",");
+    int[] thresholds = new int[values.length];
+    for (int i = 0; i < values.length; i++) thresholds[i] = Integer.parseInt(values[i].trim());
+    return new BudgetAlerts(wallet, rates, thresholds);
+  }
+
+  @Override
+  public void onBudgetSaved(Wallet wallet, Category category) {
+    FxRates fx = rates.get();
+    checkMonth(fx);
+    update(category.getId(), fx);
+  }
+
+  @Override
+  public void onTransactionAdded(
+      Wallet wallet, long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    FxRates fx = rates.get();
+    checkMonth(fx);
+    if (type == TransactionType.EXPENSE && isCurrentMonth(day)) update(categoryId, fx);
+    checkBalance(fx);
+  }
+
+  @Override
+  public void onTransactionsAdded(Wallet wallet, TransactionBatch batch) {
+    FxRates fx = rates.get();
+    checkMonth(fx);
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.type(i) == TransactionType.EXPENSE && isCurrentMonth(batch.day(i))) {
+        update(batch.category(i), fx);
+      }
+    }
+    checkBalance(fx);
+  }
+
+  // Оповещения, накопившиеся с прошлого вызова
+  public List<BudgetAlert> takeAlerts() {
+    if (alerts.isEmpty()) return List.of();
+    List<BudgetAlert> taken = List.copyOf(alerts);
+    alerts.clear();
+    return taken;
+  }
+
+  // Превышенные в этом месяце бюджеты, от самого большого перерасхода
+  public List<BudgetAlert> getExceededBudgets() {
+    checkMonth(rates.get());
+    List<BudgetAlert> exceeded = new ArrayList<>();
+    for (int id : byRemaining) {
+      if (remaining[id] >= 0) break;
+      Category category = wallet.getCategory(id);
+      exceeded.add(
+          new BudgetAlert(
+              category.getName(), 100, category.getBudget(), category.getBudget() - remaining[id]));
+    }
+    return exceeded;
+  }
+
+  private void update(int categoryId, FxRates fx) {
+    ensureCapacity(categoryId + 1);
+    Category category = wallet.getCategory(categoryId);
+    long budget = category.getBudget();
+    long spent = spent(categoryId, fx);
+
+    // Остаток — ключ порядка, поэтому категория переставляется вокруг его изменения
+    byRemaining.remove(categoryId);
+    remaining[categoryId] = budget - spent;
+    if (budget > 0) byRemaining.add(categoryId);
+
+    int level = level(budget, spent);
+    // Если пройдено сразу несколько порогов, достаточно сообщить о старшем
+    if (level > levels[categoryId]) {
+      alerts.add(new BudgetAlert(category.getName(), thresholds[level - 1], budget, spent));
+    }
+    levels[categoryId] = level;
+  }
+
+  private void checkBalance(FxRates fx) {
+    long incomes = totalIncomes(fx);
+    long expenses = totalExpenses(fx);
+    boolean now = expenses > incomes;
+    if (now && !overspent) alerts.add(new BudgetAlert(null, 100, incomes, expenses));
+    overspent = now;
+  }
+
+  private long spent(int categoryId, FxRates fx) {
+    try {
+      return wallet.getCurrentMonthExpenses(categoryId, fx);
+    } catch (IllegalStateException | ArithmeticException e) {
+      return wallet.getCurrentMonthTotals().getExpenses(categoryId);
+    }
+  }
+
+  private long totalIncomes(FxRates fx) {
+    try {
+      return wallet.getTotalIncomes(fx, Currency.BASE);
+    } catch (IllegalStateException | ArithmeticException e) {
+      return wallet.getTotalIncomes();
+    }
+  }
+
+  private long totalExpenses(FxRates fx) {
+    try {
+      return wallet.getTotalExpenses(fx, Currency.BASE);
+    } catch (IllegalStateException | ArithmeticException e) {
+      return wallet.getTotalExpenses();
+    }
+  }
+
+  private int level(long budget, long spent) {
+    if (budget <= 0) return 0;
+    int level = 0;
+    while (level < thresholds.length && spent * 100 > budget * thresholds[level]) {
+      level++;
+    }
+    return level;
+  }
+
+  private boolean isCurrentMonth(int day) {
+    return day >= monthStart && day < nextMonthStart;
+  }
+
+  private void checkMonth(FxRates fx) {
+    int today = (int) wallet.getCurrentDate().toEpochDay();
+    if (!isCurrentMonth(today)) startMonth(fx);
+  }
+
+  // Расходы нового месяца начинаются с нуля: уровни пересчитываются без оповещений
+  private void startMonth(FxRates fx) {
+    LocalDate first = wallet.getCurrentDate().withDayOfMonth(1);
+    monthStart = (int) first.toEpochDay();
+    nextMonthStart = (int) first.plusMonths(1).toEpochDay();
+
+    byRemaining.clear();
+    int size = wallet.getCategories().size();
+    levels = new int[size];
+    remaining = new long[size];
+    for (Category category : wallet.getCategories()) {
+      int id = category.getId();
+      long spent = spent(id, fx);
+      remaining[id] = category.getBudget() - spent;
+      levels[id] = level(category.getBudget(), spent);
+      if (category.getBudget() > 0) byRemaining.add(id);
+    }
+  }
+
+  private void ensureCapacity(int size) {
+    if (levels.length < size) {
+      int capacity = Math.max(size, levels.length * 2);
+      levels = Arrays.copyOf(levels, capacity);
+      remaining = Arrays.copyOf(remaining, capacity);
+    }
+  }
+}
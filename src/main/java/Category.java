@@ -1,22 +1,35 @@
 import java.io.Serializable;
 
 public class Category implements Serializable {
+  private final int id;
   private final String name;
-  private int budget = 0;
+  // В копейках
+  private long budget = 0;
 
-  public Category(String name) {
+  public Category(int id, String name) {
+    this.id = id;
     this.name = name;
   }
 
+  public int getId() {
+    return id;
+  }
+
   public String getName() {
     return name;
   }
 
-  public void setBudget(int budget) {
+  public void setBudget(long budget) {
     this.budget = budget;
   }
 
-  public int getBudget() {
+  public long getBudget() {
     return budget;
   }
+
+  Category copy() {
+    Category copy = new Category(id, name);
+    copy.budget = budget;
+    return copy;
+  }
 }
@@ -0,0 +1,54 @@
+import java.io.Serializable;
+import java.util.*;
+
+// Категории кошелька с плотными номерами: номер категории — индекс в byId
+public class CategoryDictionary implements Serializable {
+  private final List<Category> byId = new ArrayList<>();
+  private final Map<String, Category> byName = new LinkedHashMap<>();
+
+  public Category put(String name) {
+    Category existing = byName.get(name);
+    int id = existing == null ? byId.size() : existing.getId();
+    Category category = new Category(id, name);
+    if (existing == null) byId.add(category);
+    else byId.set(id, category);
+    byName.put(name, category);
+    return category;
+  }
+
+  public Category intern(String name) {
+    Category category = byName.get(name);
+    return category == null ? put(name) : category;
+  }
+
+  public Category get(String name) {
+    return byName.get(name);
+  }
+
+  public Category get(int id) {
+    return byId.get(id);
+  }
+
+  public int size() {
+    return byId.size();
+  }
+
+  public Set<String> names() {
+    return byName.keySet();
+  }
+
+  public Collection<Category> all() {
+    return byName.values();
+  }
+
+  // Категории копируются, а не разделяются: снимок кошелька пишется в фоне, пока в исходном
+  // кошельке меняются бюджеты
+  public void copyFrom(CategoryDictionary other) {
+    byId.clear();
+    for (Category category : other.byId) byId.add(category.copy());
+    byName.clear();
+    for (Category category : other.byName.values()) {
+      byName.put(category.getName(), byId.get(category.getId()));
+    }
+  }
+}
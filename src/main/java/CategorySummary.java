@@ -0,0 +1,2 @@
+public record CategorySummary(
+    String name, long income, long expense, long monthExpense, long budget, long remaining) {}
@@ -0,0 +1,49 @@
+// Доходы и расходы по номерам категорий, посчитанные проходом по операциям (ParallelAggregator)
+public class CategoryTotals {
+  private final long[] incomes;
+  private final long[] expenses;
+
+  CategoryTotals(int categories) {
+    incomes = new long[categories];
+    expenses = new long[categories];
+  }
+
+  public long getIncomes(int categoryId) {
+    return incomes[categoryId];
+  }
+
+  public long getExpenses(int categoryId) {
+    return expenses[categoryId];
+  }
+
+  public long getTotalIncomes() {
+    long total = 0;
+    for (long income : incomes) total = Money.add(total, income);
+    return total;
+  }
+
+  public long getTotalExpenses() {
+    long total = 0;
+    for (long expense : expenses) total = Money.add(total, expense);
+    return total;
+  }
+
+  public int getCategoryCount() {
+    return incomes.length;
+  }
+
+  long[] incomes() {
+    return incomes;
+  }
+
+  long[] expenses() {
+    return expenses;
+  }
+
+  void add(CategoryTotals other) {
+    for (int i = 0; i < incomes.length; i++) {
+      incomes[i] = Money.add(incomes[i], other.incomes[i]);
+      expenses[i] = Money.add(expenses[i], other.expenses[i]);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+// Категория без номера (файлы прежнего формата) читается с id = -1. Бюджет записывается
+// десятичным числом (Money), поэтому целые бюджеты старых файлов читаются как есть
+public class CategoryTypeAdapter extends TypeAdapter<Category> {
+  static final String ID = "id";
+  static final String NAME = "name";
+  static final String BUDGET = "budget";
+
+  @Override
+  public void write(JsonWriter out, Category category) throws IOException {
+    if (category == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    out.name(ID).value(category.getId());
+    out.name(NAME).value(category.getName());
+    out.name(BUDGET).value(new BigDecimal(Money.format(category.getBudget())));
+    out.endObject();
+  }
+
+  @Override
+  public Category read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    int id = -1;
+    String name = null;
+    long budget = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case ID -> id = in.nextInt();
+        case NAME -> name = in.nextString();
+        case BUDGET -> budget = Money.parse(in.nextString());
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+
+    Category category = new Category(id, name);
+    category.setBudget(budget);
+    return category;
+  }
+}
@@ -0,0 +1,15 @@
+// Когда журнал кошелька пора свернуть в снимок: по числу записей или по размеру файла
+public record CheckpointPolicy(int maxRecords, long maxBytes) {
+  public static final int DEFAULT_MAX_RECORDS = 10_000;
+  public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+  public static CheckpointPolicy fromSystemProperties() {
+    return new CheckpointPolicy(
+        Integer.getInteger("finflow.checkpoint.records", DEFAULT_MAX_RECORDS),
+        Long.getLong("finflow.checkpoint.bytes", DEFAULT_MAX_BYTES));
+  }
+
+  public boolean isDue(int records, long bytes) {
+    return records >= maxRecords || bytes >= maxBytes;
+  }
+}
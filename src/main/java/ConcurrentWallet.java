@@ -0,0 +1,240 @@
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Кошелёк, в который могут одновременно писать несколько потоков, например вся семья под одним
+// логином. Операции добавляются без общей блокировки: итоги считают LongAdder по категориям,
+// а сами операции копятся в неблокирующих журналах TransactionLog, по одному на группу потоков.
+// В обычный кошелёк (с журналом, итогами по месяцам и индексом по датам) они переносятся пачками
+// при flush() или перед обращением к нему через withWallet().
+//
+// Итоги всегда согласованы между собой: общий доход и расход считаются по тем же счётчикам, что
+// и суммы по категориям, поэтому в снимке общий итог равен сумме по категориям. Операции одного
+// потока попадают в кошелёк в том порядке, в котором добавлялись.
+//
+// Операция, переполняющая общий итог, не принимается, как и в Wallet. Одновременные операции
+// могут пройти проверку вместе; тогда кошелёк отклонит пачку, и она переносится по одной
+// операции: переполняющие отбрасываются и вычитаются из итогов, остальные принимаются, а flush()
+// сообщает об ошибке. Следующий flush() переносит уже только новые операции.
+public class ConcurrentWallet {
+  private static final int STRIPES =
+      Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2);
+
+  public record Totals(
+      long totalIncomes,
+      long totalExpenses,
+      long[] incomesByCategory,
+      long[] expensesByCategory) {}
+
+  private record Counters(LongAdder[] incomes, LongAdder[] expenses) {}
+
+  private final Wallet wallet;
+  // Изменения самого кошелька (категории и перенос операций) выполняются под этой блокировкой
+  private final ReentrantLock walletLock = new ReentrantLock();
+  private final Map<String, Integer> categoryIds = new ConcurrentHashMap<>();
+  // Счётчики заменяются целиком при добавлении категории; номер категории публикуется
+  // в categoryIds только после замены, поэтому писатель всегда находит свой счётчик
+  private volatile Counters counters = new Counters(new LongAdder[0], new LongAdder[0]);
+  private final TransactionLog[] stripes = new TransactionLog[STRIPES];
+  // Общие итоги только для проверки переполнения до того, как операция принята
+  private final LongAdder totalIncomes = new LongAdder();
+  private final LongAdder totalExpenses = new LongAdder();
+
+  public ConcurrentWallet(Wallet wallet) {
+    this.wallet = wallet;
+    for (int i = 0; i < STRIPES; i++) stripes[i] = new TransactionLog();
+    for (Category category : wallet.getCategories()) registerCategory(category);
+  }
+
+  public void addCategory(String categoryName) {
+    walletLock.lock();
+    try {
+      if (categoryIds.containsKey(categoryName)) return;
+      wallet.addCategory(categoryName);
+      registerCategory(wallet.getCategory(categoryName));
+    } finally {
+      walletLock.unlock();
+    }
+  }
+
+  public boolean hasCategory(String categoryName) {
+    return categoryIds.containsKey(categoryName);
+  }
+
+  public void addExpenseTransaction(long sum, String categoryName) {
+    addExpenseTransaction(sum, categoryName, wallet.getCurrentDate());
+  }
+
+  public void addExpenseTransaction(long sum, String categoryName, LocalDate date) {
+    add(sum, categoryName, TransactionType.EXPENSE, date);
+  }
+
+  public void addIncomeTransaction(long sum, String categoryName) {
+    addIncomeTransaction(sum, categoryName, wallet.getCurrentDate());
+  }
+
+  public void addIncomeTransaction(long sum, String categoryName, LocalDate date) {
+    add(sum, categoryName, TransactionType.INCOME, date);
+  }
+
+  public long getTotalIncomes() {
+    return sum(counters.incomes());
+  }
+
+  public long getTotalExpenses() {
+    return sum(counters.expenses());
+  }
+
+  public long getIncomesByCategory(String categoryName) {
+    Integer id = categoryIds.get(categoryName);
+    return id == null ? 0 : counters.incomes()[id].sum();
+  }
+
+  public long getExpensesByCategory(String categoryName) {
+    Integer id = categoryIds.get(categoryName);
+    return id == null ? 0 : counters.expenses()[id].sum();
+  }
+
+  // Каждый счётчик читается один раз, а общие итоги складываются из прочитанных значений
+  public Totals getTotals() {
+    Counters current = counters;
+    long[] incomesByCategory = new long[current.incomes().length];
+    long[] expensesByCategory = new long[current.expenses().length];
+    long totalIncomes = 0;
+    long totalExpenses = 0;
+    for (int i = 0; i < incomesByCategory.length; i++) {
+      incomesByCategory[i] = current.incomes()[i].sum();
+      expensesByCategory[i] = current.expenses()[i].sum();
+      totalIncomes += incomesByCategory[i];
+      totalExpenses += expensesByCategory[i];
+    }
+    return new Totals(totalIncomes, totalExpenses, incomesByCategory, expensesByCategory);
+  }
+
+  // Переносит накопленные операции в кошелёк и возвращает их число. Операции, добавленные во
+  // время переноса, могут попасть и в эту пачку, и в следующую
+  public int flush() {
+    walletLock.lock();
+    try {
+      int moved = 0;
+      TransactionBatch batch = new TransactionBatch();
+      for (TransactionLog stripe : stripes) {
+        int drained;
+        while ((drained = stripe.drainTo(batch)) > 0) {
+          moved += drained;
+          if (batch.isFull()) {
+            transfer(batch);
+            batch.clear();
+          }
+        }
+      }
+      transfer(batch);
+      return moved;
+    } finally {
+      walletLock.unlock();
+    }
+  }
+
+  // Кошелёк проверяет переполнение до изменений и отклоняет пачку целиком. Повторять её
+  // бессмысленно, поэтому операции переносятся по одной, а переполняющие отбрасываются. Если же
+  // кошелёк пачку принял и ошибка случилась позже (например, в журнале на диске), она просто
+  // передаётся вызывающему
+  private void transfer(TransactionBatch batch) {
+    int before = wallet.getTransactionCount();
+    try {
+      wallet.addTransactions(batch);
+    } catch (ArithmeticException e) {
+      if (wallet.getTransactionCount() != before) throw e;
+      transferEach(batch);
+      throw e;
+    }
+  }
+
+  private void transferEach(TransactionBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      int before = wallet.getTransactionCount();
+      try {
+        wallet.addTransaction(
+            batch.sum(i), batch.currency(i), batch.category(i), batch.type(i), batch.day(i));
+      } catch (ArithmeticException e) {
+        if (wallet.getTransactionCount() != before) throw e;
+        discard(batch.sum(i), batch.category(i), batch.type(i));
+      }
+    }
+  }
+
+  // Убирает из итогов операцию, которую кошелёк не принял
+  private void discard(long sum, int categoryId, TransactionType type) {
+    Counters current = counters;
+    if (type == TransactionType.INCOME) {
+      totalIncomes.add(-sum);
+      current.incomes()[categoryId].add(-sum);
+    } else {
+      totalExpenses.add(-sum);
+      current.expenses()[categoryId].add(-sum);
+    }
+  }
+
+  // Отчёты по месяцам и периодам, сохранение и прочие операции с обычным кошельком. Перед
+  // вызовом накопленные операции переносятся в кошелёк
+  public <T> T withWallet(Function<Wallet, T> action) {
+    walletLock.lock();
+    try {
+      flush();
+      return action.apply(wallet);
+    } finally {
+      walletLock.unlock();
+    }
+  }
+
+  private void add(long sum, String categoryName, TransactionType type, LocalDate date) {
+    Integer id = categoryIds.get(categoryName);
+    if (id == null) throw new IllegalArgumentException("Категория не найдена: " + categoryName);
+
+    LongAdder total = type == TransactionType.INCOME ? totalIncomes : totalExpenses;
+    Money.add(total.sum(), sum);
+
+    stripe().add(sum, id, type, (int) date.toEpochDay());
+    total.add(sum);
+    Counters current = counters;
+    (type == TransactionType.INCOME ? current.incomes() : current.expenses())[id].add(sum);
+  }
+
+  // Поток всегда пишет в одну и ту же очередь, так что его операции не перемешиваются
+  private TransactionLog stripe() {
+    int hash = System.identityHashCode(Thread.currentThread());
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  // Вызывается из конструктора или под walletLock
+  private void registerCategory(Category category) {
+    int id = category.getId();
+    LongAdder[] incomes = grow(counters.incomes(), id + 1);
+    LongAdder[] expenses = grow(counters.expenses(), id + 1);
+    long categoryIncomes = wallet.getIncomesByCategory(category.getName());
+    long categoryExpenses = wallet.getExpensesByCategory(category.getName());
+    incomes[id].add(categoryIncomes);
+    expenses[id].add(categoryExpenses);
+    totalIncomes.add(categoryIncomes);
+    totalExpenses.add(categoryExpenses);
+    counters = new Counters(incomes, expenses);
+    categoryIds.put(category.getName(), id);
+  }
+
+  private static LongAdder[] grow(LongAdder[] counters, int size) {
+    if (counters.length >= size) return counters;
+    LongAdder[] grown = new LongAdder[size];
+    System.arraycopy(counters, 0, grown, 0, counters.length);
+    for (int i = counters.length; i < size; i++) grown[i] = new LongAdder();
+    return grown;
+  }
+
+  private static long sum(LongAdder[] adders) {
+    long total = 0;
+    for (LongAdder adder : adders) total += adder.sum();
+    return total;
+  }
+}
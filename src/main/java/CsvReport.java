@@ -0,0 +1,46 @@
+import java.io.PrintWriter;
+import java.util.List;
+
+// Отчёт по кошельку в CSV: строка на категорию и итоги в валюте отчёта. Открывается BOM, чтобы
+// Excel распознал UTF-8.
+public final class CsvReport {
+  private CsvReport() {}
+
+  public static void write(Wallet wallet, FxRates rates, Currency currency, PrintWriter out) {
+    // Пересчёт может не удаться (нет курса), поэтому он делается до вывода
+    List<CategorySummary> summaries = wallet.getCategorySummaries(rates, currency);
+    out.print('\uFEFF');
+
+    out.println("Категория,Доходы,Расходы,Расходы за месяц,Бюджет,Остаток");
+
+    long totalIncomes = 0;
+    long totalExpenses = 0;
+    for (CategorySummary summary : summaries) {
+      totalIncomes += summary.income();
+      totalExpenses += summary.expense();
+
+      out.printf(
+          "%s,%s,%s,%s,%s,%s%n",
+          csv(summary.name()),
+          Money.format(summary.income()),
+          Money.format(summary.expense()),
+          Money.format(summary.monthExpense()),
+          Money.format(summary.budget()),
+          Money.format(summary.remaining()));
+    }
+
+    out.println();
+
+    out.println("Показатель,Значение");
+    out.printf("Общий доход,%s%n", Money.format(totalIncomes));
+    out.printf("Общие расходы,%s%n", Money.format(totalExpenses));
+    out.printf("Баланс,%s%n", Money.format(totalIncomes - totalExpenses));
+    out.printf("Валюта,%s%n", currency);
+  }
+
+  private static String csv(String s) {
+    if (s == null) return "\"\"";
+    String t = s.replace("\"", "\"\"");
+    return "\"" + t + "\"";
+  }
+}
@@ -0,0 +1,40 @@
+import java.util.Locale;
+
+// Валюта операции. Итоги, бюджеты и периоды кошелька считаются в основной валюте BASE; операции
+// в остальных валютах копятся в отдельных итогах (CurrencyTotals) и пересчитываются по курсам
+// FxRates только в отчётах. Номер валюты (ordinal) хранится в файлах, поэтому новые валюты
+// добавляются только в конец.
+public enum Currency {
+  RUB,
+  EUR,
+  USD;
+
+  public static final Currency BASE = RUB;
+
+  private static final Currency[] VALUES = values();
+
+  public static Currency of(int ordinal) {
+    if (ordinal < 0 || ordinal >= VALUES.length) {
+      throw new IllegalArgumentException("Неизвестный номер валюты: " + ordinal);
+    }
+    return VALUES[ordinal];
+  }
+
+  // Код валюты без учёта регистра или null, если такой валюты нет
+  public static Currency find(String code) {
+    for (Currency currency : VALUES) {
+      if (currency.name().equals(code.toUpperCase(Locale.ROOT))) return currency;
+    }
+    return null;
+  }
+
+  public static Currency parse(String code) {
+    Currency currency = find(code);
+    if (currency == null) throw new IllegalArgumentException("Неизвестная валюта: " + code);
+    return currency;
+  }
+
+  public static int count() {
+    return VALUES.length;
+  }
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+
+// Итоги операций в одной валюте (кроме основной, её итоги — в самом Wallet): общие, по номерам
+// категорий и по месяцам, в копейках этой валюты. Обновляются при каждой операции, а в валюту
+// отчёта пересчитываются целиком, по одному разу на итог.
+public class CurrencyTotals {
+  private final Currency currency;
+  private long totalIncomes;
+  private long totalExpenses;
+  private long[] incomesByCategory;
+  private long[] expensesByCategory;
+  private final TreeMap<Integer, MonthlyTotals> months = new TreeMap<>();
+  private MonthlyTotals lastMonth;
+
+  CurrencyTotals(Currency currency) {
+    this(currency, 0, 0, new long[0], new long[0], Collections.emptyList());
+  }
+
+  CurrencyTotals(
+      Currency currency,
+      long totalIncomes,
+      long totalExpenses,
+      long[] incomesByCategory,
+      long[] expensesByCategory,
+      Collection<MonthlyTotals> months) {
+    this.currency = currency;
+    this.totalIncomes = totalIncomes;
+    this.totalExpenses = totalExpenses;
+    this.incomesByCategory = incomesByCategory;
+    this.expensesByCategory = expensesByCategory;
+    months.forEach(totals -> this.months.put(totals.getMonth(), totals));
+  }
+
+  public Currency getCurrency() {
+    return currency;
+  }
+
+  public long getTotalIncomes() {
+    return totalIncomes;
+  }
+
+  public long getTotalExpenses() {
+    return totalExpenses;
+  }
+
+  public long getIncomes(int categoryId) {
+    return categoryId < incomesByCategory.length ? incomesByCategory[categoryId] : 0;
+  }
+
+  public long getExpenses(int categoryId) {
+    return categoryId < expensesByCategory.length ? expensesByCategory[categoryId] : 0;
+  }
+
+  // Итоги месяца (MonthlyTotals.monthOf) или null, если в нём не было операций в этой валюте
+  public MonthlyTotals getMonth(int month) {
+    return months.get(month);
+  }
+
+  public Collection<MonthlyTotals> getMonthlyTotals() {
+    return Collections.unmodifiableCollection(months.values());
+  }
+
+  // Переполнение проверяется до изменений, как и для итогов основной валюты
+  void add(long sum, int categoryId, TransactionType type, int day) {
+    if (type == TransactionType.INCOME) {
+      totalIncomes = Money.add(totalIncomes, sum);
+    } else {
+      totalExpenses = Money.add(totalExpenses, sum);
+    }
+    if (categoryId >= incomesByCategory.length) {
+      int capacity = Math.max(categoryId + 1, incomesByCategory.length * 2);
+      incomesByCategory = Arrays.copyOf(incomesByCategory, capacity);
+      expensesByCategory = Arrays.copyOf(expensesByCategory, capacity);
+    }
+    if (type == TransactionType.INCOME) incomesByCategory[categoryId] += sum;
+    else expensesByCategory[categoryId] += sum;
+
+    int month = MonthlyTotals.monthOf(day);
+    if (lastMonth == null || lastMonth.getMonth() != month) {
+      lastMonth = months.computeIfAbsent(month, MonthlyTotals::new);
+    }
+    lastMonth.add(sum, categoryId, type);
+  }
+
+  CurrencyTotals copy() {
+    return new CurrencyTotals(
+        currency,
+        totalIncomes,
+        totalExpenses,
+        incomesByCategory.clone(),
+        expensesByCategory.clone(),
+        months.values().stream().map(MonthlyTotals::copy).toList());
+  }
+}
@@ -0,0 +1,70 @@
+// Дерево Фенвика по номерам дней: сумма за любой период и добавление операции — O(log N),
+// где N — число дней в покрываемом диапазоне. Когда приходит день вне диапазона, диапазон
+// расширяется вдвое в нужную сторону и дерево перестраивается за O(N).
+public class DayRangeIndex {
+  private static final int INITIAL_DAYS = 64;
+
+  private int firstDay;
+  // tree[0] не используется, день firstDay + i - 1 хранится в позиции i
+  private long[] tree = new long[0];
+
+  public void add(int day, long sum) {
+    ensureCovers(day);
+    for (int i = day - firstDay + 1; i < tree.length; i += i & -i) {
+      tree[i] += sum;
+    }
+  }
+
+  // Сумма за дни с fromDay по toDay включительно
+  public long sum(int fromDay, int toDay) {
+    if (fromDay > toDay) return 0;
+    return prefix(toDay) - prefix(fromDay - 1);
+  }
+
+  // Сумма за все дни не позже day
+  private long prefix(int day) {
+    if (tree.length == 0 || day < firstDay) return 0;
+
+    long sum = 0;
+    for (int i = (int) Math.min((long) day - firstDay + 1, tree.length - 1); i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  private void ensureCovers(int day) {
+    if (tree.length == 0) {
+      firstDay = day;
+      tree = new long[INITIAL_DAYS + 1];
+      return;
+    }
+
+    int capacity = tree.length - 1;
+    int lastDay = firstDay + capacity - 1;
+    if (day >= firstDay && day <= lastDay) return;
+
+    int newCapacity = capacity;
+    while (newCapacity < Math.max(lastDay, day) - Math.min(firstDay, day) + 1) newCapacity *= 2;
+    // При расширении назад сохраняем конец диапазона, вперёд — начало
+    int newFirstDay = day < firstDay ? lastDay - newCapacity + 1 : firstDay;
+
+    long[] values = values();
+    tree = new long[newCapacity + 1];
+    System.arraycopy(values, 1, tree, firstDay - newFirstDay + 1, capacity);
+    firstDay = newFirstDay;
+    for (int i = 1; i < tree.length; i++) {
+      int parent = i + (i & -i);
+      if (parent < tree.length) tree[parent] += tree[i];
+    }
+  }
+
+  // Значения по дням, восстановленные из дерева обратным ходом линейного построения
+  private long[] values() {
+    long[] values = tree.clone();
+    for (int i = values.length - 1; i > 0; i--) {
+      int parent = i + (i & -i);
+      if (parent < values.length) values[parent] -= values[i];
+    }
+    return values;
+  }
+}
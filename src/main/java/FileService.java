@@ -1,22 +1,132 @@
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class FileService {
-  private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+  private static final boolean PRETTY_JSON = Boolean.getBoolean("finflow.json.pretty");
+  private static final String USERS_FILE = "users.db";
+  private static final LatencyTimer SAVE = Metrics.global().timer("file.save");
+  private static final LatencyTimer LOAD = Metrics.global().timer("file.load");
+  private static final LatencyTimer SNAPSHOT_WRITE = Metrics.global().timer("file.snapshotWrite");
+
+  private final Gson gson = createGson();
+  // Сервер открывает и закрывает кошельки разных пользователей параллельно; операции с кошельком
+  // одного пользователя выполняются под его блокировкой
+  private final Map<String, WalletJournal> journals = new ConcurrentHashMap<>();
+  private final Map<String, WalletCheckpointer> checkpointers = new ConcurrentHashMap<>();
+  private final ExecutorService checkpointExecutor =
+      Executors.newSingleThreadExecutor(
+          task -> {
+            Thread thread = new Thread(task, "wallet-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+          });
+  // Последняя фоновая запись каждого пользователя (закрытие журнала или снимок): загрузка кошелька
+  // дожидается её, чтобы прочитать с диска актуальные файлы
+  private final Map<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+  // Версия кошелька, которая уже есть в снимке на диске (для режима без журнала)
+  private final Map<String, Long> savedVersions = new ConcurrentHashMap<>();
+  private final Path dataDir;
+  private final CheckpointPolicy checkpointPolicy;
+  private final StorageFormat storageFormat;
+  // Без журнала изменения копятся в памяти и сохраняются одним снимком (пакетный режим)
+  private boolean journalEnabled = true;
+  private Output out = new Output(System.out, 0);
+  private UserStore userStore;
+  // Журналы и снимки пишутся в фоне; команды только копят изменения в памяти
+  private final WalletWriter writer =
+      new WalletWriter(
+          WalletWriter.DEFAULT_DELAY_MILLIS,
+          WalletWriter.DEFAULT_MAX_PENDING,
+          e -> out.println("Ошибка фоновой записи кошелька: " + e.getMessage()));
+
+  public FileService() {
+    this(
+        Paths.get("data"),
+        CheckpointPolicy.fromSystemProperties(),
+        StorageFormat.fromSystemProperties());
+  }
+
+  public FileService(Path dataDir, CheckpointPolicy checkpointPolicy) {
+    this(dataDir, checkpointPolicy, StorageFormat.JSON);
+  }
+
+  public FileService(Path dataDir, CheckpointPolicy checkpointPolicy, StorageFormat storageFormat) {
+    this.dataDir = dataDir;
+    this.checkpointPolicy = checkpointPolicy;
+    this.storageFormat = storageFormat;
+  }
+
+  public void setOutput(Output out) {
+    this.out = out;
+  }
+
+  public void setJournalEnabled(boolean journalEnabled) {
+    this.journalEnabled = journalEnabled;
+  }
+
+  // Реестр пользователей открывается при первом обращении и закрывается в shutdown()
+  public synchronized UserStore getUserStore() {
+    if (userStore == null) {
+      ensureDataDir();
+      Path file = dataDir().resolve(USERS_FILE);
+      try {
+        userStore = UserStore.open(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Не удалось открыть реестр пользователей: " + file, e);
+      }
+    }
+    return userStore;
+  }
 
   private Path dataDir() {
-    return Paths.get("data");
+    return dataDir;
   }
 
   private Path walletFile(String login) {
-    return dataDir().resolve(login + ".wallet.json");
+    return walletFile(login, storageFormat);
+  }
+
+  private Path walletFile(String login, StorageFormat format) {
+    return userFile(login, format.getExtension());
+  }
+
+  private Path journalFile(String login) {
+    return userFile(login, ".journal");
+  }
+
+  // Файлы пользователя не могут оказаться вне каталога данных, даже если логин попал в реестр
+  // в обход проверки
+  private Path userFile(String login, String extension) {
+    if (!UserStore.isValidLogin(login)) {
+      throw new IllegalArgumentException("Недопустимый логин: " + login);
+    }
+    Path file = dataDir().resolve(login + extension).normalize();
+    if (!file.startsWith(dataDir().normalize())) {
+      throw new IllegalArgumentException("Недопустимый логин: " + login);
+    }
+    return file;
   }
 
   private void ensureDataDir() {
@@ -27,39 +137,225 @@ public class FileService {
     }
   }
 
+  // Не ждёт диска: несохранённые изменения уходят фоновому потоку записи, а если изменений нет,
+  // ничего не делает
   public void saveCurrentWallet(User user) {
     if (user == null) {
-      System.out.println("Данные кошелька не были сохранены, так как пользователь не авторизован.");
+      out.println("Данные кошелька не были сохранены, так как пользователь не авторизован.");
       return;
     }
 
+    long started = LatencyTimer.start();
+    WalletJournal journal = journals.get(user.getLogin());
+    if (journal == null) {
+      saveSnapshot(user);
+    } else if (journal.flushLater()) {
+      out.println("Данные кошелька сохраняются в " + journal.getFile());
+    }
+    SAVE.stop(started, user.getWallet().getTransactionCount());
+  }
+
+  public void loadWallet(String login, Wallet wallet) {
+    long started = LatencyTimer.start();
+    try {
+      openWallet(login, wallet);
+    } finally {
+      LOAD.stop(started, wallet.getTransactionCount());
+    }
+  }
+
+  private void openWallet(String login, Wallet wallet) {
+    closeJournal(login, wallet);
+    // Снимок и сегменты журнала не должны меняться, пока мы их читаем
+    CompletableFuture<Void> write = pendingWrites.remove(login);
+    if (write != null) write.join();
+    WalletCheckpointer previous = checkpointers.remove(login);
+    if (previous != null) previous.awaitPending();
+
+    StorageFormat format = snapshotFormat(login);
+    if (format != null) {
+      Path file = walletFile(login, format);
+      try {
+        Wallet loaded = readSnapshot(file, format);
+        wallet.copyFrom(loaded);
+        out.println("Данные кошелька загружены из " + file.getFileName());
+        if (format != storageFormat) migrateSnapshot(file, walletFile(login), loaded);
+      } catch (IOException | JsonParseException e) {
+        out.println("Ошибка загрузки кошелька: " + e.getMessage());
+        return;
+      }
+    }
+
+    savedVersions.put(login, wallet.getVersion());
+
     ensureDataDir();
-    Path file = walletFile(user.getLogin());
+    Path journalFile = journalFile(login);
     try {
-      String json = gson.toJson(user.getWallet());
-      Files.writeString(
-          file,
-          json,
-          StandardCharsets.UTF_8,
-          StandardOpenOption.CREATE,
-          StandardOpenOption.TRUNCATE_EXISTING);
-      System.out.println("Данные кошелька сохранены в " + file);
+      WalletJournal journal =
+          WalletJournal.open(journalFile, wallet, journalEnabled ? writer : null);
+      if (!journalEnabled) {
+        // Журнал нужен только для того, чтобы применить его записи к снимку
+        journal.close();
+        return;
+      }
+      WalletCheckpointer checkpointer =
+          new WalletCheckpointer(
+              journal,
+              checkpointPolicy,
+              checkpointExecutor,
+              snapshot -> writeSnapshot(walletFile(login), snapshot),
+              e -> out.println("Ошибка сохранения снимка кошелька: " + e.getMessage()));
+      wallet.addListener(journal);
+      wallet.addListener(checkpointer);
+      journals.put(login, journal);
+      checkpointers.put(login, checkpointer);
+      // Длинный журнал, оставшийся с прошлых сессий, сворачиваем сразу
+      checkpointer.checkpointIfDue(wallet);
     } catch (IOException e) {
-      System.out.println("Ошибка сохранения кошелька: " + e.getMessage());
+      out.println("Ошибка чтения журнала кошелька: " + e.getMessage());
     }
   }
 
-  public void loadWallet(String login, Wallet wallet) {
-    Path file = walletFile(login);
-    if (!Files.exists(file)) return;
+  // Отключает журнал от кошелька пользователя, например при выходе из аккаунта
+  public void closeWallet(User user) {
+    if (user != null) closeJournal(user.getLogin(), user.getWallet());
+  }
 
+  // Дописывает всё накопленное и дожидается фоновых контрольных точек; вызывается при выходе из
+  // приложения
+  public void shutdown() {
+    checkpointers.values().forEach(WalletCheckpointer::awaitPending);
+    writer.close();
+    checkpointExecutor.shutdown();
     try {
-      String json = Files.readString(file, StandardCharsets.UTF_8);
-      Wallet loaded = gson.fromJson(json, Wallet.class);
-      wallet.copyFrom(loaded);
-      System.out.println("Данные кошелька загружены из " + file.getFileName());
-    } catch (IOException e) {
-      System.out.println("Ошибка загрузки кошелька: " + e.getMessage());
+      checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    synchronized (this) {
+      if (userStore == null) return;
+      try {
+        userStore.close();
+      } catch (IOException e) {
+        out.println("Ошибка закрытия реестра пользователей: " + e.getMessage());
+      }
+      userStore = null;
+    }
+  }
+
+  private void closeJournal(String login, Wallet wallet) {
+    WalletJournal journal = journals.remove(login);
+    if (journal == null) return;
+
+    wallet.removeListener(journal);
+    WalletCheckpointer checkpointer = checkpointers.get(login);
+    if (checkpointer != null) wallet.removeListener(checkpointer);
+    pendingWrites.put(login, journal.closeLater());
+  }
+
+  private void saveSnapshot(User user) {
+    String login = user.getLogin();
+    long version = user.getWallet().getVersion();
+    Long saved = savedVersions.get(login);
+    if (saved != null && saved == version) return;
+
+    ensureDataDir();
+    Path file = walletFile(login);
+    // Копия колонок — быстрый arraycopy; на диск её пишет фоновый поток
+    Wallet snapshot = new Wallet();
+    snapshot.copyFrom(user.getWallet());
+    savedVersions.put(login, version);
+    pendingWrites.put(
+        login,
+        writer.submit(
+            () -> {
+              try {
+                writeSnapshot(file, snapshot);
+                // Снимок уже включает все записи журнала
+                if (!journalEnabled) deleteJournal(login);
+              } catch (IOException e) {
+                savedVersions.remove(login, version);
+                throw e;
+              }
+            }));
+    out.println("Данные кошелька сохраняются в " + file);
+  }
+
+  private void deleteJournal(String login) throws IOException {
+    Path journalFile = journalFile(login);
+    for (Path segment : WalletJournal.sealedSegments(journalFile)) Files.deleteIfExists(segment);
+    Files.deleteIfExists(journalFile);
+  }
+
+  // Формат имеющегося снимка: сначала настроенный, затем любой другой (нужна миграция)
+  private StorageFormat snapshotFormat(String login) {
+    if (Files.exists(walletFile(login))) return storageFormat;
+    for (StorageFormat format : StorageFormat.values()) {
+      if (Files.exists(walletFile(login, format))) return format;
+    }
+    return null;
+  }
+
+  private void migrateSnapshot(Path source, Path target, Wallet wallet) throws IOException {
+    writeSnapshot(target, wallet);
+    Files.move(
+        source,
+        source.resolveSibling(source.getFileName() + ".migrated"),
+        StandardCopyOption.REPLACE_EXISTING);
+    out.println("Кошелёк переведён в формат " + storageFormat + ": " + target.getFileName());
+  }
+
+  private Wallet readSnapshot(Path file, StorageFormat format) throws IOException {
+    switch (format) {
+      case BINARY -> {
+        try (InputStream in = Files.newInputStream(file)) {
+          return WalletBinaryCodec.read(in);
+        }
+      }
+      case MAPPED -> {
+        return WalletMappedCodec.read(file);
+      }
+      default -> {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            JsonReader json = gson.newJsonReader(reader)) {
+          return gson.fromJson(json, Wallet.class);
+        }
+      }
+    }
+  }
+
+  // Снимок пишется во временный файл и атомарно подменяет прежний
+  private void writeSnapshot(Path file, Wallet wallet) throws IOException {
+    long started = LatencyTimer.start();
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    switch (storageFormat) {
+      case BINARY -> {
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+          WalletBinaryCodec.write(out, wallet);
+        }
+      }
+      case MAPPED -> WalletMappedCodec.write(tmp, wallet);
+      default -> {
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8);
+            JsonWriter json = gson.newJsonWriter(writer)) {
+          gson.toJson(wallet, Wallet.class, json);
+        }
+      }
+    }
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    SNAPSHOT_WRITE.stop(started, wallet.getTransactionCount());
+  }
+
+  private static Gson createGson() {
+    GsonBuilder builder =
+        new GsonBuilder()
+            .registerTypeAdapter(Wallet.class, new WalletTypeAdapter())
+            .registerTypeAdapter(Category.class, new CategoryTypeAdapter())
+            .registerTypeAdapter(Transaction.class, new TransactionTypeAdapter());
+    if (PRETTY_JSON) builder.setPrettyPrinting();
+    return builder.create();
   }
 }
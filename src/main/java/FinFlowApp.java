@@ -4,6 +4,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class FinFlowApp {
@@ -19,64 +20,220 @@ public class FinFlowApp {
   private static final String CMD_STATS_CAT = "stats cat";
   private static final String CMD_STATS_TO_FILE = "stats file";
   private static final String CMD_STATS_CATS = "stats cats";
+  private static final String CMD_STATS_RANGE = "stats range";
+  private static final String CMD_STATS_LAST = "stats last";
+  private static final String CMD_IMPORT = "import";
   private static final String CMD_LOGOUT = "logout";
+  private static final String CMD_METRICS = "metrics";
+  private static final int DEFAULT_ROLLING_DAYS = 30;
+  private static final Set<String> TWO_WORD_COMMANDS =
+      Set.of(CMD_STATS_CAT, CMD_STATS_TO_FILE, CMD_STATS_CATS, CMD_STATS_RANGE, CMD_STATS_LAST);
+  // Таймеры заведены заранее для известных команд: имя команды вводит пользователь, и всё прочее
+  // считается одной метрикой cmd.unknown
+  private static final Map<String, LatencyTimer> COMMAND_TIMERS =
+      commandTimers(
+          CMD_REGISTER,
+          CMD_LOGIN,
+          CMD_HELP,
+          CMD_EXIT,
+          CMD_ADD_CAT,
+          CMD_ADD_INC,
+          CMD_ADD_EXP,
+          CMD_SET_BUDGET,
+          CMD_STATS,
+          CMD_STATS_CAT,
+          CMD_STATS_TO_FILE,
+          CMD_STATS_CATS,
+          CMD_STATS_RANGE,
+          CMD_STATS_LAST,
+          CMD_IMPORT,
+          CMD_LOGOUT,
+          CMD_METRICS);
+  private static final LatencyTimer UNKNOWN_COMMAND_TIMER = Metrics.global().timer("cmd.unknown");
 
   private final Scanner scanner;
   private final AuthService authService;
   private final FileService fileService;
-
+  private final Output out;
+
+  private final Deque<String> pendingArgs = new ArrayDeque<>();
+  // Курсы для отчётов (-Dfinflow.fx.rates) и валюта отчётов (-Dfinflow.report.currency)
+  private final FxRateCache rates = FxRateCache.fromSystemProperties();
+  private final Currency reportCurrency =
+      Currency.parse(System.getProperty("finflow.report.currency", Currency.BASE.name()));
+
+  // Токен сессии AuthService; null, пока пользователь не вошёл
+  private String session;
+  // Оповещения о бюджетах кошелька вошедшего пользователя
+  private BudgetAlerts alerts;
   private boolean running = true;
+  private boolean interactive = true;
+  // Команда введена вместе с аргументами
+  private boolean inlineArgs;
+  // Сколько всего ждали ввода с консоли; вычитается из времени команды
+  private long inputNanos;
 
   public FinFlowApp() {
-    authService = new AuthService();
+    this(new FileService(), new Output(System.out));
+  }
+
+  // Сообщения FileService идут в тот же буфер, чтобы сохранялся порядок вывода
+  public FinFlowApp(FileService fileService, Output out) {
+    authService = new AuthService(fileService.getUserStore());
     scanner = new Scanner(System.in);
-    fileService = new FileService();
+    this.fileService = fileService;
+    this.out = out;
+    fileService.setOutput(out);
   }
 
   public void run() {
     printBanner();
     printGuestMenu();
-    while (running) {
-      System.out.print("> ");
-      String cmd = readLine();
-      if (authService.getCurrentUser() == null) handleGuestCommand(cmd.toLowerCase());
-      else handleUserCommand(cmd.toLowerCase());
-      System.out.println();
+    try {
+      while (running) {
+        out.print("> ");
+        String line = nextConsoleLine();
+        dispatch(line == null ? "" : line.trim());
+        out.println();
+      }
+    } finally {
+      // Ответ на exit печатается уже после последнего ожидания ввода
+      out.flush();
+    }
+  }
+
+  // Пакетный режим: по одной команде в строке, аргументы указываются в той же строке
+  // (addexp Еда 450), приглашения и меню не выводятся. Пустые строки и строки с # пропускаются.
+  // Возвращает число строк, которые не удалось выполнить.
+  public int runBatch(BufferedReader script) throws IOException {
+    interactive = false;
+    int errors = 0;
+    int lineNumber = 0;
+    String line;
+    try {
+      while (running && (line = script.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        try {
+          dispatch(line);
+        } catch (NoSuchElementException e) {
+          errors++;
+          out.println("Строка " + lineNumber + ": команда не выполнена: " + line);
+        } catch (RuntimeException e) {
+          errors++;
+          out.println("Строка " + lineNumber + ": ошибка выполнения: " + e.getMessage());
+        } finally {
+          pendingArgs.clear();
+        }
+      }
+      if (running) doExit();
+    } finally {
+      out.flush();
     }
+    return errors;
+  }
+
+  private void dispatch(String line) {
+    List<String> tokens = tokenize(line);
+    String cmd = tokens.isEmpty() ? "" : tokens.get(0).toLowerCase();
+    int argsFrom = Math.min(1, tokens.size());
+    // Команды из двух слов (stats cat) имеют приоритет над однословными
+    if (tokens.size() > 1 && TWO_WORD_COMMANDS.contains(cmd + " " + tokens.get(1).toLowerCase())) {
+      cmd = cmd + " " + tokens.get(1).toLowerCase();
+      argsFrom = 2;
+    }
+    pendingArgs.clear();
+    pendingArgs.addAll(tokens.subList(argsFrom, tokens.size()));
+    inlineArgs = !pendingArgs.isEmpty();
+
+    long started = LatencyTimer.start();
+    long waited = inputNanos;
+    int sizeBefore = walletSize();
+    try {
+      if (currentUser() == null) handleGuestCommand(cmd);
+      else handleUserCommand(cmd);
+    } finally {
+      // Размер — больший из до и после команды: после login он уже известен, после logout ещё
+      COMMAND_TIMERS
+          .getOrDefault(cmd, UNKNOWN_COMMAND_TIMER)
+          .stop(started + (inputNanos - waited), Math.max(sizeBefore, walletSize()));
+    }
+  }
+
+  private static Map<String, LatencyTimer> commandTimers(String... commands) {
+    Map<String, LatencyTimer> timers = new HashMap<>();
+    for (String command : commands) timers.put(command, Metrics.global().timer("cmd." + command));
+    return timers;
+  }
+
+  private int walletSize() {
+    User user = currentUser();
+    return user == null ? 0 : user.getWallet().getTransactionCount();
+  }
+
+  // Слова разделяются пробелами; значение с пробелами заключается в кавычки: "Коммунальные услуги"
+  private static List<String> tokenize(String line) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder token = new StringBuilder();
+    boolean quoted = false;
+    boolean hasToken = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+        hasToken = true;
+      } else if (Character.isWhitespace(c) && !quoted) {
+        if (hasToken) tokens.add(token.toString());
+        token.setLength(0);
+        hasToken = false;
+      } else {
+        token.append(c);
+        hasToken = true;
+      }
+    }
+    if (hasToken) tokens.add(token.toString());
+    return tokens;
   }
 
   private void printBanner() {
-    System.out.println("=======================================================");
-    System.out.println("FinFlow — приложение для управления личными финансами");
+    out.println("=======================================================");
+    out.println("FinFlow — приложение для управления личными финансами");
     String VERSION = "0.1 (demo UI)";
-    System.out.println("Версия: " + VERSION);
-    System.out.println("=======================================================");
-    System.out.println();
+    out.println("Версия: " + VERSION);
+    out.println("=======================================================");
+    out.println();
   }
 
   private void printGuestMenu() {
-    System.out.println("[Гость] Доступные команды:");
-    System.out.println("  " + CMD_REGISTER + "        — регистрация нового пользователя");
-    System.out.println("  " + CMD_LOGIN + "           — вход по логину и паролю");
-    System.out.println("  " + CMD_HELP + "            — показать подсказку");
-    System.out.println("  " + CMD_EXIT + "            — выйти из приложения");
-    System.out.println();
+    out.println("[Гость] Доступные команды:");
+    out.println("  " + CMD_REGISTER + "        — регистрация нового пользователя");
+    out.println("  " + CMD_LOGIN + "           — вход по логину и паролю");
+    out.println("  " + CMD_METRICS + "         — задержки команд и операций с кошельком");
+    out.println("  " + CMD_HELP + "            — показать подсказку");
+    out.println("  " + CMD_EXIT + "            — выйти из приложения");
+    out.println();
   }
 
   private void printUserMenu() {
-    System.out.println("[" + authService.getCurrentUser() + "] Доступные команды:");
-    System.out.println("  " + CMD_ADD_CAT + "          — добавить категорию расходов/доходов");
-    System.out.println("  " + CMD_SET_BUDGET + "       — установить/изменить бюджет по категории");
-    System.out.println("  " + CMD_ADD_INC + "          — добавить доход");
-    System.out.println("  " + CMD_ADD_EXP + "          — добавить расход");
-    System.out.println("  " + CMD_STATS + "            — итоги по доходам/расходам и бюджетам");
-    System.out.println("  " + CMD_STATS_CAT + "        — итоги по категориям (доходы/расходы)");
-    System.out.println("  " + CMD_STATS_CATS + "       — итоги по выбранным категориям");
-    System.out.println("  " + CMD_STATS_TO_FILE + "    — сохранить отчёт в файл");
-    System.out.println("  " + CMD_LOGOUT + "           — выйти из аккаунта");
-    System.out.println("  " + CMD_HELP + "             — показать подсказку");
-    System.out.println("  " + CMD_EXIT + "             — выйти из приложения");
-    System.out.println();
+    out.println("[" + currentUser() + "] Доступные команды:");
+    out.println("  " + CMD_ADD_CAT + "          — добавить категорию расходов/доходов");
+    out.println("  " + CMD_SET_BUDGET + "       — установить/изменить бюджет по категории");
+    out.println("  " + CMD_ADD_INC + "          — добавить доход");
+    out.println("  " + CMD_ADD_EXP + "          — добавить расход");
+    out.println("  " + CMD_STATS + "            — итоги по доходам/расходам и бюджетам");
+    out.println("  " + CMD_STATS_CAT + "        — итоги по категориям (доходы/расходы)");
+    out.println("  " + CMD_STATS_CATS + "       — итоги по выбранным категориям");
+    out.println("  " + CMD_STATS_RANGE + "      — итоги за период между двумя датами");
+    out.println("  " + CMD_STATS_LAST + "       — итоги за последние N дней");
+    out.println("  " + CMD_STATS_TO_FILE + "    — сохранить отчёт в файл");
+    out.println("  " + CMD_IMPORT + "           — импортировать банковскую выписку (CSV)");
+    out.println("  " + CMD_LOGOUT + "           — выйти из аккаунта");
+    out.println("  " + CMD_METRICS + "          — задержки команд и операций с кошельком");
+    out.println("  " + CMD_HELP + "             — показать подсказку");
+    out.println("  " + CMD_EXIT + "             — выйти из приложения");
+    out.println();
   }
 
   private void handleGuestCommand(String cmd) {
@@ -84,8 +241,9 @@ public class FinFlowApp {
       case CMD_REGISTER -> doRegister();
       case CMD_LOGIN -> doLogin();
       case CMD_HELP -> helpGuest();
+      case CMD_METRICS -> doMetrics();
       case CMD_EXIT -> doExit();
-      default -> System.out.println("Неизвестная команда. Введите '" + CMD_HELP + "' для справки.");
+      default -> out.println("Неизвестная команда. Введите '" + CMD_HELP + "' для справки.");
     }
   }
 
@@ -98,27 +256,72 @@ public class FinFlowApp {
       case CMD_STATS -> doTotalStats();
       case CMD_STATS_CAT -> doCategoryStats();
       case CMD_STATS_CATS -> doStatsSelected();
+      case CMD_STATS_RANGE -> doStatsRange();
+      case CMD_STATS_LAST -> doStatsLastDays();
       case CMD_STATS_TO_FILE -> doStatsToFile();
+      case CMD_IMPORT -> doImport();
       case CMD_LOGOUT -> doLogout();
+      case CMD_METRICS -> doMetrics();
       case CMD_HELP -> printUserMenu();
       case CMD_EXIT -> doExit();
-      default -> System.out.println("Неизвестная команда. Введите '" + CMD_HELP + "' для справки.");
+      default -> out.println("Неизвестная команда. Введите '" + CMD_HELP + "' для справки.");
     }
   }
 
   private String readLine() {
-    String line = scanner.nextLine();
+    if (!pendingArgs.isEmpty()) return pendingArgs.poll();
+    if (!interactive) throw new NoSuchElementException();
+
+    String line = nextConsoleLine();
     return line == null ? "" : line.trim();
   }
 
-  private int parseNumber() {
-    Integer number;
+  // Перед ожиданием ввода пользователь должен увидеть всё, что напечатала команда
+  private String nextConsoleLine() {
+    out.flush();
+    long started = System.nanoTime();
+    try {
+      return scanner.nextLine();
+    } finally {
+      inputNanos += System.nanoTime() - started;
+    }
+  }
+
+  // Необязательное значение: если команда введена с аргументами, недостающие не запрашиваются
+  private String readOptionalLine() {
+    if (!pendingArgs.isEmpty()) return pendingArgs.poll();
+    return interactive && !inlineArgs ? readLine() : "";
+  }
+
+  // Список через запятую: в строке команды занимает все оставшиеся аргументы
+  private String readListLine(boolean required) {
+    if (pendingArgs.isEmpty()) return required ? readLine() : readOptionalLine();
+
+    String list = String.join(" ", pendingArgs);
+    pendingArgs.clear();
+    return list;
+  }
+
+  // Неверное значение из строки команды не заменяется следующими аргументами: в пакетном режиме
+  // команда прерывается, в интерактивном значение запрашивается заново
+  private void rejectInput(String message) {
+    out.println(message);
+    pendingArgs.clear();
+  }
+
+  private void prompt(String text) {
+    if (interactive && pendingArgs.isEmpty()) out.print(text);
+  }
+
+  // Сумма в копейках: "450", "450.50" или "450,50"
+  private long parseNumber() {
+    Long number;
     do {
       String line = readLine();
       try {
-        number = Integer.parseInt(line);
+        number = Money.parse(line);
       } catch (NumberFormatException e) {
-        System.out.println("Введите только число, не используя другие символы: ");
+        rejectInput("Введите только число, не используя другие символы: ");
         number = null;
       }
     } while (number == null);
@@ -126,32 +329,38 @@ public class FinFlowApp {
   }
 
   private void doRegister() {
-    if (authService.getCurrentUser() != null) {
-      System.out.println(
+    if (currentUser() != null) {
+      out.println(
           "Чтобы зарегистрировать нового пользователя необходимо выполнить команду 'logout'");
       return;
     }
 
     String login;
     do {
-      System.out.print("Введите логин (или 'back' для выхода в меню): ");
+      prompt("Введите логин (или 'back' для выхода в меню): ");
       login = readLine();
 
       if (needBack(login)) return;
 
-      if (authService.checkLogin(login)) {
-        System.out.println("Пользователь с таким логином уже существует!");
-        System.out.println("Введите другой логин (или 'back' для выхода в меню):");
+      if (!UserStore.isValidLogin(login)) {
+        rejectInput(UserStore.INVALID_LOGIN + ".");
+        out.println("Введите другой логин (или 'back' для выхода в меню):");
+        login = null;
+      } else if (authService.checkLogin(login)) {
+        rejectInput("Пользователь с таким логином уже существует!");
+        out.println("Введите другой логин (или 'back' для выхода в меню):");
       }
-    } while (authService.checkLogin(login));
+    } while (login == null || authService.checkLogin(login));
 
-    System.out.print("Введите пароль: ");
+    prompt("Введите пароль: ");
     String password = readLine();
-    User user = new User(login, password);
-    authService.saveUser(user);
-    System.out.println(
+    if (!authService.register(login, password)) {
+      out.println("Пользователь с таким логином уже существует!");
+      return;
+    }
+    out.println(
         "Пользователь "
-            + user
+            + login
             + " зарегистрирован. Используйте команду login, чтобы авторизоваться.");
   }
 
@@ -159,141 +368,194 @@ public class FinFlowApp {
     String login;
 
     do {
-      System.out.print("Введите логин (или 'back' для выхода в меню): ");
+      prompt("Введите логин (или 'back' для выхода в меню): ");
       login = readLine();
 
       if (needBack(login)) return;
 
       if (!authService.checkLogin(login))
-        System.out.println("Пользователь с таким логином не найден!");
+        rejectInput("Пользователь с таким логином не найден!");
     } while (!authService.checkLogin(login));
 
-    String password;
+    // Проверка пароля намеренно медленная (PBKDF2), поэтому выполняется один раз на попытку
+    boolean passwordValid;
     do {
-      System.out.print("Введите пароль (или 'back' для выхода в меню): ");
-      password = readLine();
+      prompt("Введите пароль (или 'back' для выхода в меню): ");
+      String password = readLine();
 
       if (needBack(password)) return;
-      if (!authService.checkPassword(login, password)) System.out.println("Пароль введён неверно!");
-
-    } while (!authService.checkPassword(login, password));
-
-    authService.setCurrentUser(login);
+      passwordValid = authService.checkPassword(login, password);
+      if (!passwordValid) rejectInput("Пароль введён неверно!");
+    } while (!passwordValid);
 
-    fileService.loadWallet(login, wallet());
+    User user = new User(login);
+    fileService.loadWallet(login, user.getWallet());
+    session = authService.openSession(user);
+    alerts = BudgetAlerts.fromSystemProperties(user.getWallet(), this::alertRates);
+    user.getWallet().addListener(alerts);
 
-    System.out.println("Добро пожаловать, " + authService.getCurrentUser().getLogin() + "!");
+    out.println("Добро пожаловать, " + currentUser().getLogin() + "!");
   }
 
   private Boolean needBack(String input) {
     Boolean hasBack = input.equalsIgnoreCase("back");
-    if (hasBack) System.out.println("Возврат в главное меню.");
+    if (hasBack) out.println("Возврат в главное меню.");
     return hasBack;
   }
 
   private void doLogout() {
-    fileService.saveCurrentWallet(authService.getCurrentUser());
-    System.out.println("Вы вышли из аккаунта " + authService.getCurrentUser() + ".");
-    authService.logout();
+    closeAlerts();
+    fileService.saveCurrentWallet(currentUser());
+    fileService.closeWallet(currentUser());
+    out.println("Вы вышли из аккаунта " + currentUser() + ".");
+    authService.closeSession(session);
+    session = null;
   }
 
   private void doAddCategory() {
-    System.out.print("Название категории: ");
+    prompt("Название категории: ");
     String categoryName = getCategoryFromUser(false);
 
     if (categoryName == null) return;
 
-    authService.getCurrentUser().getWallet().addCategory(categoryName);
-    System.out.println("Категория " + categoryName + " добавлена.");
+    currentUser().getWallet().addCategory(categoryName);
+    out.println("Категория " + categoryName + " добавлена.");
   }
 
   private void doAddIncome() {
-    System.out.print("Категория: ");
+    prompt("Категория: ");
     String categoryName = getCategoryFromUser(true);
 
     if (categoryName == null) return;
 
-    System.out.print("Сумма: ");
-    int sum = getPositiveNumberFromUser();
+    prompt("Сумма: ");
+    long sum = getPositiveNumberFromUser();
+    Currency currency = getInlineCurrency();
+    LocalDate date = getInlineDate();
+    if (date == null) return;
 
-    wallet().addIncomeTransaction(sum, categoryName);
+    try {
+      wallet().addIncomeTransaction(sum, currency, categoryName, date);
+    } catch (ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
 
-    checkCategoryBudget(categoryName);
-    checkTotalBudget();
+    printAlerts();
 
-    System.out.println("Доход записан.");
+    out.println("Доход записан.");
   }
 
   private void doAddExpense() {
-    System.out.print("Категория: ");
+    prompt("Категория: ");
     String categoryName = getCategoryFromUser(true);
 
     if (categoryName == null) return;
 
-    System.out.print("Сумма: ");
-    int sum = getPositiveNumberFromUser();
+    prompt("Сумма: ");
+    long sum = getPositiveNumberFromUser();
+    Currency currency = getInlineCurrency();
+    LocalDate date = getInlineDate();
+    if (date == null) return;
 
-    wallet().addExpenseTransaction(sum, categoryName);
+    try {
+      wallet().addExpenseTransaction(sum, currency, categoryName, date);
+    } catch (ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
 
-    checkCategoryBudget(categoryName);
-    checkTotalBudget();
+    printAlerts();
 
-    System.out.println("Расход записан.");
+    out.println("Расход записан.");
   }
 
   private void doSetBudget() {
-    System.out.print("Категория: ");
+    prompt("Категория: ");
     String categoryName = getCategoryFromUser(true);
-    System.out.print("Лимит в месяц: ");
-    int budget = getPositiveNumberFromUser();
+    if (categoryName == null) return;
+
+    prompt("Лимит в месяц: ");
+    long budget = getPositiveNumberFromUser();
 
     wallet().saveCategoryBudget(categoryName, budget);
-    System.out.printf("Бюджет по категории '%s' установлен: %s%n", categoryName, budget);
+    out.printf(
+        "Бюджет по категории '%s' установлен: %s%n", categoryName, Money.format(budget));
+    printAlerts();
   }
 
   private void doTotalStats() {
     Wallet wallet = wallet();
-    int totalIncomes = wallet.getTotalIncomes();
-    int totalExpenses = wallet.getTotalExpenses();
-    System.out.println("Общий доход: " + totalIncomes);
-    System.out.println("Общие расходы: " + totalExpenses);
-    System.out.println("Баланс: " + (totalIncomes - totalExpenses));
-    System.out.println();
+    FxRates fx = loadRates();
+    if (fx == null) return;
+
+    long totalIncomes;
+    long totalExpenses;
+    try {
+      totalIncomes = wallet.getTotalIncomes(fx, reportCurrency);
+      totalExpenses = wallet.getTotalExpenses(fx, reportCurrency);
+    } catch (IllegalStateException | ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
+    printReportCurrency(wallet);
+    out.println("Общий доход: " + Money.format(totalIncomes));
+    out.println("Общие расходы: " + Money.format(totalExpenses));
+    out.println("Баланс: " + Money.format(totalIncomes - totalExpenses));
+    out.println();
   }
 
   private void doCategoryStats() {
-    Wallet wallet = wallet();
-    System.out.println("Доходы по категориям:");
-    Set<String> allCategories = wallet.getAllCategories();
-    allCategories.forEach(
-        category ->
-            System.out.println("    " + category + ": " + wallet.getIncomesByCategory(category)));
-    System.out.println();
-
-    System.out.println("Расходы по категориям:");
-    allCategories.forEach(
-        category ->
-            System.out.println("    " + category + ": " + wallet.getExpensesByCategory(category)));
-    System.out.println();
-
-    System.out.println("Бюджет по категориям (расходы):");
-    allCategories.forEach(
-        category -> {
-          int budget = wallet.getBudgetByCategory(category);
-          int remainingBudget = wallet.getRemainingBudget(category);
-          System.out.printf(
-              "    %s: %d. Оставшийся бюджет: %d%n", category, budget, remainingBudget);
-          checkCategoryBudget(category);
-        });
+    FxRates fx = loadRates();
+    if (fx == null) return;
+
+    List<CategorySummary> summaries;
+    List<BudgetAlert> exceeded = new ArrayList<>();
+    try {
+      summaries = wallet().getCategorySummaries(fx, reportCurrency);
+      // Оповещения считаются в основной валюте, а бюджеты выше напечатаны в валюте отчёта
+      for (BudgetAlert alert : alerts.getExceededBudgets()) {
+        exceeded.add(
+            new BudgetAlert(
+                alert.category(),
+                alert.threshold(),
+                fx.convert(alert.limit(), Currency.BASE, reportCurrency),
+                fx.convert(alert.amount(), Currency.BASE, reportCurrency)));
+      }
+    } catch (IllegalStateException | ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
+    printReportCurrency(wallet());
+    out.println("Доходы по категориям:");
+    summaries.forEach(
+        summary -> out.println("    " + summary.name() + ": " + Money.format(summary.income())));
+    out.println();
+
+    out.println("Расходы по категориям:");
+    summaries.forEach(
+        summary -> out.println("    " + summary.name() + ": " + Money.format(summary.expense())));
+    out.println();
+
+    out.println("Бюджет по категориям на текущий месяц (расходы):");
+    summaries.forEach(
+        summary ->
+            out.printf(
+                "    %s: %s. Потрачено в этом месяце: %s. Оставшийся бюджет: %s%n",
+                summary.name(),
+                Money.format(summary.budget()),
+                Money.format(summary.monthExpense()),
+                Money.format(summary.remaining())));
+    exceeded.forEach(this::printAlert);
   }
 
   private void doStatsSelected() {
     String userCategories;
     do {
-      System.out.print("Введите категории через запятую (например: Еда,Такси): ");
-      userCategories = readLine();
+      prompt("Введите категории через запятую (например: Еда,Такси): ");
+      userCategories = readListLine(true);
       if (userCategories.isBlank()) {
-        System.out.println(
+        rejectInput(
             " Поле не может быть пустым. Попробуйте снова (или введите 'back' для выхода в меню).");
       }
     } while (userCategories.isBlank());
@@ -302,48 +564,161 @@ public class FinFlowApp {
     List<String> categories = new ArrayList<>();
     for (String category : parts) {
       String categoryName = category.trim();
-      if (!categoryName.isEmpty() && !wallet().hasCategory(category)) categories.add(categoryName);
-      else System.out.println("Категория " + categoryName + " не найдена.");
+      if (!categoryName.isEmpty() && wallet().hasCategory(categoryName))
+        categories.add(categoryName);
+      else out.println("Категория " + categoryName + " не найдена.");
     }
 
     if (categories.isEmpty()) {
-      System.out.println(
+      out.println(
           " Категории не указаны или указаны не существующие категории. Команда отменена.");
       return;
     }
 
-    System.out.println("Итоги по выбранным категориям:");
-    int totalIncome = 0;
-    int totalExpense = 0;
+    FxRates fx = loadRates();
+    if (fx == null) return;
 
-    for (String category : categories) {
-      int income = wallet().getIncomesByCategory(category);
-      int expense = wallet().getExpensesByCategory(category);
-      int budget = wallet().getBudgetByCategory(category);
-      int remaining = wallet().getRemainingBudget(category);
+    List<CategorySummary> summaries;
+    long totalIncomes;
+    long totalExpenses;
+    try {
+      summaries = wallet().getCategorySummaries(categories, fx, reportCurrency);
+      totalIncomes = wallet().getTotalIncomes(fx, reportCurrency);
+      totalExpenses = wallet().getTotalExpenses(fx, reportCurrency);
+    } catch (IllegalStateException | ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
 
-      totalIncome += income;
-      totalExpense += expense;
+    printReportCurrency(wallet());
+    out.println("Итоги по выбранным категориям:");
+    long totalIncome = 0;
+    long totalExpense = 0;
+
+    for (CategorySummary summary : summaries) {
+      totalIncome += summary.income();
+      totalExpense += summary.expense();
 
-      System.out.printf(
+      out.printf(
           "  • %s:%n"
-              + "      Доходы: %d%n"
-              + "      Расходы: %d%n"
-              + "      Бюджет: %d%n"
-              + "      Остаток бюджета: %d%n",
-          category, income, expense, budget, remaining);
+              + "      Доходы: %s%n"
+              + "      Расходы: %s%n"
+              + "      Бюджет на месяц: %s%n"
+              + "      Расходы в этом месяце: %s%n"
+              + "      Остаток бюджета: %s%n",
+          summary.name(),
+          Money.format(summary.income()),
+          Money.format(summary.expense()),
+          Money.format(summary.budget()),
+          Money.format(summary.monthExpense()),
+          Money.format(summary.remaining()));
+
+      if (summary.remaining() < 0)
+        out.printf(
+            "!!! Внимание, бюджет по категории %s превышен на %s !!!",
+            summary.name(), Money.format(-summary.remaining()));
+    }
+
+    out.println("---------------------------------");
+    out.printf("Суммарные доходы по выбранным категориям: %s%n", Money.format(totalIncome));
+    out.printf("Суммарные расходы по выбранным категориям: %s%n", Money.format(totalExpense));
+    out.printf(
+        "Баланс по выбранным категориям: %s%n", Money.format(totalIncome - totalExpense));
+
+    if (totalExpenses > totalIncomes) printOverspent(totalIncomes, totalExpenses);
+  }
+
+  private void doStatsRange() {
+    prompt("Начало периода (ГГГГ-ММ-ДД): ");
+    LocalDate from = getDateFromUser();
+    if (from == null) return;
+
+    prompt("Конец периода (ГГГГ-ММ-ДД): ");
+    LocalDate to = getDateFromUser();
+    if (to == null) return;
+
+    if (to.isBefore(from)) {
+      out.println("Конец периода раньше начала. Команда отменена.");
+      return;
+    }
 
-      if (remaining < 0)
-        System.out.printf(
-            "!!! Внимание, бюджет по категории %s превышен на %d !!!", category, -remaining);
+    if (!inlineArgs) prompt("Категории через запятую (Enter — все категории): ");
+    String userCategories = readListLine(false);
+    Collection<String> categories = wallet().getAllCategories();
+    if (!userCategories.isBlank()) {
+      categories = new ArrayList<>();
+      for (String category : userCategories.split(",")) {
+        String categoryName = category.trim();
+        if (wallet().hasCategory(categoryName)) categories.add(categoryName);
+        else out.println("Категория " + categoryName + " не найдена.");
+      }
     }
 
-    System.out.println("---------------------------------");
-    System.out.printf("Суммарные доходы по выбранным категориям: %d%n", totalIncome);
-    System.out.printf("Суммарные расходы по выбранным категориям: %d%n", totalExpense);
-    System.out.printf("Баланс по выбранным категориям: %d%n", (totalIncome - totalExpense));
+    printRangeStats(from, to, categories);
+  }
+
+  private void doStatsLastDays() {
+    if (!inlineArgs) prompt("Число дней (Enter — " + DEFAULT_ROLLING_DAYS + "): ");
+    int days = DEFAULT_ROLLING_DAYS;
+    String line = readOptionalLine();
+    if (!line.isBlank()) {
+      try {
+        days = Integer.parseInt(line);
+      } catch (NumberFormatException e) {
+        days = -1;
+      }
+      if (days <= 0) {
+        out.println("Число дней должно быть положительным числом. Команда отменена.");
+        return;
+      }
+    }
 
-    checkTotalBudget();
+    LocalDate to = wallet().getCurrentDate();
+    printRangeStats(to.minusDays(days - 1), to, wallet().getAllCategories());
+  }
+
+  private void printRangeStats(LocalDate from, LocalDate to, Collection<String> categories) {
+    Wallet wallet = wallet();
+    FxRates fx = loadRates();
+    if (fx == null) return;
+
+    // Суммы считаются до печати, чтобы без нужного курса не напечатать отчёт наполовину
+    Map<String, long[]> totals = new LinkedHashMap<>();
+    try {
+      for (String categoryName : categories) {
+        totals.put(
+            categoryName,
+            new long[] {
+              wallet.getIncomesByCategory(categoryName, from, to, fx, reportCurrency),
+              wallet.getExpensesByCategory(categoryName, from, to, fx, reportCurrency)
+            });
+      }
+    } catch (IllegalStateException | ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
+
+    printReportCurrency(wallet);
+    out.printf("Итоги за период %s — %s:%n", from, to);
+    long totalIncome = 0;
+    long totalExpense = 0;
+    for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+      String categoryName = entry.getKey();
+      long income = entry.getValue()[0];
+      long expense = entry.getValue()[1];
+      totalIncome += income;
+      totalExpense += expense;
+      if (income != 0 || expense != 0) {
+        out.printf(
+            "    %s: доходы %s, расходы %s%n",
+            categoryName, Money.format(income), Money.format(expense));
+      }
+    }
+
+    out.println("---------------------------------");
+    out.println("Доходы за период: " + Money.format(totalIncome));
+    out.println("Расходы за период: " + Money.format(totalExpense));
+    out.println("Баланс за период: " + Money.format(totalIncome - totalExpense));
   }
 
   private void doStatsToFile() {
@@ -351,59 +726,74 @@ public class FinFlowApp {
     try {
       Files.createDirectories(reportsPath);
     } catch (IOException e) {
-      System.out.println("Не удалось создать каталог для отчётов: " + reportsPath.toAbsolutePath());
+      out.println("Не удалось создать каталог для отчётов: " + reportsPath.toAbsolutePath());
       return;
     }
 
-    String login = authService.getCurrentUser().getLogin();
+    FxRates fx = loadRates();
+    if (fx == null) return;
+
+    String login = currentUser().getLogin();
     String date = LocalDate.now().toString();
     Path file = reportsPath.resolve(login + "_report_" + date + ".csv");
 
     try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
         PrintWriter out = new PrintWriter(bw)) {
+      CsvReport.write(wallet(), fx, reportCurrency, out);
+    } catch (IOException e) {
+      out.println("Ошибка сохранения отчёта: " + e.getMessage());
+      return;
+    } catch (IllegalStateException | ArithmeticException e) {
+      out.println(e.getMessage());
+      return;
+    }
 
-      out.print('\uFEFF');
-
-      out.println("Категория,Доходы,Расходы,Бюджет,Остаток");
-
-      int totalIncomes = 0;
-      int totalExpenses = 0;
-      for (String c : wallet().getAllCategories()) {
-        int inc = wallet().getIncomesByCategory(c);
-        int exp = wallet().getExpensesByCategory(c);
-        int budget = wallet().getBudgetByCategory(c);
-        int remaining = wallet().getRemainingBudget(c);
-
-        totalIncomes += inc;
-        totalExpenses += exp;
-
-        out.printf("%s,%d,%d,%d,%d%n", csv(c), inc, exp, budget, remaining);
-      }
-
-      out.println();
+    out.println("Отчёт (CSV) сохранён: " + file.toAbsolutePath());
+  }
 
-      out.println("Показатель,Значение");
-      out.printf("Общий доход,%d%n", totalIncomes);
-      out.printf("Общие расходы,%d%n", totalExpenses);
-      out.printf("Баланс,%d%n", (totalIncomes - totalExpenses));
+  private void doImport() {
+    prompt("Путь к файлу выписки (CSV): ");
+    String fileName = readLine();
+    if (needBack(fileName)) return;
 
-    } catch (IOException e) {
-      System.out.println("Ошибка сохранения отчёта: " + e.getMessage());
+    Path file = Paths.get(fileName);
+    if (!Files.isRegularFile(file)) {
+      out.println("Файл не найден: " + file.toAbsolutePath());
       return;
     }
 
-    System.out.println("Отчёт (CSV) сохранён: " + file.toAbsolutePath());
+    ImportResult result;
+    long started = System.nanoTime();
+    try {
+      StatementImporter importer = new StatementImporter(ImportRules.fromSystemProperties());
+      result = importer.importFile(file, wallet());
+    } catch (IOException | IllegalArgumentException e) {
+      out.println("Ошибка импорта выписки: " + e.getMessage());
+      return;
+    }
+    long millis = (System.nanoTime() - started) / 1_000_000;
+    fileService.saveCurrentWallet(currentUser());
+
+    out.printf(
+        "Импортировано операций: %d за %d мс. Создано категорий: %d. Отклонено строк: %d%n",
+        result.imported(), millis, result.createdCategories(), result.rejected());
+    result.rejectedSamples().forEach(sample -> out.println("    " + sample));
+    if (result.rejected() > result.rejectedSamples().size()) {
+      out.printf("    ... и ещё %d%n", result.rejected() - result.rejectedSamples().size());
+    }
+    printAlerts();
   }
 
-  private String csv(String s) {
-    if (s == null) return "\"\"";
-    String t = s.replace("\"", "\"\"");
-    return "\"" + t + "\"";
+  private void doMetrics() {
+    out.print(Metrics.global().getReport());
   }
 
   private void doExit() {
-    fileService.saveCurrentWallet(authService.getCurrentUser());
-    System.out.println("До встречи!");
+    closeAlerts();
+    fileService.saveCurrentWallet(currentUser());
+    fileService.closeWallet(currentUser());
+    fileService.shutdown();
+    out.println("До встречи!");
     running = false;
   }
 
@@ -411,18 +801,22 @@ public class FinFlowApp {
     printGuestMenu();
   }
 
+  private User currentUser() {
+    return authService.getSessionUser(session);
+  }
+
   private Wallet wallet() {
-    return authService.getCurrentUser().getWallet();
+    return currentUser().getWallet();
   }
 
-  public int getPositiveNumberFromUser() {
-    int sum;
+  public long getPositiveNumberFromUser() {
+    long sum;
     do {
       sum = parseNumber();
 
       if (sum <= 0) {
-        System.out.println("Число не может быть отрицательным.");
-        System.out.println("Введите положительное число: ");
+        rejectInput("Число не может быть отрицательным.");
+        out.println("Введите положительное число: ");
       }
     } while (sum <= 0);
     return sum;
@@ -443,14 +837,14 @@ public class FinFlowApp {
       }
 
       if (categoryName.isBlank()) {
-        System.out.println("Название не может быть пустым.");
-        System.out.println("Введите название категории (или 'back' для выхода в меню): ");
+        rejectInput("Название не может быть пустым.");
+        out.println("Введите название категории (или 'back' для выхода в меню): ");
         continue;
       }
 
       if (!wallet.hasCategory(categoryName) && mustExist) {
-        System.out.println("Такой категории не существует.");
-        System.out.println(
+        rejectInput("Такой категории не существует.");
+        out.println(
             "Введите 'back' для выхода в меню или 'addcat', чтобы добавить категорию .");
         categoryName = "";
       }
@@ -459,31 +853,105 @@ public class FinFlowApp {
     return categoryName;
   }
 
-  private void checkCategoryBudget(String categoryName) {
-    Wallet wallet = wallet();
-    int budget = wallet.getBudgetByCategory(categoryName);
-    int remainingBudget = wallet.getRemainingBudget(categoryName);
-    if (budget > 0 && remainingBudget < 0) {
-      System.out.printf(
-          "!!! Внимание, бюджет по категории %s превышен на %d !!!",
-          categoryName, -remainingBudget);
-      System.out.println("Чтобы скорректировать, используйте команду 'setbudget'");
+  // Валюта операции указывается только в строке команды после суммы (addexp Еда 45.50 EUR),
+  // иначе операция в основной валюте
+  private Currency getInlineCurrency() {
+    Currency currency = pendingArgs.isEmpty() ? null : Currency.find(pendingArgs.peek());
+    if (currency == null) return Currency.BASE;
+    pendingArgs.poll();
+    return currency;
+  }
+
+  // Курсы перечитываются, только если файл изменился; null — курсы прочитать не удалось
+  private FxRates loadRates() {
+    try {
+      return rates.get();
+    } catch (IOException | IllegalArgumentException e) {
+      out.println("Не удалось прочитать курсы валют " + rates.getFile() + ": " + e.getMessage());
+      return null;
     }
   }
 
-  private void checkTotalBudget() {
-    Wallet wallet = wallet();
-    int totalIncomes = wallet.getTotalIncomes();
-    int totalExpenses = wallet.getTotalExpenses();
-    if (totalExpenses > totalIncomes) {
-      System.out.println(
-          "!!! Внимание, расходы ("
-              + totalExpenses
-              + ") превысили доходы("
-              + totalIncomes
-              + ") на ("
-              + (totalExpenses - totalIncomes)
-              + ")!!!");
+  // Курсы для оповещений о бюджетах; ошибку чтения файла курсов сообщают отчёты
+  private FxRates alertRates() {
+    try {
+      return rates.get();
+    } catch (IOException | IllegalArgumentException e) {
+      return FxRates.NONE;
+    }
+  }
+
+  private void printReportCurrency(Wallet wallet) {
+    if (reportCurrency != Currency.BASE || !wallet.getCurrencyTotals().isEmpty()) {
+      out.println("Валюта отчёта: " + reportCurrency);
+    }
+  }
+
+  // Дата операции указывается только в строке команды (addexp Еда 450 2024-03-01),
+  // иначе операция датируется сегодняшним днём
+  private LocalDate getInlineDate() {
+    String text = pendingArgs.isEmpty() ? "" : pendingArgs.poll();
+    if (text.isEmpty()) return wallet().getCurrentDate();
+
+    try {
+      return LocalDate.parse(text);
+    } catch (DateTimeParseException e) {
+      out.println("Неверная дата операции: " + text + ". Ожидается ГГГГ-ММ-ДД.");
+      return null;
+    }
+  }
+
+  private LocalDate getDateFromUser() {
+    while (true) {
+      String line = readLine();
+      if (needBack(line)) return null;
+
+      try {
+        return LocalDate.parse(line);
+      } catch (DateTimeParseException e) {
+        rejectInput("Дата должна быть в формате ГГГГ-ММ-ДД.");
+        prompt("Введите дату (или 'back' для выхода в меню): ");
+      }
     }
   }
+
+  private void closeAlerts() {
+    if (alerts == null) return;
+    wallet().removeListener(alerts);
+    alerts = null;
+  }
+
+  // Оповещения появляются, только когда операция переводит бюджет или баланс через порог
+  private void printAlerts() {
+    alerts.takeAlerts().forEach(this::printAlert);
+  }
+
+  private void printAlert(BudgetAlert alert) {
+    if (alert.isTotal()) {
+      printOverspent(alert.limit(), alert.amount());
+    } else if (alert.threshold() == 100) {
+      out.printf(
+          "!!! Внимание, бюджет по категории %s превышен на %s !!!",
+          alert.category(), Money.format(alert.amount() - alert.limit()));
+      out.println("Чтобы скорректировать, используйте команду 'setbudget'");
+    } else {
+      out.printf(
+          "!!! Внимание, расходы по категории %s за месяц превысили %d%% бюджета: %s из %s !!!%n",
+          alert.category(),
+          alert.threshold(),
+          Money.format(alert.amount()),
+          Money.format(alert.limit()));
+    }
+  }
+
+  private void printOverspent(long totalIncomes, long totalExpenses) {
+    out.println(
+        "!!! Внимание, расходы ("
+            + Money.format(totalExpenses)
+            + ") превысили доходы("
+            + Money.format(totalIncomes)
+            + ") на ("
+            + Money.format(totalExpenses - totalIncomes)
+            + ")!!!");
+  }
 }
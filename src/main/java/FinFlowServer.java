@@ -0,0 +1,437 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// HTTP-сервер для нескольких пользователей в одной JVM. Запросы и ответы — JSON, пользователь
+// определяется по токену сессии в заголовке "Authorization: Bearer <токен>". Каждый запрос
+// выполняется в своём виртуальном потоке; кошелёк пользователя защищён его блокировкой, поэтому
+// запросы разных пользователей выполняются параллельно.
+//
+//   POST /register     {"login", "password"}
+//   POST /login        {"login", "password"} -> {"token"}
+//   POST /logout
+//   POST /categories   {"name"}
+//   POST /budgets      {"category", "budget"}
+//   POST /transactions {"type": "income" | "expense", "category", "sum", "currency"?, "date"?}
+//   GET  /stats        итоги в основной валюте и, отдельно, итоги операций в других валютах
+//   GET  /stats/range?from=ГГГГ-ММ-ДД&to=ГГГГ-ММ-ДД
+//
+// Сервер не читает курсы валют: итоги и остатки бюджетов в ответах (в том числе "remaining"
+// после операции) считаются по операциям в основной валюте, итоги других валют — отдельно.
+public class FinFlowServer {
+  static final int DEFAULT_PORT = 8080;
+
+  private static final String GET = "GET";
+  private static final String POST = "POST";
+  private static final String BEARER = "Bearer ";
+  private static final int BACKLOG = 1024;
+  private static final int STOP_DELAY_SECONDS = 1;
+  private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+  static {
+    // HttpServer пишет заголовки и тело ответа отдельно, и с алгоритмом Нейгла второй пакет ждёт
+    // подтверждения первого: на соединениях keep-alive это ~40 мс на каждый запрос
+    if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+      System.setProperty(NO_DELAY_PROPERTY, "true");
+    }
+  }
+
+  private interface Handler {
+    Object handle(HttpExchange exchange) throws IOException;
+  }
+
+  // Ошибка запроса, которая возвращается клиенту с указанным кодом ответа
+  private static class ApiException extends RuntimeException {
+    private final int status;
+
+    ApiException(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final boolean virtualThreads;
+  private final AuthService authService;
+  private final FileService fileService;
+  private final WalletCache wallets;
+  private final Gson gson = new Gson();
+
+  public FinFlowServer(InetSocketAddress address, AuthService authService, FileService fileService)
+      throws IOException {
+    this.authService = authService;
+    this.fileService = fileService;
+    wallets = new WalletCache(fileService, authService::hasSessions, WalletCache.DEFAULT_CAPACITY);
+    ExecutorService virtual = newVirtualThreadExecutor();
+    virtualThreads = virtual != null;
+    executor = virtualThreads ? virtual : newPlatformThreadExecutor();
+
+    server = HttpServer.create(address, BACKLOG);
+    server.setExecutor(executor);
+    route("/register", POST, this::register);
+    route("/login", POST, this::login);
+    route("/logout", POST, this::logout);
+    route("/categories", POST, this::addCategory);
+    route("/budgets", POST, this::setBudget);
+    route("/transactions", POST, this::addTransaction);
+    route("/stats", GET, this::stats);
+    route("/stats/range", GET, this::rangeStats);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public boolean usesVirtualThreads() {
+    return virtualThreads;
+  }
+
+  // Дожидается текущих запросов и сохраняет кошельки, которые остались в памяти
+  public void stop() {
+    server.stop(STOP_DELAY_SECONDS);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    wallets.close();
+    fileService.shutdown();
+  }
+
+  // Виртуальные потоки есть начиная с JDK 21; на более старых JDK возвращает null
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ExecutorService newPlatformThreadExecutor() {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(
+        task -> {
+          Thread thread = new Thread(task, "finflow-http-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private void route(String path, String method, Handler handler) {
+    server.createContext(
+        path,
+        exchange -> {
+          try {
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+              throw new ApiException(404, "Неизвестный адрес");
+            }
+            if (!exchange.getRequestMethod().equals(method)) {
+              exchange.getResponseHeaders().set("Allow", method);
+              throw new ApiException(405, "Метод не поддерживается");
+            }
+            send(exchange, 200, handler.handle(exchange));
+          } catch (ApiException e) {
+            send(exchange, e.status, Map.of("error", e.getMessage()));
+          } catch (ArithmeticException e) {
+            // Переполнение итогов кошелька: операция не добавлена
+            send(exchange, 400, Map.of("error", e.getMessage()));
+          } catch (RuntimeException e) {
+            send(exchange, 500, Map.of("error", "Внутренняя ошибка сервера"));
+          } finally {
+            exchange.close();
+          }
+        });
+  }
+
+  private Object register(HttpExchange exchange) throws IOException {
+    JsonObject body = readBody(exchange);
+    String login = requireString(body, "login");
+    String password = requireString(body, "password");
+    if (!UserStore.isValidLogin(login)) {
+      throw new ApiException(400, UserStore.INVALID_LOGIN);
+    }
+    if (!authService.register(login, password)) {
+      throw new ApiException(409, "Пользователь с таким логином уже существует");
+    }
+    return Map.of("login", login);
+  }
+
+  private Object login(HttpExchange exchange) throws IOException {
+    JsonObject body = readBody(exchange);
+    String login = requireString(body, "login");
+    String password = requireString(body, "password");
+    if (!authService.checkPassword(login, password)) {
+      throw new ApiException(401, "Неверный логин или пароль");
+    }
+
+    // Пока у пользователя открыта хоть одна сессия, его кошелёк не выгружается из кэша
+    String token = wallets.withUser(login, authService::openSession);
+    return Map.of("token", token);
+  }
+
+  private Object logout(HttpExchange exchange) {
+    User user = authorize(exchange);
+    withWallet(
+        user,
+        () -> {
+          authService.closeSession(token(exchange));
+          // Кошелёк остаётся в кэше до вытеснения, но изменения сохраняются сразу
+          if (!authService.hasSessions(user.getLogin()) && user.isDirty()) {
+            fileService.saveCurrentWallet(user);
+            user.markSaved();
+          }
+          return null;
+        });
+    return Map.of();
+  }
+
+  private Object addCategory(HttpExchange exchange) throws IOException {
+    User user = authorize(exchange);
+    String name = requireString(readBody(exchange), "name");
+    return withWallet(
+        user,
+        () -> {
+          if (user.getWallet().hasCategory(name)) {
+            throw new ApiException(409, "Категория уже существует");
+          }
+          user.getWallet().addCategory(name);
+          return Map.of("name", name);
+        });
+  }
+
+  private Object setBudget(HttpExchange exchange) throws IOException {
+    User user = authorize(exchange);
+    JsonObject body = readBody(exchange);
+    String category = requireString(body, "category");
+    long budget = requirePositiveSum(body, "budget");
+    return withWallet(
+        user,
+        () -> {
+          requireCategory(user.getWallet(), category);
+          user.getWallet().saveCategoryBudget(category, budget);
+          return Map.of("category", category, "budget", money(budget));
+        });
+  }
+
+  private Object addTransaction(HttpExchange exchange) throws IOException {
+    User user = authorize(exchange);
+    JsonObject body = readBody(exchange);
+    String type = requireString(body, "type");
+    String category = requireString(body, "category");
+    long sum = requirePositiveSum(body, "sum");
+    Currency currency = parseCurrency(body.get("currency"));
+    JsonElement date = body.get("date");
+    LocalDate day = date == null || date.isJsonNull() ? null : parseDate(date.getAsString());
+    if (!type.equals("income") && !type.equals("expense")) {
+      throw new ApiException(400, "Тип операции должен быть income или expense");
+    }
+
+    return withWallet(
+        user,
+        () -> {
+          Wallet wallet = user.getWallet();
+          requireCategory(wallet, category);
+          LocalDate transactionDate = day == null ? wallet.getCurrentDate() : day;
+          if (type.equals("income")) {
+            wallet.addIncomeTransaction(sum, currency, category, transactionDate);
+          } else {
+            wallet.addExpenseTransaction(sum, currency, category, transactionDate);
+          }
+          return Map.of("remaining", money(wallet.getRemainingBudget(category)));
+        });
+  }
+
+  private Object stats(HttpExchange exchange) {
+    User user = authorize(exchange);
+    return withWallet(
+        user,
+        () -> {
+          Wallet wallet = user.getWallet();
+          Map<String, Object> stats = new LinkedHashMap<>();
+          stats.put("totalIncomes", money(wallet.getTotalIncomes()));
+          stats.put("totalExpenses", money(wallet.getTotalExpenses()));
+          stats.put("balance", money(wallet.getTotalIncomes() - wallet.getTotalExpenses()));
+          stats.put(
+              "categories",
+              wallet.getCategorySummaries().stream().map(FinFlowServer::summary).toList());
+          Map<String, Object> currencies = new LinkedHashMap<>();
+          for (CurrencyTotals totals : wallet.getCurrencyTotals()) {
+            currencies.put(
+                totals.getCurrency().name(),
+                Map.of(
+                    "totalIncomes", money(totals.getTotalIncomes()),
+                    "totalExpenses", money(totals.getTotalExpenses())));
+          }
+          if (!currencies.isEmpty()) stats.put("currencies", currencies);
+          return stats;
+        });
+  }
+
+  private Object rangeStats(HttpExchange exchange) {
+    User user = authorize(exchange);
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    LocalDate from = parseDate(query.get("from"));
+    LocalDate to = parseDate(query.get("to"));
+    if (from.isAfter(to)) throw new ApiException(400, "Начало периода позже его конца");
+
+    return withWallet(
+        user,
+        () -> {
+          Map<String, Object> stats = new LinkedHashMap<>();
+          stats.put("from", from.toString());
+          stats.put("to", to.toString());
+          stats.put("incomes", money(user.getWallet().getTotalIncomes(from, to)));
+          stats.put("expenses", money(user.getWallet().getTotalExpenses(from, to)));
+          return stats;
+        });
+  }
+
+  private interface WalletAction<T> {
+    T run();
+  }
+
+  // ReentrantLock, а не synchronized: ожидание на нём не закрепляет виртуальный поток
+  // за потоком-носителем
+  private static <T> T withWallet(User user, WalletAction<T> action) {
+    ReentrantLock lock = user.getWalletLock();
+    lock.lock();
+    try {
+      return action.run();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private User authorize(HttpExchange exchange) {
+    User user = authService.getSessionUser(token(exchange));
+    if (user == null) throw new ApiException(401, "Требуется вход в систему");
+    return user;
+  }
+
+  private static String token(HttpExchange exchange) {
+    String header = exchange.getRequestHeaders().getFirst("Authorization");
+    if (header == null || !header.startsWith(BEARER)) return null;
+    return header.substring(BEARER.length());
+  }
+
+  private static void requireCategory(Wallet wallet, String category) {
+    if (!wallet.hasCategory(category)) throw new ApiException(404, "Категория не найдена");
+  }
+
+  private static JsonObject readBody(HttpExchange exchange) throws IOException {
+    try (InputStream in = exchange.getRequestBody()) {
+      JsonElement body =
+          JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+      if (!body.isJsonObject()) throw new ApiException(400, "Ожидается JSON-объект");
+      return body.getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new ApiException(400, "Некорректный JSON");
+    }
+  }
+
+  private static String requireString(JsonObject body, String field) {
+    JsonElement value = body.get(field);
+    if (value == null || !value.isJsonPrimitive() || value.getAsString().isBlank()) {
+      throw new ApiException(400, "Не указано поле " + field);
+    }
+    return value.getAsString().trim();
+  }
+
+  // Сумма числом или строкой: 450, 450.5, "450,50"; возвращается в копейках
+  private static long requirePositiveSum(JsonObject body, String field) {
+    JsonElement value = body.get(field);
+    try {
+      if (value != null && value.isJsonPrimitive()) {
+        long number = Money.parse(value.getAsString().trim());
+        if (number > 0) return number;
+      }
+    } catch (NumberFormatException e) {
+      // ниже вернётся ошибка запроса
+    }
+    throw new ApiException(400, "Поле " + field + " должно быть положительным числом");
+  }
+
+  // Суммы в ответах — десятичные числа в единицах, как их печатает Money.format
+  private static JsonElement money(long value) {
+    return JsonParser.parseString(Money.format(value));
+  }
+
+  private static Map<String, Object> summary(CategorySummary summary) {
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("name", summary.name());
+    json.put("income", money(summary.income()));
+    json.put("expense", money(summary.expense()));
+    json.put("monthExpense", money(summary.monthExpense()));
+    json.put("budget", money(summary.budget()));
+    json.put("remaining", money(summary.remaining()));
+    return json;
+  }
+
+  private static Currency parseCurrency(JsonElement currency) {
+    if (currency == null || currency.isJsonNull()) return Currency.BASE;
+    try {
+      return Currency.parse(currency.getAsString());
+    } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+      throw new ApiException(400, "Неизвестная валюта: " + currency);
+    }
+  }
+
+  private static LocalDate parseDate(String text) {
+    if (text == null) throw new ApiException(400, "Не указана дата");
+    try {
+      return LocalDate.parse(text);
+    } catch (DateTimeParseException e) {
+      throw new ApiException(400, "Неверная дата '" + text + "', нужен формат ГГГГ-ММ-ДД");
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query == null) return params;
+    for (String pair : query.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq <= 0) continue;
+      params.put(
+          URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+          URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+    }
+    return params;
+  }
+
+  private void send(HttpExchange exchange, int status, Object body) throws IOException {
+    byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
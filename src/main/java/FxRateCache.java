@@ -0,0 +1,39 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+// Таблица курсов из файла (-Dfinflow.fx.rates, по умолчанию data/fx-rates.txt): читается один
+// раз и перечитывается, только когда файл изменился. Итоги кошелька по валютам от курсов не
+// зависят, поэтому новые курсы попадают в следующий отчёт без прохода по истории.
+public class FxRateCache {
+  private final Path file;
+  private FxRates rates;
+  private FileTime modified;
+  private long size = -1;
+
+  public FxRateCache(Path file) {
+    this.file = file;
+  }
+
+  public static FxRateCache fromSystemProperties() {
+    return new FxRateCache(Path.of(System.getProperty("finflow.fx.rates", "data/fx-rates.txt")));
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public synchronized FxRates get() throws IOException {
+    boolean exists = Files.exists(file);
+    FileTime currentModified = exists ? Files.getLastModifiedTime(file) : null;
+    long currentSize = exists ? Files.size(file) : -1;
+    if (rates == null || !Objects.equals(modified, currentModified) || size != currentSize) {
+      rates = FxRates.load(file);
+      modified = currentModified;
+      size = currentSize;
+    }
+    return rates;
+  }
+}
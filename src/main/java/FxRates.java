@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Курсы валют к основной валюте (Currency.BASE). Файл курсов состоит из строк вида
+// "EUR = 98.45" — сколько единиц основной валюты стоит единица валюты; пустые строки и строки
+// с # пропускаются. Курс основной валюты всегда 1.
+public class FxRates {
+  // Курсов нет: пересчитываются только суммы в основной валюте
+  public static final FxRates NONE = new FxRates(List.of());
+
+  private final BigDecimal[] rates = new BigDecimal[Currency.count()];
+
+  public FxRates(List<String> lines) {
+    rates[Currency.BASE.ordinal()] = BigDecimal.ONE;
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+      int separator = trimmed.indexOf('=');
+      if (separator <= 0) throw new IllegalArgumentException("Неверная строка курсов: " + line);
+      Currency currency = Currency.parse(trimmed.substring(0, separator).trim());
+      BigDecimal rate;
+      try {
+        rate = new BigDecimal(trimmed.substring(separator + 1).trim().replace(',', '.'));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Неверный курс: " + line);
+      }
+      boolean invalid =
+          rate.signum() <= 0 || (currency == Currency.BASE && rate.compareTo(BigDecimal.ONE) != 0);
+      if (invalid) {
+        throw new IllegalArgumentException("Неверный курс: " + line);
+      }
+      rates[currency.ordinal()] = rate;
+    }
+  }
+
+  public static FxRates load(Path file) throws IOException {
+    if (!Files.exists(file)) return new FxRates(List.of());
+    return new FxRates(Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  public boolean hasRate(Currency currency) {
+    return rates[currency.ordinal()] != null;
+  }
+
+  // Сумма в копейках валюты from, пересчитанная в копейки валюты to с банковским округлением
+  public long convert(long sum, Currency from, Currency to) {
+    if (from == to || sum == 0) return sum;
+    return BigDecimal.valueOf(sum)
+        .multiply(rate(from))
+        .divide(rate(to), 0, RoundingMode.HALF_EVEN)
+        .longValueExact();
+  }
+
+  private BigDecimal rate(Currency currency) {
+    BigDecimal rate = rates[currency.ordinal()];
+    if (rate == null) throw new IllegalStateException("Нет курса валюты " + currency);
+    return rate;
+  }
+}
@@ -0,0 +1,5 @@
+import java.util.List;
+
+// Итог импорта выписки: rejectedSamples содержит причины отказа только для первых строк
+public record ImportResult(
+    int imported, int rejected, int createdCategories, List<String> rejectedSamples) {}
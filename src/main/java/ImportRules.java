@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Правила выбора категории по описанию операции из выписки. Файл правил
+// (-Dfinflow.import.rules, по умолчанию data/import-rules.txt) состоит из строк вида
+// "подстрока => Категория"; пустые строки и строки с # пропускаются. Подстрока ищется без учёта
+// регистра, срабатывает первое подходящее правило.
+public class ImportRules {
+  static final String SEPARATOR = "=>";
+
+  private final List<Rule> rules;
+
+  public ImportRules(List<String> lines) {
+    rules = new ArrayList<>();
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+      int separator = trimmed.indexOf(SEPARATOR);
+      if (separator <= 0) throw new IllegalArgumentException("Неверное правило импорта: " + line);
+      String pattern = trimmed.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+      String category = trimmed.substring(separator + SEPARATOR.length()).trim();
+      if (pattern.isEmpty() || category.isEmpty()) {
+        throw new IllegalArgumentException("Неверное правило импорта: " + line);
+      }
+      rules.add(new Rule(pattern, category));
+    }
+  }
+
+  public static ImportRules load(Path file) throws IOException {
+    if (!Files.exists(file)) return new ImportRules(List.of());
+    return new ImportRules(Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  public static ImportRules fromSystemProperties() throws IOException {
+    return load(Path.of(System.getProperty("finflow.import.rules", "data/import-rules.txt")));
+  }
+
+  public int size() {
+    return rules.size();
+  }
+
+  // Категория для описания или null, если ни одно правило не подошло
+  public String match(String description) {
+    if (rules.isEmpty()) return null;
+
+    String text = description.toLowerCase(Locale.ROOT);
+    for (Rule rule : rules) {
+      if (text.contains(rule.pattern())) return rule.category();
+    }
+    return null;
+  }
+
+  private record Rule(String pattern, String category) {}
+}
@@ -0,0 +1,81 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма задержек в наносекундах в духе HdrHistogram: каждая степень двойки делится на
+// SUB_BUCKETS равных частей, так что погрешность значения не больше 1/8 при любом масштабе, а
+// все корзины — один массив фиксированного размера. Запись — несколько атомарных операций без
+// выделения памяти и блокировок, поэтому её можно вызывать из любых потоков на горячем пути.
+public class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  // Значения больше 2^41 нс (около 36 минут) попадают в последнюю корзину
+  private static final int MAX_EXPONENT = 41;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    counts.incrementAndGet(bucket(nanos));
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  // Прибавляет счётчики корзин к counts; так перцентили считаются и по нескольким гистограммам
+  void addCountsTo(long[] target) {
+    for (int i = 0; i < BUCKETS; i++) target[i] += counts.get(i);
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+    count.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  // Верхняя граница корзины, в которую попадает перцентиль percentile (0..100)
+  static long percentile(long[] counts, double percentile) {
+    long total = 0;
+    for (long c : counts) total += c;
+    if (total == 0) return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) return lowerBound(i + 1) - 1;
+    }
+    return lowerBound(counts.length) - 1;
+  }
+
+  static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) return (int) nanos;
+    int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(nanos));
+    if (exponent == MAX_EXPONENT && nanos >= 1L << (MAX_EXPONENT + 1)) return BUCKETS - 1;
+    int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+  }
+}
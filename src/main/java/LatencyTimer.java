@@ -0,0 +1,66 @@
+// Задержки одной операции, разложенные по размеру кошелька (числу операций в нём): медленный
+// вход или отчёт сразу видно вместе с размером кошелька, на котором он случился. Гистограммы всех
+// классов размера создаются заранее, так что запись не выделяет память.
+public class LatencyTimer {
+  static final String[] SIZE_CLASSES = {"<1K", "<10K", "<100K", "<1M", ">=1M"};
+
+  private final String name;
+  private final LatencyHistogram[] histograms = new LatencyHistogram[SIZE_CLASSES.length];
+
+  LatencyTimer(String name) {
+    this.name = name;
+    for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+  }
+
+  // Момент начала для stop(); при выключенных метриках не обращается к часам
+  public static long start() {
+    return Metrics.ENABLED ? System.nanoTime() : 0;
+  }
+
+  public void stop(long started, int walletSize) {
+    if (Metrics.ENABLED) record(System.nanoTime() - started, walletSize);
+  }
+
+  public void record(long nanos, int walletSize) {
+    histograms[sizeClass(walletSize)].record(nanos);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  LatencyHistogram getHistogram(int sizeClass) {
+    return histograms[sizeClass];
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (LatencyHistogram histogram : histograms) count += histogram.getCount();
+    return count;
+  }
+
+  // Перцентиль по всем размерам кошелька, в наносекундах
+  public long percentile(double percentile) {
+    long[] counts = new long[LatencyHistogram.BUCKETS];
+    long max = 0;
+    for (LatencyHistogram histogram : histograms) {
+      histogram.addCountsTo(counts);
+      max = Math.max(max, histogram.getMaxNanos());
+    }
+    return Math.min(max, LatencyHistogram.percentile(counts, percentile));
+  }
+
+  void reset() {
+    for (LatencyHistogram histogram : histograms) histogram.reset();
+  }
+
+  static int sizeClass(int walletSize) {
+    int sizeClass = 0;
+    int limit = 1000;
+    while (walletSize >= limit && sizeClass < SIZE_CLASSES.length - 1) {
+      sizeClass++;
+      limit *= 10;
+    }
+    return sizeClass;
+  }
+}
@@ -1,6 +1,78 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class Main {
-  public static void main(String[] args) {
-    FinFlowApp finFlowApp = new FinFlowApp();
-    finFlowApp.run();
+  private static final String BATCH_OPTION = "--batch";
+  private static final String SERVER_OPTION = "--server";
+  private static final String STDIN = "-";
+  // Регистрация метрик в JMX включается явно: -Dfinflow.metrics.jmx=true
+  private static final String JMX_PROPERTY = "finflow.metrics.jmx";
+
+  public static void main(String[] args) throws IOException {
+    if (Boolean.getBoolean(JMX_PROPERTY)) Metrics.global().registerMBean();
+    if (args.length >= 1 && args.length <= 2 && args[0].equals(SERVER_OPTION)) {
+      // Сообщения сервера выводятся сразу, без буфера
+      Output out = new Output(System.out, 0);
+      runServer(
+          args.length == 2 ? Integer.parseInt(args[1]) : FinFlowServer.DEFAULT_PORT,
+          MetricsDumper.fromSystemProperties(Metrics.global(), out));
+      return;
+    }
+
+    Output out = new Output(System.out);
+    MetricsDumper dumper = MetricsDumper.fromSystemProperties(Metrics.global(), out);
+    int errors = 0;
+    try {
+      if (args.length == 2 && args[0].equals(BATCH_OPTION)) {
+        errors = runBatch(args[1], out);
+      } else {
+        FinFlowApp finFlowApp = new FinFlowApp(new FileService(), out);
+        finFlowApp.run();
+      }
+    } finally {
+      if (dumper != null) dumper.close();
+      out.flush();
+    }
+    if (errors > 0) System.exit(1);
+  }
+
+  // java Main --batch <файл> или --batch - (команды из stdin). Вывод сбрасывается на консоль
+  // в конце сценария, журнал не ведётся: кошелёк сохраняется одним снимком при logout/exit
+  // или в конце сценария.
+  private static int runBatch(String script, Output out) throws IOException {
+    FileService fileService = new FileService();
+    fileService.setJournalEnabled(false);
+    try (BufferedReader reader =
+        script.equals(STDIN)
+            ? new BufferedReader(new InputStreamReader(System.in))
+            : Files.newBufferedReader(Path.of(script))) {
+      return new FinFlowApp(fileService, out).runBatch(reader);
+    }
+  }
+
+  // java Main --server [порт]. Сервер работает до остановки процесса; при остановке кошельки
+  // пользователей, которые не вышли, сохраняются.
+  private static void runServer(int port, MetricsDumper dumper) throws IOException {
+    FileService fileService = new FileService();
+    AuthService authService =
+        new AuthService(fileService.getUserStore(), AuthService.DEFAULT_SESSION_IDLE);
+    FinFlowServer server = new FinFlowServer(new InetSocketAddress(port), authService, fileService);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  server.stop();
+                  if (dumper != null) dumper.close();
+                },
+                "finflow-shutdown"));
+    server.start();
+    System.out.println(
+        "Сервер FinFlow запущен на порту "
+            + server.getPort()
+            + (server.usesVirtualThreads() ? " (виртуальные потоки)" : ""));
   }
 }
@@ -0,0 +1,69 @@
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+// Операции фиксированной ширины в отображённом файле: сумма в копейках (8 байт), (номер
+// категории << 1 | признак расхода) и номер дня (по 4 байта). Номера валют, если они есть, лежат
+// отдельной колонкой по байту на операцию, без неё все операции в основной валюте. Страницы файла
+// читаются ОС только при обращении к операциям.
+public class MappedTransactionSegment implements TransactionSegment {
+  static final int RECORD_BYTES = Long.BYTES + 2 * Integer.BYTES;
+  private static final int CATEGORY_OFFSET = Long.BYTES;
+  private static final int DAY_OFFSET = Long.BYTES + Integer.BYTES;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final ByteBuffer currencies;
+
+  public MappedTransactionSegment(ByteBuffer buffer, int size) {
+    this(buffer, size, null);
+  }
+
+  public MappedTransactionSegment(ByteBuffer buffer, int size, ByteBuffer currencies) {
+    if (size < 0
+        || (long) size * RECORD_BYTES > buffer.limit()
+        || (currencies != null && size > currencies.limit())) {
+      throw new IllegalArgumentException(
+          "Сегмент из " + size + " операций не помещается в отображение: " + buffer.limit());
+    }
+    this.buffer = buffer;
+    this.size = size;
+    this.currencies = currencies;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long sum(int index) {
+    return buffer.getLong(offset(index));
+  }
+
+  @Override
+  public Currency currency(int index) {
+    return currencies == null ? Currency.BASE : Currency.of(currencies.get(index));
+  }
+
+  @Override
+  public int category(int index) {
+    return buffer.getInt(offset(index) + CATEGORY_OFFSET) >>> 1;
+  }
+
+  @Override
+  public int day(int index) {
+    return buffer.getInt(offset(index) + DAY_OFFSET);
+  }
+
+  @Override
+  public boolean isExpense(int index) {
+    return (buffer.getInt(offset(index) + CATEGORY_OFFSET) & 1) == 1;
+  }
+
+  // Произведение считается в long: конструктор проверил, что сегмент помещается в отображение,
+  // поэтому смещение операции из него всегда укладывается в int
+  private int offset(int index) {
+    Objects.checkIndex(index, size);
+    return (int) ((long) index * RECORD_BYTES);
+  }
+}
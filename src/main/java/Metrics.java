@@ -0,0 +1,132 @@
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Метрики процесса: задержки операций (LatencyTimer) и счётчики. Таймеры и счётчики заводятся
+// один раз, обычно в статических полях, а запись в них не выделяет память. Отчёт доступен
+// командой metrics, а по запросу — через JMX (finflow:type=Metrics, -Dfinflow.metrics.jmx=true)
+// и в файле, который пишет MetricsDumper. -Dfinflow.metrics=false выключает запись.
+public class Metrics implements MetricsMXBean {
+  static final boolean ENABLED = !"false".equals(System.getProperty("finflow.metrics"));
+
+  private static final String OBJECT_NAME = "finflow:type=Metrics";
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final Metrics GLOBAL = new Metrics();
+
+  private final Map<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+  public static Metrics global() {
+    return GLOBAL;
+  }
+
+  public LatencyTimer timer(String name) {
+    LatencyTimer timer = timers.get(name);
+    return timer != null ? timer : timers.computeIfAbsent(name, LatencyTimer::new);
+  }
+
+  public LongAdder counter(String name) {
+    LongAdder counter = counters.get(name);
+    return counter != null ? counter : counters.computeIfAbsent(name, key -> new LongAdder());
+  }
+
+  // Повторная регистрация ничего не делает
+  public void registerMBean() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) server.registerMBean(this, name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Не удалось зарегистрировать метрики в JMX", e);
+    }
+  }
+
+  // Строка на каждую операцию и класс размера кошелька, в котором были замеры. Времена в
+  // миллисекундах; размер — число операций в кошельке (для сброса журнала — записей в пачке)
+  @Override
+  public String getReport() {
+    StringBuilder report = new StringBuilder();
+    report
+        .append("Метрики FinFlow на ")
+        .append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+        .append(System.lineSeparator());
+    report.append(String.format("%-28s %-6s %9s %9s", "Операция", "Размер", "Кол-во", "Среднее"));
+    for (double p : PERCENTILES) report.append(String.format(" %9s", "p" + format(p)));
+    report.append(String.format(" %9s%n", "max"));
+
+    long[] counts = new long[LatencyHistogram.BUCKETS];
+    for (LatencyTimer timer : new TreeMap<>(timers).values()) {
+      for (int i = 0; i < LatencyTimer.SIZE_CLASSES.length; i++) {
+        LatencyHistogram histogram = timer.getHistogram(i);
+        long count = histogram.getCount();
+        if (count == 0) continue;
+
+        Arrays.fill(counts, 0);
+        histogram.addCountsTo(counts);
+        report.append(
+            String.format(
+                "%-28s %-6s %9d %9.3f",
+                timer.getName(),
+                LatencyTimer.SIZE_CLASSES[i],
+                count,
+                millis(histogram.getTotalNanos() / count)));
+        // Граница корзины может оказаться больше самого долгого замера
+        long max = histogram.getMaxNanos();
+        for (double p : PERCENTILES) {
+          long value = Math.min(max, LatencyHistogram.percentile(counts, p));
+          report.append(String.format(" %9.3f", millis(value)));
+        }
+        report.append(String.format(" %9.3f%n", millis(max)));
+      }
+    }
+
+    if (!counters.isEmpty()) {
+      report.append(System.lineSeparator()).append("Счётчики").append(System.lineSeparator());
+      getCounters()
+          .forEach((name, value) -> report.append(String.format("%-28s %12d%n", name, value)));
+    }
+    return report.toString();
+  }
+
+  @Override
+  public Map<String, Long> getCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    timers.forEach((name, timer) -> counts.put(name, timer.getCount()));
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> values = new TreeMap<>();
+    counters.forEach((name, counter) -> values.put(name, counter.sum()));
+    return values;
+  }
+
+  @Override
+  public double getPercentileMillis(String timer, double percentile) {
+    LatencyTimer found = timers.get(timer);
+    return found == null ? 0 : millis(found.percentile(percentile));
+  }
+
+  @Override
+  public void reset() {
+    timers.values().forEach(LatencyTimer::reset);
+    counters.values().forEach(LongAdder::reset);
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static String format(double p) {
+    return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+  }
+}
@@ -0,0 +1,69 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Раз в period секунд переписывает файл отчётом метрик, чтобы его можно было посмотреть или
+// собрать, не подключаясь к процессу. При закрытии пишет последний отчёт. Файл подменяется
+// атомарно, так что читатель не увидит его наполовину записанным. Ошибки записи сообщаются в
+// вывод приложения.
+public class MetricsDumper implements Closeable {
+  static final long DEFAULT_PERIOD_SECONDS = 60;
+
+  private final Metrics metrics;
+  private final Path file;
+  private final Output out;
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public MetricsDumper(Metrics metrics, Path file, long periodSeconds, Output out) {
+    this.metrics = metrics;
+    this.file = file;
+    this.out = out;
+    if (periodSeconds > 0) {
+      executor.scheduleAtFixedRate(this::dump, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  // Выгрузка включается только явно: -Dfinflow.metrics.dump=<файл>,
+  // -Dfinflow.metrics.seconds=<период>; 0 оставляет только отчёт при закрытии
+  public static MetricsDumper fromSystemProperties(Metrics metrics, Output out) {
+    String file = System.getProperty("finflow.metrics.dump");
+    if (!Metrics.ENABLED || file == null || file.isEmpty()) return null;
+    long period = Long.getLong("finflow.metrics.seconds", DEFAULT_PERIOD_SECONDS);
+    return new MetricsDumper(metrics, Path.of(file), period, out);
+  }
+
+  public void dump() {
+    try {
+      Path dir = file.toAbsolutePath().getParent();
+      if (dir != null) Files.createDirectories(dir);
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.writeString(tmp, metrics.getReport(), StandardCharsets.UTF_8);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      out.println("Ошибка записи метрик в " + file + ": " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    dump();
+  }
+}
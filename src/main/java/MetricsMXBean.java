@@ -0,0 +1,16 @@
+import java.util.Map;
+
+// Метрики FinFlow в JMX (jconsole, VisualVM): объект finflow:type=Metrics
+public interface MetricsMXBean {
+  // Тот же отчёт, что печатает команда metrics
+  String getReport();
+
+  // Число замеров каждой операции
+  Map<String, Long> getCounts();
+
+  Map<String, Long> getCounters();
+
+  double getPercentileMillis(String timer, double percentile);
+
+  void reset();
+}
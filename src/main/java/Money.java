@@ -0,0 +1,75 @@
+// Денежные суммы хранятся в long в копейках (сотых долях единицы): сложение остаётся обычной
+// арифметикой без BigDecimal и без выделения памяти. Здесь же единственный разбор сумм из ввода
+// и их форматирование для вывода: целые суммы печатаются без дробной части, остальные — с двумя
+// знаками после точки.
+public final class Money {
+  public static final int SCALE = 2;
+  public static final long UNIT = 100;
+
+  private Money() {}
+
+  // Целые единицы — суммы из файлов, записанных до появления копеек
+  public static long ofUnits(long units) {
+    return Math.multiplyExact(units, UNIT);
+  }
+
+  // Складывает суммы и сообщает о переполнении вместо того, чтобы молча его пропустить
+  public static long add(long total, long sum) {
+    long result = total + sum;
+    if (((total ^ result) & (sum ^ result)) < 0) {
+      throw new ArithmeticException("Сумма превышает допустимое значение: " + format(total));
+    }
+    return result;
+  }
+
+  // "1200", "-450,40", "1 200.5": знак необязателен, пробелы внутри числа разделяют разряды,
+  // дробная часть (не больше двух знаков) отделяется точкой или запятой
+  public static long parse(String text) {
+    int i = 0;
+    boolean negative = false;
+    if (!text.isEmpty() && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      i++;
+    }
+
+    long units = 0;
+    boolean hasDigits = false;
+    for (; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (units > (Long.MAX_VALUE / UNIT - 1 - (c - '0')) / 10) throw invalid(text);
+        units = units * 10 + (c - '0');
+        hasDigits = true;
+      } else if (c == '.' || c == ',') {
+        break;
+      } else if ((c != ' ' && c != '\u00A0') || !hasDigits) {
+        throw invalid(text);
+      }
+    }
+    if (!hasDigits) throw invalid(text);
+
+    long fraction = 0;
+    int digits = 0;
+    for (i++; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9' || ++digits > SCALE) throw invalid(text);
+      fraction = fraction * 10 + (c - '0');
+    }
+    for (; digits < SCALE; digits++) fraction *= 10;
+
+    long value = units * UNIT + fraction;
+    return negative ? -value : value;
+  }
+
+  public static String format(long value) {
+    long units = value / UNIT;
+    long fraction = Math.abs(value % UNIT);
+    String sign = value < 0 && units == 0 ? "-" : "";
+    if (fraction == 0) return sign + units;
+    return sign + units + (fraction < 10 ? ".0" : ".") + fraction;
+  }
+
+  private static NumberFormatException invalid(String text) {
+    return new NumberFormatException("Неверная сумма: " + text);
+  }
+}
@@ -0,0 +1,87 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+// Итоги операций за один календарный месяц: общие и по номерам категорий.
+// Месяц хранится числом год * 12 + (месяц - 1), чтобы соседние месяцы различались на единицу.
+public class MonthlyTotals {
+  private final int month;
+  private long totalIncomes;
+  private long totalExpenses;
+  private long[] incomesByCategory;
+  private long[] expensesByCategory;
+
+  MonthlyTotals(int month) {
+    this(month, 0, 0, new long[0], new long[0]);
+  }
+
+  MonthlyTotals(
+      int month,
+      long totalIncomes,
+      long totalExpenses,
+      long[] incomesByCategory,
+      long[] expensesByCategory) {
+    this.month = month;
+    this.totalIncomes = totalIncomes;
+    this.totalExpenses = totalExpenses;
+    this.incomesByCategory = incomesByCategory;
+    this.expensesByCategory = expensesByCategory;
+  }
+
+  public static int monthOf(LocalDate date) {
+    return date.getYear() * 12 + date.getMonthValue() - 1;
+  }
+
+  public static int monthOf(int epochDay) {
+    return monthOf(LocalDate.ofEpochDay(epochDay));
+  }
+
+  public static int monthOf(YearMonth yearMonth) {
+    return yearMonth.getYear() * 12 + yearMonth.getMonthValue() - 1;
+  }
+
+  public int getMonth() {
+    return month;
+  }
+
+  public YearMonth getYearMonth() {
+    return YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+  }
+
+  public long getTotalIncomes() {
+    return totalIncomes;
+  }
+
+  public long getTotalExpenses() {
+    return totalExpenses;
+  }
+
+  public long getIncomes(int categoryId) {
+    return categoryId < incomesByCategory.length ? incomesByCategory[categoryId] : 0;
+  }
+
+  public long getExpenses(int categoryId) {
+    return categoryId < expensesByCategory.length ? expensesByCategory[categoryId] : 0;
+  }
+
+  void add(long sum, int categoryId, TransactionType type) {
+    if (categoryId >= incomesByCategory.length) {
+      // Месяц знает только категории, по которым в нём были операции
+      int capacity = Math.max(categoryId + 1, incomesByCategory.length * 2);
+      incomesByCategory = Arrays.copyOf(incomesByCategory, capacity);
+      expensesByCategory = Arrays.copyOf(expensesByCategory, capacity);
+    }
+    if (type == TransactionType.INCOME) {
+      totalIncomes += sum;
+      incomesByCategory[categoryId] += sum;
+    } else {
+      totalExpenses += sum;
+      expensesByCategory[categoryId] += sum;
+    }
+  }
+
+  MonthlyTotals copy() {
+    return new MonthlyTotals(
+        month, totalIncomes, totalExpenses, incomesByCategory.clone(), expensesByCategory.clone());
+  }
+}
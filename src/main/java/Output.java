@@ -0,0 +1,65 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Formatter;
+
+// Вывод приложения: текст копится в буфере и передаётся получателю одним блоком при flush(),
+// а не построчно через System.out с блокировкой и сбросом на каждой строке. Если буфер
+// превысил порог, он сбрасывается сразу, поэтому память не растёт на больших отчётах.
+// Методы синхронизированы: в режиме сервера FileService пишет в общий вывод из разных потоков.
+public class Output {
+  static final int DEFAULT_FLUSH_THRESHOLD = 1024 * 1024;
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final Appendable target;
+  private final int flushThreshold;
+  private final StringBuilder buffer = new StringBuilder(64 * 1024);
+  private final Formatter formatter = new Formatter(buffer);
+
+  public Output(Appendable target) {
+    this(target, DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  // При нулевом пороге каждая запись сразу передаётся получателю
+  public Output(Appendable target, int flushThreshold) {
+    this.target = target;
+    this.flushThreshold = flushThreshold;
+  }
+
+  public synchronized void print(String text) {
+    buffer.append(text);
+    flushIfFull();
+  }
+
+  public synchronized void println(String text) {
+    buffer.append(text).append(LINE_SEPARATOR);
+    flushIfFull();
+  }
+
+  public synchronized void println() {
+    buffer.append(LINE_SEPARATOR);
+    flushIfFull();
+  }
+
+  public synchronized void printf(String format, Object... args) {
+    formatter.format(format, args);
+    flushIfFull();
+  }
+
+  public synchronized void flush() {
+    try {
+      if (buffer.length() > 0) {
+        target.append(buffer);
+        buffer.setLength(0);
+      }
+      if (target instanceof Flushable flushable) flushable.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Ошибка вывода", e);
+    }
+  }
+
+  private void flushIfFull() {
+    if (buffer.length() >= flushThreshold) flush();
+  }
+}
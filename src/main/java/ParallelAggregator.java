@@ -0,0 +1,87 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Полный проход по операциям для отчётов, которым не хватает готовых итогов кошелька (например,
+// произвольный фильтр): хранилище делится на куски, итоги по категориям каждого куска считаются в
+// ForkJoinPool и складываются. Кошельки меньше порога считаются в вызывающем потоке — разбиение
+// окупается только на сотнях тысяч операций. Суммы long складываются через Money.add и внутри
+// куска, и при слиянии кусков. Суммы операций положительны, поэтому частичные итоги не больше
+// полного: без переполнения результат совпадает с последовательным проходом, а переполнение в
+// любом порядке сложения бросает ArithmeticException, как и последовательный проход.
+//
+//   -Dfinflow.parallel.threshold=100000
+public class ParallelAggregator {
+  public static final int DEFAULT_THRESHOLD = 100_000;
+  // Кусок меньше этого не делится: задача и массивы итогов обойдутся дороже самого прохода
+  private static final int MIN_CHUNK = 16 * 1024;
+  // Кусков на поток пула, с запасом на неравномерность: часть истории читается из файла
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  public ParallelAggregator(ForkJoinPool pool, int threshold) {
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  public static ParallelAggregator fromSystemProperties() {
+    return new ParallelAggregator(
+        ForkJoinPool.commonPool(),
+        Integer.getInteger("finflow.parallel.threshold", DEFAULT_THRESHOLD));
+  }
+
+  // Хранилище не должно меняться во время прохода: кошелёк пишет один поток, и он ждёт результата
+  public CategoryTotals aggregate(
+      TransactionStore store, int categories, TransactionFilter filter) {
+    int size = store.size();
+    if (size < threshold || pool.getParallelism() == 1) {
+      return sequential(store, categories, filter, 0, size);
+    }
+    int chunk = Math.max(MIN_CHUNK, size / (pool.getParallelism() * CHUNKS_PER_THREAD));
+    return pool.invoke(new Chunk(store, categories, filter, 0, size, chunk));
+  }
+
+  private static CategoryTotals sequential(
+      TransactionStore store, int categories, TransactionFilter filter, int from, int to) {
+    CategoryTotals totals = new CategoryTotals(categories);
+    store.sumByCategory(from, to, filter, totals.incomes(), totals.expenses());
+    return totals;
+  }
+
+  private static final class Chunk extends RecursiveTask<CategoryTotals> {
+    private final TransactionStore store;
+    private final int categories;
+    private final TransactionFilter filter;
+    private final int from;
+    private final int to;
+    private final int chunk;
+
+    Chunk(
+        TransactionStore store,
+        int categories,
+        TransactionFilter filter,
+        int from,
+        int to,
+        int chunk) {
+      this.store = store;
+      this.categories = categories;
+      this.filter = filter;
+      this.from = from;
+      this.to = to;
+      this.chunk = chunk;
+    }
+
+    @Override
+    protected CategoryTotals compute() {
+      if (to - from <= chunk) return sequential(store, categories, filter, from, to);
+
+      int middle = (from + to) >>> 1;
+      Chunk left = new Chunk(store, categories, filter, from, middle, chunk);
+      left.fork();
+      CategoryTotals totals = new Chunk(store, categories, filter, middle, to, chunk).compute();
+      totals.add(left.join());
+      return totals;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Импорт банковской выписки в CSV. Колонки: дата (ГГГГ-ММ-ДД или ДД.ММ.ГГГГ), сумма (расход со
+// знаком минус), описание и необязательная категория. Разделитель — ';' или ',', определяется по
+// первой строке; строка заголовка (первая колонка названа "Дата" или "Date") пропускается. Файл
+// читается построчно, операции добавляются в кошелёк пачками, поэтому память не зависит от
+// размера выписки. Строки, которые кошелёк не примет (в том числе переполняющие итоги),
+// отклоняются до добавления, так что пачки не падают посреди файла.
+public class StatementImporter {
+  static final String DEFAULT_INCOME_CATEGORY = "Прочие доходы";
+  static final String DEFAULT_EXPENSE_CATEGORY = "Прочие расходы";
+  static final int MAX_REJECTED_SAMPLES = 10;
+  private static final List<String> HEADER_DATE_COLUMNS = List.of("дата", "date");
+
+  private final ImportRules rules;
+
+  public StatementImporter(ImportRules rules) {
+    this.rules = rules;
+  }
+
+  public ImportResult importFile(Path file, Wallet wallet) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return importFrom(reader, wallet);
+    }
+  }
+
+  public ImportResult importFrom(BufferedReader reader, Wallet wallet) throws IOException {
+    TransactionBatch batch = new TransactionBatch();
+    Map<String, Integer> categoryIds = new HashMap<>();
+    List<String> fields = new ArrayList<>();
+    List<String> rejectedSamples = new ArrayList<>();
+    int imported = 0;
+    int rejected = 0;
+    int createdCategories = 0;
+    char delimiter = 0;
+    // Итоги кошелька вместе с уже разобранными строками: по ним переполнение проверяется
+    // для каждой строки, а не для пачки
+    long totalIncomes = wallet.getTotalIncomes();
+    long totalExpenses = wallet.getTotalExpenses();
+    // Выписка обычно отсортирована по дате, и подряд идёт много операций за один день
+    String lastDateText = null;
+    int lastDay = 0;
+
+    String line;
+    int lineNumber = 0;
+    while ((line = readLine(reader, lineNumber, imported - batch.size())) != null) {
+      lineNumber++;
+      if (lineNumber == 1 && line.startsWith("\uFEFF")) line = line.substring(1);
+      if (line.isBlank()) continue;
+
+      boolean firstRow = delimiter == 0;
+      if (firstRow) delimiter = line.indexOf(';') >= 0 ? ';' : ',';
+      split(line, delimiter, fields);
+      if (firstRow && isHeader(fields)) continue;
+
+      if (fields.size() < 3) {
+        rejected++;
+        addSample(rejectedSamples, lineNumber, "не хватает колонок");
+        continue;
+      }
+
+      String dateText = fields.get(0);
+      int day;
+      if (dateText.equals(lastDateText)) {
+        day = lastDay;
+      } else {
+        try {
+          day = parseDay(dateText);
+        } catch (RuntimeException e) {
+          rejected++;
+          addSample(rejectedSamples, lineNumber, "неверная дата '" + dateText + "'");
+          continue;
+        }
+        lastDateText = dateText;
+        lastDay = day;
+      }
+
+      long amount;
+      try {
+        // Копейки сохраняются как есть (Money)
+        amount = Money.parse(fields.get(1));
+      } catch (NumberFormatException e) {
+        amount = 0;
+      }
+      if (amount == 0) {
+        rejected++;
+        addSample(rejectedSamples, lineNumber, "неверная сумма '" + fields.get(1) + "'");
+        continue;
+      }
+      TransactionType type = amount < 0 ? TransactionType.EXPENSE : TransactionType.INCOME;
+      long sum;
+      try {
+        sum = Math.absExact(amount);
+        if (type == TransactionType.INCOME) totalIncomes = Money.add(totalIncomes, sum);
+        else totalExpenses = Money.add(totalExpenses, sum);
+      } catch (ArithmeticException e) {
+        rejected++;
+        addSample(rejectedSamples, lineNumber, "сумма '" + fields.get(1) + "' переполняет итоги");
+        continue;
+      }
+
+      String categoryName = fields.size() > 3 ? fields.get(3) : "";
+      if (categoryName.isEmpty()) categoryName = rules.match(fields.get(2));
+      if (categoryName == null) {
+        categoryName =
+            type == TransactionType.INCOME ? DEFAULT_INCOME_CATEGORY : DEFAULT_EXPENSE_CATEGORY;
+      }
+      Integer categoryId = categoryIds.get(categoryName);
+      if (categoryId == null) {
+        if (!wallet.hasCategory(categoryName)) {
+          wallet.addCategory(categoryName);
+          createdCategories++;
+        }
+        categoryId = wallet.getCategory(categoryName).getId();
+        categoryIds.put(categoryName, categoryId);
+      }
+
+      batch.add(sum, categoryId, type, day);
+      imported++;
+      if (batch.isFull()) {
+        wallet.addTransactions(batch);
+        batch.clear();
+      }
+    }
+    wallet.addTransactions(batch);
+
+    return new ImportResult(imported, rejected, createdCategories, rejectedSamples);
+  }
+
+  // Первые пачки к этому времени уже в кошельке, поэтому ошибка чтения сообщает, сколько их
+  private static String readLine(BufferedReader reader, int lineNumber, int committed)
+      throws IOException {
+    try {
+      return reader.readLine();
+    } catch (IOException e) {
+      throw new IOException(
+          "строка "
+              + (lineNumber + 1)
+              + ": "
+              + e.getMessage()
+              + ". Уже импортировано операций: "
+              + committed,
+          e);
+    }
+  }
+
+  // Заголовок узнаётся по названию первой колонки, а не по тому, что в ней не дата: иначе
+  // первая строка выписки без заголовка с опечаткой в дате молча пропадала бы
+  private static boolean isHeader(List<String> fields) {
+    String first = fields.get(0).toLowerCase(Locale.ROOT);
+    return HEADER_DATE_COLUMNS.stream().anyMatch(first::startsWith);
+  }
+
+  private static void addSample(List<String> samples, int lineNumber, String reason) {
+    if (samples.size() < MAX_REJECTED_SAMPLES) samples.add("строка " + lineNumber + ": " + reason);
+  }
+
+  // Поля в кавычках могут содержать разделитель и удвоенные кавычки, но не перевод строки
+  private static void split(String line, char delimiter, List<String> fields) {
+    fields.clear();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == delimiter) {
+        fields.add(field.toString().trim());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString().trim());
+  }
+
+  private static int parseDay(String text) {
+    LocalDate date;
+    if (text.length() >= 10 && text.charAt(2) == '.' && text.charAt(5) == '.') {
+      date =
+          LocalDate.of(
+              Integer.parseInt(text, 6, 10, 10),
+              Integer.parseInt(text, 3, 5, 10),
+              Integer.parseInt(text, 0, 2, 10));
+    } else {
+      // Время операции, если оно есть, отбрасывается
+      date = LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+    }
+    return (int) date.toEpochDay();
+  }
+}
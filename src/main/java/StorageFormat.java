@@ -0,0 +1,22 @@
+// Формат снимка кошелька выбирается для всей установки:
+// -Dfinflow.storage.format=json|binary|mapped
+public enum StorageFormat {
+  JSON(".wallet.json"),
+  BINARY(".wallet.bin"),
+  // Операции отображаются в память и читаются по мере надобности
+  MAPPED(".wallet.map");
+
+  private final String extension;
+
+  StorageFormat(String extension) {
+    this.extension = extension;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  public static StorageFormat fromSystemProperties() {
+    return valueOf(System.getProperty("finflow.storage.format", "json").toUpperCase());
+  }
+}
@@ -1,4 +1,7 @@
 import java.io.Serializable;
+import java.time.LocalDate;
 
-public record Transaction(int sum, Category category, TransactionType type)
+// Сумма — в копейках (Money)
+public record Transaction(
+    long sum, Currency currency, int categoryId, TransactionType type, LocalDate date)
     implements Serializable {}
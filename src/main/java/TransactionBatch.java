@@ -0,0 +1,60 @@
+// Пачка операций, которая добавляется в кошелёк целиком: одна версия кошелька и одна запись
+// журнала на всю пачку. Массивы переиспользуются после clear().
+public class TransactionBatch {
+  // Пачка должна уместиться в одну запись журнала: по 17 байт на операцию
+  public static final int MAX_SIZE = 4096;
+
+  private final long[] sums = new long[MAX_SIZE];
+  private final int[] categories = new int[MAX_SIZE];
+  private final int[] days = new int[MAX_SIZE];
+  private final byte[] currencies = new byte[MAX_SIZE];
+  private final boolean[] expenses = new boolean[MAX_SIZE];
+  private int size;
+
+  public void add(long sum, int categoryId, TransactionType type, int day) {
+    add(sum, Currency.BASE, categoryId, type, day);
+  }
+
+  public void add(long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    if (isFull()) throw new IllegalStateException("Пачка операций заполнена");
+
+    sums[size] = sum;
+    currencies[size] = (byte) currency.ordinal();
+    categories[size] = categoryId;
+    days[size] = day;
+    expenses[size] = type == TransactionType.EXPENSE;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == MAX_SIZE;
+  }
+
+  public long sum(int index) {
+    return sums[index];
+  }
+
+  public Currency currency(int index) {
+    return Currency.of(currencies[index]);
+  }
+
+  public int category(int index) {
+    return categories[index];
+  }
+
+  public int day(int index) {
+    return days[index];
+  }
+
+  public TransactionType type(int index) {
+    return expenses[index] ? TransactionType.EXPENSE : TransactionType.INCOME;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+}
@@ -0,0 +1,8 @@
+// Условие отбора операций для полного прохода по кошельку (Wallet.aggregate)
+@FunctionalInterface
+public interface TransactionFilter {
+  TransactionFilter ALL = (sum, categoryId, type, day) -> true;
+
+  // day — номер дня от 1970-01-01
+  boolean test(long sum, int categoryId, TransactionType type, int day);
+}
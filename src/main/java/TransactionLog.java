@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Неблокирующий журнал операций в памяти: писать могут несколько потоков, читает один (под
+// внешней блокировкой). Операции лежат в блоках фиксированного размера; писатель занимает место
+// атомарным счётчиком блока и публикует запись одной упорядоченной записью в массив, поэтому
+// на каждую операцию нет ни блокировки, ни выделения памяти. Прочитанные блоки уходят в сборщик
+// мусора.
+public class TransactionLog {
+  static final int CHUNK_SIZE = 1024;
+
+  private static final class Chunk {
+    // (номер категории + 1) << 1 | признак расхода; 0 — место занято, но запись ещё не
+    // опубликована. Сумма и день пишутся до публикации признака
+    final AtomicIntegerArray tags = new AtomicIntegerArray(CHUNK_SIZE);
+    final long[] sums = new long[CHUNK_SIZE];
+    final int[] days = new int[CHUNK_SIZE];
+    final AtomicInteger reserved = new AtomicInteger();
+    final AtomicReference<Chunk> next = new AtomicReference<>();
+  }
+
+  private final AtomicReference<Chunk> tail;
+  // Позиция читателя
+  private Chunk head;
+  private int headIndex;
+
+  public TransactionLog() {
+    head = new Chunk();
+    tail = new AtomicReference<>(head);
+  }
+
+  public void add(long sum, int categoryId, TransactionType type, int day) {
+    int tag = (categoryId + 1) << 1 | (type == TransactionType.EXPENSE ? 1 : 0);
+    while (true) {
+      Chunk chunk = tail.get();
+      int index = chunk.reserved.getAndIncrement();
+      if (index < CHUNK_SIZE) {
+        chunk.sums[index] = sum;
+        chunk.days[index] = day;
+        chunk.tags.setRelease(index, tag);
+        return;
+      }
+      // Блок заполнен: следующий подвешивает тот, кто первым это заметил
+      Chunk next = chunk.next.get();
+      if (next == null) {
+        Chunk fresh = new Chunk();
+        next = chunk.next.compareAndSet(null, fresh) ? fresh : chunk.next.get();
+      }
+      tail.compareAndSet(chunk, next);
+    }
+  }
+
+  // Переносит опубликованные операции в пачку и возвращает их число. Останавливается на полной
+  // пачке или на месте, которое писатель занял, но ещё не заполнил
+  public int drainTo(TransactionBatch batch) {
+    int drained = 0;
+    while (!batch.isFull()) {
+      if (headIndex == CHUNK_SIZE) {
+        Chunk next = head.next.get();
+        if (next == null) break;
+        head = next;
+        headIndex = 0;
+      }
+      int tag = head.tags.getAcquire(headIndex);
+      if (tag == 0) break;
+
+      TransactionType type = (tag & 1) == 1 ? TransactionType.EXPENSE : TransactionType.INCOME;
+      batch.add(head.sums[headIndex], (tag >>> 1) - 1, type, head.days[headIndex]);
+      headIndex++;
+      drained++;
+    }
+    return drained;
+  }
+}
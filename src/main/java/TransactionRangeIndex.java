@@ -0,0 +1,41 @@
+import java.util.Arrays;
+
+// Индекс операций по датам для запросов за период: дерево Фенвика на каждую пару (категория, тип)
+// и на каждый тип по всем категориям. Операции без даты (UNKNOWN_DAY) в индекс не попадают.
+public class TransactionRangeIndex {
+  private final DayRangeIndex incomes = new DayRangeIndex();
+  private final DayRangeIndex expenses = new DayRangeIndex();
+  private DayRangeIndex[] incomesByCategory = new DayRangeIndex[0];
+  private DayRangeIndex[] expensesByCategory = new DayRangeIndex[0];
+
+  public void add(long sum, int categoryId, TransactionType type, int day) {
+    if (day == TransactionStore.UNKNOWN_DAY) return;
+
+    if (categoryId >= incomesByCategory.length) {
+      int capacity = Math.max(categoryId + 1, incomesByCategory.length * 2);
+      incomesByCategory = Arrays.copyOf(incomesByCategory, capacity);
+      expensesByCategory = Arrays.copyOf(expensesByCategory, capacity);
+    }
+    DayRangeIndex[] byCategory;
+    if (type == TransactionType.INCOME) {
+      incomes.add(day, sum);
+      byCategory = incomesByCategory;
+    } else {
+      expenses.add(day, sum);
+      byCategory = expensesByCategory;
+    }
+    if (byCategory[categoryId] == null) byCategory[categoryId] = new DayRangeIndex();
+    byCategory[categoryId].add(day, sum);
+  }
+
+  public long sum(TransactionType type, int fromDay, int toDay) {
+    return (type == TransactionType.INCOME ? incomes : expenses).sum(fromDay, toDay);
+  }
+
+  public long sum(TransactionType type, int categoryId, int fromDay, int toDay) {
+    DayRangeIndex[] byCategory =
+        type == TransactionType.INCOME ? incomesByCategory : expensesByCategory;
+    if (categoryId >= byCategory.length || byCategory[categoryId] == null) return 0;
+    return byCategory[categoryId].sum(fromDay, toDay);
+  }
+}
@@ -0,0 +1,18 @@
+// Неизменяемая последовательность операций, хранящаяся вне кучи (например, в отображённом файле)
+public interface TransactionSegment {
+  int size();
+
+  // В копейках
+  long sum(int index);
+
+  int category(int index);
+
+  // Номер дня от 1970-01-01
+  int day(int index);
+
+  boolean isExpense(int index);
+
+  default Currency currency(int index) {
+    return Currency.BASE;
+  }
+}
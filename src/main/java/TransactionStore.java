@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Колоночное хранилище операций: суммы в копейках, валюты, номера категорий, даты (номер дня от
+// 1970-01-01) и тип (бит установлен для расхода).
+// Начало истории может лежать в неизменяемом сегменте вне кучи, новые операции дописываются
+// в массивы после него.
+public class TransactionStore implements Serializable {
+  // Дата операций, записанных до появления дат в форматах хранения: 1970-01-01
+  static final int UNKNOWN_DAY = 0;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final byte BASE_CURRENCY = (byte) Currency.BASE.ordinal();
+
+  private transient TransactionSegment history;
+  private int historySize;
+  private long[] sums = new long[INITIAL_CAPACITY];
+  private int[] categories = new int[INITIAL_CAPACITY];
+  private int[] days = new int[INITIAL_CAPACITY];
+  private byte[] currencies = new byte[INITIAL_CAPACITY];
+  private final BitSet expenses = new BitSet();
+  private int size;
+
+  public void add(long sum, Currency currency, int category, TransactionType type, int day) {
+    ensureCapacity(size + 1);
+    sums[size] = sum;
+    currencies[size] = (byte) currency.ordinal();
+    categories[size] = category;
+    days[size] = day;
+    expenses.set(size, type == TransactionType.EXPENSE);
+    size++;
+  }
+
+  public void addAll(TransactionBatch batch) {
+    ensureCapacity(size + batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      sums[size] = batch.sum(i);
+      currencies[size] = (byte) batch.currency(i).ordinal();
+      categories[size] = batch.category(i);
+      days[size] = batch.day(i);
+      expenses.set(size, batch.type(i) == TransactionType.EXPENSE);
+      size++;
+    }
+  }
+
+  public int size() {
+    return historySize + size;
+  }
+
+  public long sum(int index) {
+    checkIndex(index);
+    return index < historySize ? history.sum(index) : sums[index - historySize];
+  }
+
+  public Currency currency(int index) {
+    checkIndex(index);
+    return index < historySize
+        ? history.currency(index)
+        : Currency.of(currencies[index - historySize]);
+  }
+
+  public int category(int index) {
+    checkIndex(index);
+    return index < historySize ? history.category(index) : categories[index - historySize];
+  }
+
+  public int day(int index) {
+    checkIndex(index);
+    return index < historySize ? history.day(index) : days[index - historySize];
+  }
+
+  public TransactionType type(int index) {
+    checkIndex(index);
+    boolean expense =
+        index < historySize ? history.isExpense(index) : expenses.get(index - historySize);
+    return expense ? TransactionType.EXPENSE : TransactionType.INCOME;
+  }
+
+  // Прибавляет суммы операций [from, to) в основной валюте, прошедших фильтр, к incomeTotals или
+  // expenseTotals[номер категории]. Только читает, поэтому разные куски хранилища можно обходить
+  // из разных потоков одновременно
+  public void sumByCategory(
+      int from, int to, TransactionFilter filter, long[] incomeTotals, long[] expenseTotals) {
+    for (int i = from; i < Math.min(to, historySize); i++) {
+      if (history.currency(i) != Currency.BASE) continue;
+      long sum = history.sum(i);
+      int category = history.category(i);
+      boolean expense = history.isExpense(i);
+      TransactionType type = expense ? TransactionType.EXPENSE : TransactionType.INCOME;
+      if (!filter.test(sum, category, type, history.day(i))) continue;
+      if (expense) expenseTotals[category] = Money.add(expenseTotals[category], sum);
+      else incomeTotals[category] = Money.add(incomeTotals[category], sum);
+    }
+    for (int i = Math.max(from, historySize) - historySize; i < to - historySize; i++) {
+      if (currencies[i] != BASE_CURRENCY) continue;
+      boolean expense = expenses.get(i);
+      TransactionType type = expense ? TransactionType.EXPENSE : TransactionType.INCOME;
+      if (!filter.test(sums[i], categories[i], type, days[i])) continue;
+      int category = categories[i];
+      if (expense) expenseTotals[category] = Money.add(expenseTotals[category], sums[i]);
+      else incomeTotals[category] = Money.add(incomeTotals[category], sums[i]);
+    }
+  }
+
+  public void clear() {
+    history = null;
+    historySize = 0;
+    size = 0;
+    expenses.clear();
+  }
+
+  // Заменяет содержимое историей из сегмента; операции из него не копируются в кучу
+  public void restoreHistory(TransactionSegment history) {
+    clear();
+    this.history = history;
+    this.historySize = history.size();
+  }
+
+  public void copyFrom(TransactionStore other) {
+    clear();
+    // Сегмент неизменяем, поэтому его можно разделять между копиями
+    history = other.history;
+    historySize = other.historySize;
+    ensureCapacity(other.size);
+    System.arraycopy(other.sums, 0, sums, 0, other.size);
+    System.arraycopy(other.categories, 0, categories, 0, other.size);
+    System.arraycopy(other.days, 0, days, 0, other.size);
+    System.arraycopy(other.currencies, 0, currencies, 0, other.size);
+    expenses.or(other.expenses.get(0, other.size));
+    size = other.size;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= sums.length) return;
+
+    int newCapacity = Math.max(capacity, sums.length + (sums.length >> 1));
+    sums = Arrays.copyOf(sums, newCapacity);
+    categories = Arrays.copyOf(categories, newCapacity);
+    days = Arrays.copyOf(days, newCapacity);
+    currencies = Arrays.copyOf(currencies, newCapacity);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= historySize + size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (historySize + size));
+    }
+  }
+
+  // Сегмент не сериализуется: история вместе с операциями после неё пишется массивами, как если
+  // бы вся она лежала в куче. Само хранилище не меняется — сегмент остаётся вне кучи, а
+  // одновременные читатели не видят подмены массивов
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    int total = historySize + size;
+    long[] allSums = new long[Math.max(total, 1)];
+    int[] allCategories = new int[allSums.length];
+    int[] allDays = new int[allSums.length];
+    byte[] allCurrencies = new byte[allSums.length];
+    BitSet allExpenses = new BitSet();
+    for (int i = 0; i < historySize; i++) {
+      allSums[i] = history.sum(i);
+      allCategories[i] = history.category(i);
+      allDays[i] = history.day(i);
+      allCurrencies[i] = (byte) history.currency(i).ordinal();
+      if (history.isExpense(i)) allExpenses.set(i);
+    }
+    System.arraycopy(sums, 0, allSums, historySize, size);
+    System.arraycopy(categories, 0, allCategories, historySize, size);
+    System.arraycopy(days, 0, allDays, historySize, size);
+    System.arraycopy(currencies, 0, allCurrencies, historySize, size);
+    for (int i = expenses.nextSetBit(0); i >= 0 && i < size; i = expenses.nextSetBit(i + 1)) {
+      allExpenses.set(historySize + i);
+    }
+
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("historySize", 0);
+    fields.put("sums", allSums);
+    fields.put("categories", allCategories);
+    fields.put("days", allDays);
+    fields.put("currencies", allCurrencies);
+    fields.put("expenses", allExpenses);
+    fields.put("size", total);
+    out.writeFields();
+  }
+}
@@ -0,0 +1,95 @@
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.function.ToIntFunction;
+
+// Операция ссылается на категорию по номеру. В файлах прежнего формата категория вложена целиком,
+// и её номер определяет legacyCategoryIds. Операции без даты датируются 1970-01-01. Сумма
+// записывается десятичным числом (Money): целые суммы старых файлов читаются как есть. Валюта
+// записывается, только если она не основная
+public class TransactionTypeAdapter extends TypeAdapter<Transaction> {
+  static final String SUM = "sum";
+  static final String CURRENCY = "currency";
+  static final String CATEGORY_ID = "categoryId";
+  static final String CATEGORY = "category";
+  static final String TYPE = "type";
+  static final String DATE = "date";
+
+  private final CategoryTypeAdapter categoryAdapter = new CategoryTypeAdapter();
+  private final ToIntFunction<Category> legacyCategoryIds;
+
+  public TransactionTypeAdapter() {
+    this(
+        category -> {
+          throw new JsonParseException("Вложенная категория без кошелька: " + category.getName());
+        });
+  }
+
+  public TransactionTypeAdapter(ToIntFunction<Category> legacyCategoryIds) {
+    this.legacyCategoryIds = legacyCategoryIds;
+  }
+
+  @Override
+  public void write(JsonWriter out, Transaction transaction) throws IOException {
+    if (transaction == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    out.name(SUM).value(new BigDecimal(Money.format(transaction.sum())));
+    if (transaction.currency() != Currency.BASE) {
+      out.name(CURRENCY).value(transaction.currency().name());
+    }
+    out.name(CATEGORY_ID).value(transaction.categoryId());
+    out.name(TYPE).value(transaction.type().name());
+    out.name(DATE).value(transaction.date().toString());
+    out.endObject();
+  }
+
+  @Override
+  public Transaction read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    long sum = 0;
+    Currency currency = Currency.BASE;
+    int categoryId = -1;
+    TransactionType type = null;
+    LocalDate date = LocalDate.ofEpochDay(TransactionStore.UNKNOWN_DAY);
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case SUM -> sum = Money.parse(in.nextString());
+        case CURRENCY -> currency = parseCurrency(in);
+        case CATEGORY_ID -> categoryId = in.nextInt();
+        case CATEGORY -> categoryId = legacyCategoryIds.applyAsInt(categoryAdapter.read(in));
+        case TYPE -> type = TransactionType.valueOf(in.nextString());
+        case DATE -> date = LocalDate.parse(in.nextString());
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+
+    if (categoryId < 0 || type == null) {
+      throw new JsonParseException("Неполная запись операции: " + in.getPath());
+    }
+    return new Transaction(sum, currency, categoryId, type, date);
+  }
+
+  private static Currency parseCurrency(JsonReader in) throws IOException {
+    String path = in.getPath();
+    try {
+      return Currency.parse(in.nextString());
+    } catch (IllegalArgumentException e) {
+      throw new JsonParseException(e.getMessage() + ": " + path);
+    }
+  }
+}
@@ -1,27 +1,47 @@
 import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
 
+// Пользователь в памяти: логин и кошелёк. Учётные данные хранятся только в UserStore.
 public class User implements Serializable {
   private final String login;
-  private final String password;
   private final Wallet wallet = new Wallet();
+  // Кошелёк не потокобезопасен: в режиме сервера все обращения к нему идут под этой блокировкой.
+  // У каждого пользователя она своя, поэтому запросы разных пользователей не ждут друг друга.
+  private final ReentrantLock walletLock = new ReentrantLock();
+  // Состояние загрузки для WalletCache; меняется под walletLock
+  private boolean loaded;
+  private long savedVersion;
 
-  User(String login, String password) {
+  User(String login) {
     this.login = login;
-    this.password = password;
   }
 
   public Wallet getWallet() {
     return wallet;
   }
 
-  public String getPassword() {
-    return password;
+  public ReentrantLock getWalletLock() {
+    return walletLock;
   }
 
   public String getLogin() {
     return login;
   }
 
+  boolean isLoaded() {
+    return loaded;
+  }
+
+  // Кошелёк загружен или сохранён: все изменения до текущей версии уже на диске
+  void markSaved() {
+    loaded = true;
+    savedVersion = wallet.getVersion();
+  }
+
+  boolean isDirty() {
+    return wallet.getVersion() != savedVersion;
+  }
+
   @Override
   public String toString() {
     return login;
@@ -0,0 +1,203 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Реестр пользователей в файле data/users.db. Записи только дописываются в конец: длина записи,
+// логин, число итераций, соль и хеш пароля (PBKDF2). В памяти держится только индекс
+// логин -> смещение записи, а учётные данные читаются с диска при входе, поэтому память растёт
+// на несколько десятков байт на пользователя. Неполная запись в конце файла (сбой при
+// регистрации) отбрасывается при открытии.
+public class UserStore implements Closeable {
+  static final int FORMAT_VERSION = 1;
+
+  private static final int MAGIC = 0x46465553;
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int SALT_BYTES = 16;
+  private static final int HASH_BYTES = 32;
+  private static final int ITERATIONS = 100_000;
+  private static final int MAX_LOGIN_BYTES = Short.MAX_VALUE;
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+  static final String INVALID_LOGIN =
+      "Логин не может быть пустым и содержать '/', '\\', '..' или управляющие символы";
+
+  private final Path file;
+  private final FileChannel channel;
+  private final Map<String, Long> index = new ConcurrentHashMap<>();
+  private final SecureRandom random = new SecureRandom();
+  // Конец файла; дописывание записей идёт под блокировкой this
+  private long size;
+
+  private UserStore(Path file, FileChannel channel) {
+    this.file = file;
+    this.channel = channel;
+  }
+
+  public static UserStore open(Path file) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    UserStore store = new UserStore(file, channel);
+    try {
+      store.load();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return store;
+  }
+
+  public boolean contains(String login) {
+    return index.containsKey(login);
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  // Логин становится частью имён файлов кошелька (data/<логин>.journal), поэтому в нём не может
+  // быть разделителей пути, "..", управляющих символов, и он не может быть пустым
+  public static boolean isValidLogin(String login) {
+    if (login == null || login.isBlank() || login.contains("..")) return false;
+    for (int i = 0; i < login.length(); i++) {
+      char c = login.charAt(i);
+      if (c == '/' || c == '\\' || Character.isISOControl(c)) return false;
+    }
+    return true;
+  }
+
+  // Возвращает false, если логин уже занят: из двух одновременных регистраций проходит одна
+  public boolean register(String login, String password) {
+    if (!isValidLogin(login)) throw new IllegalArgumentException(INVALID_LOGIN);
+    byte[] loginBytes = login.getBytes(StandardCharsets.UTF_8);
+    if (loginBytes.length > MAX_LOGIN_BYTES) {
+      throw new IllegalArgumentException("Слишком длинный логин");
+    }
+    if (index.containsKey(login)) return false;
+
+    // Хеш считается вне блокировки: это самая долгая часть регистрации
+    byte[] salt = new byte[SALT_BYTES];
+    random.nextBytes(salt);
+    byte[] hash = hash(password, salt, ITERATIONS);
+    ByteBuffer record = ByteBuffer.allocate(recordBytes(loginBytes.length));
+    record.putInt(record.capacity() - Integer.BYTES);
+    record.putShort((short) loginBytes.length).put(loginBytes);
+    record.putInt(ITERATIONS).put(salt).put(hash);
+    record.flip();
+
+    synchronized (this) {
+      if (index.containsKey(login)) return false;
+      try {
+        long offset = size;
+        while (record.hasRemaining()) channel.write(record, offset + record.position());
+        channel.force(false);
+        size = offset + record.capacity();
+        index.put(login, offset);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Не удалось сохранить пользователя в " + file, e);
+      }
+    }
+    return true;
+  }
+
+  public boolean checkPassword(String login, String password) {
+    Long offset = index.get(login);
+    if (offset == null) return false;
+
+    try {
+      ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+      readFully(length, offset);
+      ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+      readFully(record, offset + Integer.BYTES);
+      record.flip();
+      record.position(Short.BYTES + record.getShort());
+      int iterations = record.getInt();
+      byte[] salt = new byte[SALT_BYTES];
+      byte[] expected = new byte[HASH_BYTES];
+      record.get(salt).get(expected);
+      return MessageDigest.isEqual(expected, hash(password, salt, iterations));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Не удалось прочитать пользователя из " + file, e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void load() throws IOException {
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION);
+      header.flip();
+      channel.write(header, 0);
+      channel.force(false);
+      size = HEADER_BYTES;
+      return;
+    }
+
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+    if (in.readInt() != MAGIC) throw new IOException("Файл не является реестром пользователей");
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Неподдерживаемая версия реестра пользователей: " + version);
+    }
+
+    long offset = HEADER_BYTES;
+    long fileSize = channel.size();
+    while (offset < fileSize) {
+      try {
+        int length = in.readInt();
+        if (length < Short.BYTES || offset + Integer.BYTES + length > fileSize) break;
+        byte[] loginBytes = new byte[in.readShort()];
+        in.readFully(loginBytes);
+        in.skipNBytes(length - Short.BYTES - loginBytes.length);
+        index.put(new String(loginBytes, StandardCharsets.UTF_8), offset);
+        offset += Integer.BYTES + length;
+      } catch (EOFException e) {
+        break;
+      }
+    }
+    if (offset < fileSize) channel.truncate(offset);
+    size = offset;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Запись пользователя обрезана: " + file);
+      }
+    }
+  }
+
+  private static int recordBytes(int loginBytes) {
+    return Integer.BYTES + Short.BYTES + loginBytes + Integer.BYTES + SALT_BYTES + HASH_BYTES;
+  }
+
+  private static byte[] hash(String password, byte[] salt, int iterations) {
+    PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BYTES * 8);
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Алгоритм " + ALGORITHM + " недоступен", e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
@@ -1,99 +1,649 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 
 public class Wallet implements Serializable {
-  private final List<Transaction> transactions = new ArrayList<>();
-  private final Map<String, Category> categories = new LinkedHashMap<>();
+  // Изменения и тяжёлые запросы; простые геттеры итогов (чтение поля) не замеряются
+  private static final LatencyTimer ADD_TRANSACTION =
+      Metrics.global().timer("wallet.addTransaction");
+  private static final LatencyTimer ADD_TRANSACTIONS =
+      Metrics.global().timer("wallet.addTransactions");
+  private static final LatencyTimer ADD_CATEGORY = Metrics.global().timer("wallet.addCategory");
+  private static final LatencyTimer SAVE_BUDGET = Metrics.global().timer("wallet.saveBudget");
+  private static final LatencyTimer CATEGORY_SUMMARIES =
+      Metrics.global().timer("wallet.categorySummaries");
+  private static final LatencyTimer RANGE_SUM = Metrics.global().timer("wallet.rangeSum");
+  private static final LatencyTimer AGGREGATE = Metrics.global().timer("wallet.aggregate");
+  private static final ParallelAggregator AGGREGATOR = ParallelAggregator.fromSystemProperties();
+  private static final LongAdder TRANSACTIONS_ADDED =
+      Metrics.global().counter("wallet.transactions");
+
+  private final TransactionStore transactions = new TransactionStore();
+  private final CategoryDictionary categories = new CategoryDictionary();
+  // Номер последнего изменения; по нему журнал пропускает уже учтённые в снимке записи
+  private long version;
+
+  // Итоги пересчитываются при каждом добавлении операции и не сериализуются
+  // Итоги операций в основной валюте (Currency.BASE), в копейках (Money)
+  private transient long totalIncomes;
+  private transient long totalExpenses;
+  private transient long[] incomesByCategory = new long[0];
+  private transient long[] expensesByCategory = new long[0];
+  // Итоги по месяцам. Последний использованный раздел запоминается: почти все новые операции
+  // и проверки бюджета относятся к текущему месяцу, и искать его в дереве не нужно
+  private transient TreeMap<Integer, MonthlyTotals> months = new TreeMap<>();
+  private transient MonthlyTotals lastMonth;
+  // Итоги операций в остальных валютах, по номеру валюты; null — операций в валюте не было
+  private transient CurrencyTotals[] currencyTotals = new CurrencyTotals[Currency.count()];
+  // Индексы по датам, по номеру валюты; строятся при первом запросе за период и дальше
+  // обновляются вместе с итогами
+  private transient TransactionRangeIndex[] rangeIndexes;
+  private transient Clock clock = Clock.systemDefaultZone();
+  private transient List<WalletListener> listeners = new ArrayList<>();
 
   public Set<String> getAllCategories() {
-    return categories.keySet();
+    return categories.names();
   }
 
   public String getLastCategory() {
-    if (categories.isEmpty()) {
+    if (categories.size() == 0) {
       return null;
     }
 
     String lastKey = null;
-    for (String key : categories.keySet()) {
+    for (String key : categories.names()) {
       lastKey = key;
     }
     return lastKey;
   }
 
   public void addCategory(String categoryName) {
-    categories.put(categoryName, new Category(categoryName));
+    long started = LatencyTimer.start();
+    Category category = categories.put(categoryName);
+    ensureTotalsCapacity();
+    version++;
+    listeners.forEach(listener -> listener.onCategoryAdded(this, category));
+    ADD_CATEGORY.stop(started, transactions.size());
+  }
+
+  public void addExpenseTransaction(long sum, String categoryName) {
+    addExpenseTransaction(sum, categoryName, LocalDate.now(clock));
+  }
+
+  public void addExpenseTransaction(long sum, String categoryName, LocalDate date) {
+    addExpenseTransaction(sum, Currency.BASE, categoryName, date);
+  }
+
+  public void addExpenseTransaction(
+      long sum, Currency currency, String categoryName, LocalDate date) {
+    addTransaction(
+        sum, currency, getCategory(categoryName).getId(), TransactionType.EXPENSE, day(date));
+  }
+
+  public void addIncomeTransaction(long sum, String categoryName) {
+    addIncomeTransaction(sum, categoryName, LocalDate.now(clock));
+  }
+
+  public void addIncomeTransaction(long sum, String categoryName, LocalDate date) {
+    addIncomeTransaction(sum, Currency.BASE, categoryName, date);
+  }
+
+  public void addIncomeTransaction(
+      long sum, Currency currency, String categoryName, LocalDate date) {
+    addTransaction(
+        sum, currency, getCategory(categoryName).getId(), TransactionType.INCOME, day(date));
+  }
+
+  // Итоги пересчитываются по ходу, а версия и слушатели — один раз на всю пачку
+  public void addTransactions(TransactionBatch batch) {
+    if (batch.size() == 0) return;
+    long started = LatencyTimer.start();
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.category(i) < 0 || batch.category(i) >= categories.size()) {
+        throw new IllegalArgumentException("Неизвестный номер категории: " + batch.category(i));
+      }
+    }
+
+    // Переполнение итогов проверяется до изменений, чтобы пачка не добавилась наполовину
+    long[] incomes = new long[Currency.count()];
+    long[] expenses = new long[Currency.count()];
+    for (Currency currency : Currency.values()) {
+      incomes[currency.ordinal()] = getTotalIncomes(currency);
+      expenses[currency.ordinal()] = getTotalExpenses(currency);
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      int currency = batch.currency(i).ordinal();
+      if (batch.type(i) == TransactionType.INCOME) {
+        incomes[currency] = Money.add(incomes[currency], batch.sum(i));
+      } else {
+        expenses[currency] = Money.add(expenses[currency], batch.sum(i));
+      }
+    }
+
+    transactions.addAll(batch);
+    for (int i = 0; i < batch.size(); i++) {
+      accumulate(
+          batch.sum(i), batch.currency(i), batch.category(i), batch.type(i), batch.day(i));
+    }
+    version++;
+    listeners.forEach(listener -> listener.onTransactionsAdded(this, batch));
+    TRANSACTIONS_ADDED.add(batch.size());
+    ADD_TRANSACTIONS.stop(started, transactions.size());
+  }
+
+  public void saveCategoryBudget(String categoryName, long budget) {
+    long started = LatencyTimer.start();
+    Category category = getCategory(categoryName);
+    category.setBudget(budget);
+    version++;
+    listeners.forEach(listener -> listener.onBudgetSaved(this, category));
+    SAVE_BUDGET.stop(started, transactions.size());
+  }
+
+  public long getTotalExpenses() {
+    return totalExpenses;
+  }
+
+  public long getTotalIncomes() {
+    return totalIncomes;
+  }
+
+  // Итоги одной валюты без пересчёта
+  public long getTotalIncomes(Currency currency) {
+    if (currency == Currency.BASE) return totalIncomes;
+    CurrencyTotals totals = currencyTotals[currency.ordinal()];
+    return totals == null ? 0 : totals.getTotalIncomes();
+  }
+
+  public long getTotalExpenses(Currency currency) {
+    if (currency == Currency.BASE) return totalExpenses;
+    CurrencyTotals totals = currencyTotals[currency.ordinal()];
+    return totals == null ? 0 : totals.getTotalExpenses();
+  }
+
+  // Общие итоги в валюте отчёта: итог каждой валюты пересчитывается по курсу один раз
+  public long getTotalIncomes(FxRates rates, Currency currency) {
+    long total = rates.convert(totalIncomes, Currency.BASE, currency);
+    for (CurrencyTotals totals : getCurrencyTotals()) {
+      total =
+          Money.add(
+              total, rates.convert(totals.getTotalIncomes(), totals.getCurrency(), currency));
+    }
+    return total;
+  }
+
+  public long getTotalExpenses(FxRates rates, Currency currency) {
+    long total = rates.convert(totalExpenses, Currency.BASE, currency);
+    for (CurrencyTotals totals : getCurrencyTotals()) {
+      total =
+          Money.add(
+              total, rates.convert(totals.getTotalExpenses(), totals.getCurrency(), currency));
+    }
+    return total;
+  }
+
+  public long getExpensesByCategory(String categoryName) {
+    Category category = getCategory(categoryName);
+    return category == null ? 0 : expensesByCategory[category.getId()];
+  }
+
+  public long getIncomesByCategory(String categoryName) {
+    Category category = getCategory(categoryName);
+    return category == null ? 0 : incomesByCategory[category.getId()];
+  }
+
+  public long getExpensesByCategory(String categoryName, YearMonth month) {
+    Category category = getCategory(categoryName);
+    MonthlyTotals totals = months.get(MonthlyTotals.monthOf(month));
+    return category == null || totals == null ? 0 : totals.getExpenses(category.getId());
+  }
+
+  public long getIncomesByCategory(String categoryName, YearMonth month) {
+    Category category = getCategory(categoryName);
+    MonthlyTotals totals = months.get(MonthlyTotals.monthOf(month));
+    return category == null || totals == null ? 0 : totals.getIncomes(category.getId());
+  }
+
+  // Периоды включают обе границы; операции без даты в них не попадают. Итоги за период без курсов
+  // — только по операциям в основной валюте
+  public long getTotalIncomes(LocalDate from, LocalDate to) {
+    long started = LatencyTimer.start();
+    long sum = rangeIndex().sum(TransactionType.INCOME, day(from), day(to));
+    RANGE_SUM.stop(started, transactions.size());
+    return sum;
+  }
+
+  public long getTotalExpenses(LocalDate from, LocalDate to) {
+    long started = LatencyTimer.start();
+    long sum = rangeIndex().sum(TransactionType.EXPENSE, day(from), day(to));
+    RANGE_SUM.stop(started, transactions.size());
+    return sum;
   }
 
-  public void addExpenseTransaction(int sum, String categoryName) {
-    addTransaction(sum, categoryName, TransactionType.EXPENSE);
+  public long getIncomesByCategory(String categoryName, LocalDate from, LocalDate to) {
+    Category category = getCategory(categoryName);
+    if (category == null) return 0;
+    long started = LatencyTimer.start();
+    long sum = rangeIndex().sum(TransactionType.INCOME, category.getId(), day(from), day(to));
+    RANGE_SUM.stop(started, transactions.size());
+    return sum;
   }
 
-  public void addIncomeTransaction(int sum, String categoryName) {
-    addTransaction(sum, categoryName, TransactionType.INCOME);
+  public long getExpensesByCategory(String categoryName, LocalDate from, LocalDate to) {
+    Category category = getCategory(categoryName);
+    if (category == null) return 0;
+    long started = LatencyTimer.start();
+    long sum = rangeIndex().sum(TransactionType.EXPENSE, category.getId(), day(from), day(to));
+    RANGE_SUM.stop(started, transactions.size());
+    return sum;
   }
 
-  public void saveCategoryBudget(String categoryName, int budget) {
-    getCategory(categoryName).setBudget(budget);
+  // Итоги за период в валюте отчёта: сумма за период по каждой валюте пересчитывается по курсу
+  // один раз
+  public long getTotalIncomes(LocalDate from, LocalDate to, FxRates rates, Currency currency) {
+    return rangeSum(
+        rates, currency, index -> index.sum(TransactionType.INCOME, day(from), day(to)));
   }
 
-  public int getTotalExpenses() {
-    return transactions.stream()
-        .filter(transaction -> transaction.type() == TransactionType.EXPENSE)
-        .mapToInt(Transaction::sum)
-        .sum();
+  public long getTotalExpenses(LocalDate from, LocalDate to, FxRates rates, Currency currency) {
+    return rangeSum(
+        rates, currency, index -> index.sum(TransactionType.EXPENSE, day(from), day(to)));
   }
 
-  public int getTotalIncomes() {
-    return transactions.stream()
-        .filter(transaction -> transaction.type() == TransactionType.INCOME)
-        .mapToInt(Transaction::sum)
-        .sum();
+  public long getIncomesByCategory(
+      String categoryName, LocalDate from, LocalDate to, FxRates rates, Currency currency) {
+    Category category = getCategory(categoryName);
+    if (category == null) return 0;
+    return rangeSum(
+        rates,
+        currency,
+        index -> index.sum(TransactionType.INCOME, category.getId(), day(from), day(to)));
   }
 
-  public int getExpensesByCategory(String categoryName) {
-    return transactions.stream()
-        .filter(transaction -> transaction.type() == TransactionType.EXPENSE)
-        .filter(transaction -> transaction.category().getName().equals(categoryName))
-        .mapToInt(Transaction::sum)
-        .sum();
+  public long getExpensesByCategory(
+      String categoryName, LocalDate from, LocalDate to, FxRates rates, Currency currency) {
+    Category category = getCategory(categoryName);
+    if (category == null) return 0;
+    return rangeSum(
+        rates,
+        currency,
+        index -> index.sum(TransactionType.EXPENSE, category.getId(), day(from), day(to)));
   }
 
-  public int getIncomesByCategory(String categoryName) {
-    return transactions.stream()
-        .filter(transaction -> transaction.type() == TransactionType.INCOME)
-        .filter(transaction -> transaction.category().getName().equals(categoryName))
-        .mapToInt(Transaction::sum)
-        .sum();
+  public LocalDate getCurrentDate() {
+    return LocalDate.now(clock);
+  }
+
+  public Collection<MonthlyTotals> getMonthlyTotals() {
+    return Collections.unmodifiableCollection(months.values());
+  }
+
+  public MonthlyTotals getCurrentMonthTotals() {
+    int month = MonthlyTotals.monthOf(LocalDate.now(clock));
+    if (lastMonth == null || lastMonth.getMonth() != month) {
+      lastMonth = months.computeIfAbsent(month, MonthlyTotals::new);
+    }
+    return lastMonth;
   }
 
   public boolean hasCategory(String categoryName) {
     return getCategory(categoryName) != null;
   }
 
-  public int getBudgetByCategory(String categoryName) {
-    return categories.get(categoryName).getBudget();
+  public long getBudgetByCategory(String categoryName) {
+    return getCategory(categoryName).getBudget();
   }
 
-  public int getRemainingBudget(String categoryName) {
-    Category category = categories.get(categoryName);
+  // Бюджет категории месячный: остаток считается по расходам текущего месяца. Без курсов
+  // учитываются только расходы в основной валюте
+  public long getRemainingBudget(String categoryName) {
+    Category category = getCategory(categoryName);
 
-    int spent = getExpensesByCategory(categoryName);
+    long spent = getCurrentMonthTotals().getExpenses(category.getId());
     return category.getBudget() - spent;
   }
 
+  public long getRemainingBudget(String categoryName, FxRates rates) {
+    Category category = getCategory(categoryName);
+    return category.getBudget() - getCurrentMonthExpenses(category.getId(), rates);
+  }
+
+  // Расходы категории за текущий месяц в основной валюте: итог месяца каждой другой валюты
+  // пересчитывается по курсу один раз
+  public long getCurrentMonthExpenses(int categoryId, FxRates rates) {
+    MonthlyTotals month = getCurrentMonthTotals();
+    long spent = month.getExpenses(categoryId);
+    for (CurrencyTotals totals : currencyTotals) {
+      MonthlyTotals foreignMonth = totals == null ? null : totals.getMonth(month.getMonth());
+      if (foreignMonth == null) continue;
+      long foreign = foreignMonth.getExpenses(categoryId);
+      spent = Money.add(spent, rates.convert(foreign, totals.getCurrency(), Currency.BASE));
+    }
+    return spent;
+  }
+
+  public List<CategorySummary> getCategorySummaries() {
+    return getCategorySummaries(categories.names());
+  }
+
+  public List<CategorySummary> getCategorySummaries(Collection<String> categoryNames) {
+    long started = LatencyTimer.start();
+    List<CategorySummary> summaries = new ArrayList<>(categoryNames.size());
+    MonthlyTotals month = getCurrentMonthTotals();
+    for (String categoryName : categoryNames) {
+      Category category = getCategory(categoryName);
+      if (category == null) continue;
+
+      long income = incomesByCategory[category.getId()];
+      long expense = expensesByCategory[category.getId()];
+      long monthExpense = month.getExpenses(category.getId());
+      summaries.add(
+          new CategorySummary(
+              categoryName,
+              income,
+              expense,
+              monthExpense,
+              category.getBudget(),
+              category.getBudget() - monthExpense));
+    }
+    CATEGORY_SUMMARIES.stop(started, transactions.size());
+    return summaries;
+  }
+
+  // Итоги по категориям в валюте отчёта. Итоги каждой валюты по категории (и за текущий месяц)
+  // пересчитываются по курсу один раз, операции не читаются, поэтому смена курсов не требует
+  // прохода по истории. Бюджеты заданы в основной валюте и пересчитываются так же
+  public List<CategorySummary> getCategorySummaries(FxRates rates, Currency currency) {
+    return getCategorySummaries(categories.names(), rates, currency);
+  }
+
+  public List<CategorySummary> getCategorySummaries(
+      Collection<String> categoryNames, FxRates rates, Currency currency) {
+    long started = LatencyTimer.start();
+    List<CategorySummary> summaries = new ArrayList<>(categoryNames.size());
+    MonthlyTotals month = getCurrentMonthTotals();
+    Collection<CurrencyTotals> foreign = getCurrencyTotals();
+    for (String categoryName : categoryNames) {
+      Category category = getCategory(categoryName);
+      if (category == null) continue;
+
+      int id = category.getId();
+      long income = rates.convert(incomesByCategory[id], Currency.BASE, currency);
+      long expense = rates.convert(expensesByCategory[id], Currency.BASE, currency);
+      long monthExpense = rates.convert(month.getExpenses(id), Currency.BASE, currency);
+      for (CurrencyTotals totals : foreign) {
+        Currency from = totals.getCurrency();
+        income = Money.add(income, rates.convert(totals.getIncomes(id), from, currency));
+        expense = Money.add(expense, rates.convert(totals.getExpenses(id), from, currency));
+        MonthlyTotals foreignMonth = totals.getMonth(month.getMonth());
+        if (foreignMonth != null) {
+          monthExpense =
+              Money.add(monthExpense, rates.convert(foreignMonth.getExpenses(id), from, currency));
+        }
+      }
+      long budget = rates.convert(category.getBudget(), Currency.BASE, currency);
+      summaries.add(
+          new CategorySummary(
+              category.getName(), income, expense, monthExpense, budget, budget - monthExpense));
+    }
+    CATEGORY_SUMMARIES.stop(started, transactions.size());
+    return summaries;
+  }
+
+  // Итоги операций в валютах, кроме основной
+  public Collection<CurrencyTotals> getCurrencyTotals() {
+    List<CurrencyTotals> totals = new ArrayList<>();
+    for (CurrencyTotals currency : currencyTotals) {
+      if (currency != null) totals.add(currency);
+    }
+    return totals;
+  }
+
+  // Итоги по категориям операций, прошедших фильтр. Это полный проход по истории (на больших
+  // кошельках — параллельный); для обычных отчётов хватает готовых итогов выше
+  public CategoryTotals aggregate(TransactionFilter filter) {
+    return aggregate(filter, AGGREGATOR);
+  }
+
+  CategoryTotals aggregate(TransactionFilter filter, ParallelAggregator aggregator) {
+    long started = LatencyTimer.start();
+    CategoryTotals totals = aggregator.aggregate(transactions, categories.size(), filter);
+    AGGREGATE.stop(started, transactions.size());
+    return totals;
+  }
+
+  public int getTransactionCount() {
+    return transactions.size();
+  }
+
+  public Transaction getTransaction(int index) {
+    return new Transaction(
+        transactions.sum(index),
+        transactions.currency(index),
+        transactions.category(index),
+        transactions.type(index),
+        LocalDate.ofEpochDay(transactions.day(index)));
+  }
+
+  public Category getCategory(int id) {
+    return categories.get(id);
+  }
+
+  public Collection<Category> getCategories() {
+    return categories.all();
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public void addListener(WalletListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(WalletListener listener) {
+    listeners.remove(listener);
+  }
+
   public void copyFrom(Wallet other) {
-    this.transactions.clear();
-    this.transactions.addAll(other.transactions);
-    this.categories.clear();
-    this.categories.putAll(other.categories);
+    this.transactions.copyFrom(other.transactions);
+    this.categories.copyFrom(other.categories);
+    this.version = other.version;
+    // Итоги другого кошелька согласованы с его операциями, пересчитывать их не нужно
+    this.totalIncomes = other.totalIncomes;
+    this.totalExpenses = other.totalExpenses;
+    this.incomesByCategory = other.incomesByCategory.clone();
+    this.expensesByCategory = other.expensesByCategory.clone();
+    this.months = new TreeMap<>();
+    other.months.forEach((month, totals) -> this.months.put(month, totals.copy()));
+    this.currencyTotals = new CurrencyTotals[Currency.count()];
+    for (CurrencyTotals totals : other.getCurrencyTotals()) {
+      this.currencyTotals[totals.getCurrency().ordinal()] = totals.copy();
+    }
+    this.lastMonth = null;
+    this.rangeIndexes = null;
+  }
+
+  Category internCategory(String categoryName) {
+    Category category = categories.intern(categoryName);
+    ensureTotalsCapacity();
+    return category;
+  }
+
+  void addTransaction(long sum, int categoryId, TransactionType type, int day) {
+    addTransaction(sum, Currency.BASE, categoryId, type, day);
+  }
+
+  void addTransaction(long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    long started = LatencyTimer.start();
+    // Сначала итоги: при переполнении accumulate бросает исключение, ничего не изменив
+    accumulate(sum, currency, categoryId, type, day);
+    transactions.add(sum, currency, categoryId, type, day);
+    version++;
+    listeners.forEach(
+        listener -> listener.onTransactionAdded(this, sum, currency, categoryId, type, day));
+    TRANSACTIONS_ADDED.increment();
+    ADD_TRANSACTION.stop(started, transactions.size());
+  }
+
+  void restoreVersion(long version) {
+    this.version = version;
+  }
+
+  void setClock(Clock clock) {
+    this.clock = clock;
+    this.lastMonth = null;
+  }
+
+  // Подключает историю операций вместе с заранее посчитанными итогами, не читая сами операции
+  void restoreHistory(
+      TransactionSegment history,
+      long totalIncomes,
+      long totalExpenses,
+      long[] incomesByCategory,
+      long[] expensesByCategory,
+      Collection<MonthlyTotals> months,
+      Collection<CurrencyTotals> currencyTotals) {
+    transactions.restoreHistory(history);
+    this.totalIncomes = totalIncomes;
+    this.totalExpenses = totalExpenses;
+    this.incomesByCategory = Arrays.copyOf(incomesByCategory, categories.size());
+    this.expensesByCategory = Arrays.copyOf(expensesByCategory, categories.size());
+    this.months = new TreeMap<>();
+    months.forEach(totals -> this.months.put(totals.getMonth(), totals));
+    this.currencyTotals = new CurrencyTotals[Currency.count()];
+    currencyTotals.forEach(totals -> this.currencyTotals[totals.getCurrency().ordinal()] = totals);
+    this.lastMonth = null;
+    this.rangeIndexes = null;
+  }
+
+  // Общий итог не меньше итогов категорий и месяцев, поэтому переполнение достаточно проверить
+  // на нём
+  private void accumulate(
+      long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    if (currency != Currency.BASE) {
+      CurrencyTotals totals = currencyTotals[currency.ordinal()];
+      if (totals == null) {
+        totals = new CurrencyTotals(currency);
+        currencyTotals[currency.ordinal()] = totals;
+      }
+      totals.add(sum, categoryId, type, day);
+      if (rangeIndexes != null) index(rangeIndexes, sum, currency, categoryId, type, day);
+      return;
+    }
+
+    if (type == TransactionType.INCOME) {
+      totalIncomes = Money.add(totalIncomes, sum);
+      incomesByCategory[categoryId] += sum;
+    } else {
+      totalExpenses = Money.add(totalExpenses, sum);
+      expensesByCategory[categoryId] += sum;
+    }
+
+    int month = MonthlyTotals.monthOf(day);
+    if (lastMonth == null || lastMonth.getMonth() != month) {
+      lastMonth = months.computeIfAbsent(month, MonthlyTotals::new);
+    }
+    lastMonth.add(sum, categoryId, type);
+    if (rangeIndexes != null) index(rangeIndexes, sum, currency, categoryId, type, day);
+  }
+
+  private TransactionRangeIndex rangeIndex() {
+    return rangeIndexes()[Currency.BASE.ordinal()];
+  }
+
+  private TransactionRangeIndex[] rangeIndexes() {
+    if (rangeIndexes == null) {
+      TransactionRangeIndex[] indexes = new TransactionRangeIndex[Currency.count()];
+      indexes[Currency.BASE.ordinal()] = new TransactionRangeIndex();
+      for (int i = 0; i < transactions.size(); i++) {
+        index(
+            indexes,
+            transactions.sum(i),
+            transactions.currency(i),
+            transactions.category(i),
+            transactions.type(i),
+            transactions.day(i));
+      }
+      rangeIndexes = indexes;
+    }
+    return rangeIndexes;
+  }
+
+  private static void index(
+      TransactionRangeIndex[] indexes,
+      long sum,
+      Currency currency,
+      int categoryId,
+      TransactionType type,
+      int day) {
+    TransactionRangeIndex index = indexes[currency.ordinal()];
+    if (index == null) {
+      index = new TransactionRangeIndex();
+      indexes[currency.ordinal()] = index;
+    }
+    index.add(sum, categoryId, type, day);
+  }
+
+  private long rangeSum(
+      FxRates rates, Currency currency, ToLongFunction<TransactionRangeIndex> sum) {
+    long started = LatencyTimer.start();
+    TransactionRangeIndex[] indexes = rangeIndexes();
+    long total = 0;
+    for (Currency from : Currency.values()) {
+      TransactionRangeIndex index = indexes[from.ordinal()];
+      if (index != null) {
+        total = Money.add(total, rates.convert(sum.applyAsLong(index), from, currency));
+      }
+    }
+    RANGE_SUM.stop(started, transactions.size());
+    return total;
+  }
+
+  private static int day(LocalDate date) {
+    return (int) date.toEpochDay();
+  }
+
+  private void ensureTotalsCapacity() {
+    if (incomesByCategory.length < categories.size()) {
+      incomesByCategory = Arrays.copyOf(incomesByCategory, categories.size());
+      expensesByCategory = Arrays.copyOf(expensesByCategory, categories.size());
+    }
+  }
+
+  private void rebuildTotals() {
+    totalIncomes = 0;
+    totalExpenses = 0;
+    incomesByCategory = new long[categories.size()];
+    expensesByCategory = new long[categories.size()];
+    months = new TreeMap<>();
+    currencyTotals = new CurrencyTotals[Currency.count()];
+    lastMonth = null;
+    rangeIndexes = null;
+    for (int i = 0; i < transactions.size(); i++) {
+      accumulate(
+          transactions.sum(i),
+          transactions.currency(i),
+          transactions.category(i),
+          transactions.type(i),
+          transactions.day(i));
+    }
   }
 
-  private void addTransaction(int sum, String categoryName, TransactionType type) {
-    transactions.add(new Transaction(sum, getCategory(categoryName), type));
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    listeners = new ArrayList<>();
+    clock = Clock.systemDefaultZone();
+    rebuildTotals();
   }
 
-  private Category getCategory(String categoryName) {
+  Category getCategory(String categoryName) {
     return categories.get(categoryName);
   }
 }
@@ -0,0 +1,194 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Двоичный формат снимка кошелька:
+//   заголовок: "FFWB", версия формата, версия кошелька;
+//   таблица категорий: количество, затем имя (UTF-8) и бюджет каждой категории в порядке номеров;
+//   операции: количество, затем (номер категории << 1 | признак расхода), сумма, разница номера
+//   дня с предыдущей операцией и номер валюты;
+//   CRC32 всего предшествующего содержимого.
+// Числа записываются как varint, знаковые — в zigzag-кодировке. Суммы и бюджеты — в копейках.
+public final class WalletBinaryCodec {
+  static final int MAGIC = 0x46465742;
+  static final int FORMAT_VERSION = 1;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private WalletBinaryCodec() {}
+
+  public static void write(OutputStream target, Wallet wallet) throws IOException {
+    CRC32 crc = new CRC32();
+    DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new CheckedOutputStream(target, crc), BUFFER_SIZE));
+    out.writeInt(MAGIC);
+    writeVarLong(out, FORMAT_VERSION);
+    writeVarLong(out, wallet.getVersion());
+
+    writeVarLong(out, wallet.getCategories().size());
+    for (Category category : wallet.getCategories()) {
+      byte[] name = category.getName().getBytes(StandardCharsets.UTF_8);
+      writeVarLong(out, name.length);
+      out.write(name);
+      writeVarLong(out, zigzag(category.getBudget()));
+    }
+
+    writeVarLong(out, wallet.getTransactionCount());
+    long previousDay = TransactionStore.UNKNOWN_DAY;
+    for (int i = 0; i < wallet.getTransactionCount(); i++) {
+      Transaction transaction = wallet.getTransaction(i);
+      int expense = transaction.type() == TransactionType.EXPENSE ? 1 : 0;
+      long day = transaction.date().toEpochDay();
+      writeVarLong(out, ((long) transaction.categoryId() << 1) | expense);
+      writeVarLong(out, zigzag(transaction.sum()));
+      // Операции идут почти по порядку дат, поэтому разница обычно умещается в один байт
+      writeVarLong(out, zigzag(day - previousDay));
+      writeVarLong(out, transaction.currency().ordinal());
+      previousDay = day;
+    }
+
+    out.flush();
+    // Контрольная сумма пишется мимо CheckedOutputStream
+    DataOutputStream trailer = new DataOutputStream(target);
+    trailer.writeInt((int) crc.getValue());
+    trailer.flush();
+  }
+
+  public static Wallet read(InputStream source) throws IOException {
+    Input in = new Input(source);
+    if (in.readInt() != MAGIC) throw new IOException("Файл не является двоичным кошельком");
+    long formatVersion = readVarLong(in);
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException("Неподдерживаемая версия формата кошелька: " + formatVersion);
+    }
+
+    Wallet wallet = new Wallet();
+    long version = readVarLong(in);
+
+    int categories = readCount(in);
+    for (int i = 0; i < categories; i++) {
+      byte[] name = new byte[readCount(in)];
+      in.readFully(name);
+      Category category = wallet.internCategory(new String(name, StandardCharsets.UTF_8));
+      category.setBudget(unzigzag(readVarLong(in)));
+    }
+
+    int transactions = readCount(in);
+    int day = TransactionStore.UNKNOWN_DAY;
+    for (int i = 0; i < transactions; i++) {
+      long tag = readVarLong(in);
+      int categoryId = (int) (tag >>> 1);
+      if (categoryId >= categories) throw new IOException("Неизвестный номер категории: " + tag);
+      TransactionType type = (tag & 1) == 1 ? TransactionType.EXPENSE : TransactionType.INCOME;
+      long sum = unzigzag(readVarLong(in));
+      day += unzigzagInt(readVarLong(in));
+      Currency currency = readCurrency(in);
+      wallet.addTransaction(sum, currency, categoryId, type, day);
+    }
+
+    int expectedCrc = in.checksum();
+    if (in.readInt() != expectedCrc) {
+      throw new IOException("Контрольная сумма кошелька не совпадает");
+    }
+    wallet.restoreVersion(version);
+    return wallet;
+  }
+
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(Input in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IOException("Слишком длинное число varint");
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static int unzigzagInt(long value) {
+    return Math.toIntExact(unzigzag(value));
+  }
+
+  private static Currency readCurrency(Input in) throws IOException {
+    long ordinal = readVarLong(in);
+    if (ordinal < 0 || ordinal >= Currency.count()) {
+      throw new IOException("Неизвестный номер валюты: " + ordinal);
+    }
+    return Currency.of((int) ordinal);
+  }
+
+  private static int readCount(Input in) throws IOException {
+    long count = readVarLong(in);
+    if (count < 0 || count > Integer.MAX_VALUE) throw new IOException("Неверная длина: " + count);
+    return (int) count;
+  }
+
+  // Буферизованное чтение, считающее CRC32 блоками по мере потребления байтов
+  private static final class Input {
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private int position;
+    private int limit;
+    // Байты буфера до этой позиции уже учтены в crc
+    private int checksummed;
+
+    private Input(InputStream in) {
+      this.in = in;
+    }
+
+    byte readByte() throws IOException {
+      if (position == limit) refill();
+      return buffer[position++];
+    }
+
+    int readInt() throws IOException {
+      return ((readByte() & 0xFF) << 24)
+          | ((readByte() & 0xFF) << 16)
+          | ((readByte() & 0xFF) << 8)
+          | (readByte() & 0xFF);
+    }
+
+    void readFully(byte[] target) throws IOException {
+      int offset = 0;
+      while (offset < target.length) {
+        if (position == limit) refill();
+        int chunk = Math.min(target.length - offset, limit - position);
+        System.arraycopy(buffer, position, target, offset, chunk);
+        position += chunk;
+        offset += chunk;
+      }
+    }
+
+    int checksum() {
+      crc.update(buffer, checksummed, position - checksummed);
+      checksummed = position;
+      return (int) crc.getValue();
+    }
+
+    private void refill() throws IOException {
+      crc.update(buffer, checksummed, limit - checksummed);
+      checksummed = 0;
+      position = 0;
+      limit = Math.max(in.read(buffer), 0);
+      if (limit == 0) throw new EOFException("Неожиданный конец файла кошелька");
+    }
+  }
+}
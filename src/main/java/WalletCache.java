@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Пользователи, чьи кошельки загружены в память сервера. Кошелёк загружается при первом
+// обращении, а когда их становится больше ёмкости, выгружается тот, к которому дольше всего не
+// обращались (LRU). Кошельки с открытыми сессиями не выгружаются, пока сессии не истекут по
+// простою (AuthService); изменённый кошелёк перед выгрузкой сохраняется. Так память растёт с
+// числом активных пользователей, а не всех, кто когда-либо входил.
+public class WalletCache {
+  static final int DEFAULT_CAPACITY = Integer.getInteger("finflow.cache.wallets", 256);
+
+  private final FileService fileService;
+  // Пользователи, которых нельзя выгружать, например с открытыми сессиями
+  private final Predicate<String> pinned;
+  private final int capacity;
+  // Порядок обхода — от давно не использованных к недавним. Обе карты под блокировкой this
+  private final LinkedHashMap<String, User> resident = new LinkedHashMap<>(16, 0.75f, true);
+  // Выгружаемые прямо сейчас: повторная загрузка ждёт, пока кошелёк сохранится
+  private final Map<String, User> evicting = new HashMap<>();
+
+  public WalletCache(FileService fileService, Predicate<String> pinned, int capacity) {
+    this.fileService = fileService;
+    this.pinned = pinned;
+    this.capacity = capacity;
+  }
+
+  // Выполняет действие под блокировкой кошелька пользователя, при необходимости загрузив его
+  public <T> T withUser(String login, Function<User, T> action) {
+    try {
+      while (true) {
+        User user;
+        synchronized (this) {
+          user = resident.computeIfAbsent(login, User::new);
+        }
+
+        ReentrantLock lock = user.getWalletLock();
+        lock.lock();
+        try {
+          // Пока мы ждали блокировку, пользователя могли выгрузить
+          synchronized (this) {
+            if (resident.get(login) != user) continue;
+          }
+          if (!user.isLoaded()) {
+            awaitEviction(login);
+            fileService.loadWallet(login, user.getWallet());
+            user.markSaved();
+          }
+          return action.apply(user);
+        } finally {
+          lock.unlock();
+        }
+      }
+    } finally {
+      evictOverflow();
+    }
+  }
+
+  public synchronized int size() {
+    return resident.size();
+  }
+
+  public synchronized boolean isResident(String login) {
+    return resident.containsKey(login);
+  }
+
+  // Сохраняет и выгружает все кошельки, например при остановке сервера
+  public void close() {
+    List<User> users;
+    synchronized (this) {
+      users = new ArrayList<>(resident.values());
+      resident.clear();
+    }
+    for (User user : users) {
+      user.getWalletLock().lock();
+      try {
+        unload(user);
+      } finally {
+        user.getWalletLock().unlock();
+      }
+    }
+  }
+
+  private void evictOverflow() {
+    List<User> victims = new ArrayList<>();
+    synchronized (this) {
+      Iterator<User> users = resident.values().iterator();
+      while (resident.size() > capacity && users.hasNext()) {
+        User user = users.next();
+        // Занятый кошелёк сейчас используется, его не трогаем
+        if (!user.getWalletLock().tryLock()) continue;
+        if (pinned.test(user.getLogin())) {
+          user.getWalletLock().unlock();
+          continue;
+        }
+        users.remove();
+        evicting.put(user.getLogin(), user);
+        victims.add(user);
+      }
+    }
+
+    // Сохранение идёт без общей блокировки, под блокировкой кошелька выгружаемого пользователя
+    for (User user : victims) {
+      try {
+        unload(user);
+      } finally {
+        synchronized (this) {
+          evicting.remove(user.getLogin(), user);
+        }
+        user.getWalletLock().unlock();
+      }
+    }
+  }
+
+  private void unload(User user) {
+    if (!user.isLoaded()) return;
+    if (user.isDirty()) fileService.saveCurrentWallet(user);
+    fileService.closeWallet(user);
+  }
+
+  // Прежний экземпляр пользователя мог ещё не дописать кошелёк на диск
+  private void awaitEviction(String login) {
+    User previous;
+    synchronized (this) {
+      previous = evicting.get(login);
+    }
+    if (previous == null) return;
+    previous.getWalletLock().lock();
+    previous.getWalletLock().unlock();
+  }
+}
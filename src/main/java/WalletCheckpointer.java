@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Следит за размером журнала и при срабатывании политики делает контрольную точку: отмечает конец
+// текущего сегмента, а снимок кошелька и удаление старых сегментов выполняет в фоне. Ошибки
+// фоновой записи передаются errors.
+public class WalletCheckpointer implements WalletListener {
+  public interface SnapshotWriter {
+    void write(Wallet snapshot) throws IOException;
+  }
+
+  private final WalletJournal journal;
+  private final CheckpointPolicy policy;
+  private final ExecutorService executor;
+  private final SnapshotWriter snapshotWriter;
+  private final Consumer<Throwable> errors;
+
+  private Future<?> pending = CompletableFuture.completedFuture(null);
+
+  public WalletCheckpointer(
+      WalletJournal journal,
+      CheckpointPolicy policy,
+      ExecutorService executor,
+      SnapshotWriter snapshotWriter,
+      Consumer<Throwable> errors) {
+    this.journal = journal;
+    this.policy = policy;
+    this.executor = executor;
+    this.snapshotWriter = snapshotWriter;
+    this.errors = errors;
+  }
+
+  @Override
+  public void onCategoryAdded(Wallet wallet, Category category) {
+    checkpointIfDue(wallet);
+  }
+
+  @Override
+  public void onBudgetSaved(Wallet wallet, Category category) {
+    checkpointIfDue(wallet);
+  }
+
+  @Override
+  public void onTransactionAdded(
+      Wallet wallet, long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    checkpointIfDue(wallet);
+  }
+
+  @Override
+  public void onTransactionsAdded(Wallet wallet, TransactionBatch batch) {
+    checkpointIfDue(wallet);
+  }
+
+  public void checkpointIfDue(Wallet wallet) {
+    // Пока предыдущий снимок пишется, новую контрольную точку не начинаем
+    if (pending.isDone() && policy.isDue(journal.getRecordCount(), journal.size())) {
+      checkpoint(wallet);
+    }
+  }
+
+  public void checkpoint(Wallet wallet) {
+    CompletableFuture<List<Path>> sealed = journal.rotate();
+    // Копия колонок — быстрый arraycopy; дальше с ней работает только фоновый поток
+    Wallet snapshot = new Wallet();
+    snapshot.copyFrom(wallet);
+    pending = executor.submit(() -> writeSnapshot(snapshot, sealed));
+  }
+
+  public void awaitPending() {
+    try {
+      pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      errors.accept(e.getCause());
+    }
+  }
+
+  private void writeSnapshot(Wallet snapshot, CompletableFuture<List<Path>> sealed) {
+    try {
+      // Сегменты, закрытые до копии кошелька, закрывает фоновый поток записи журнала
+      List<Path> segments = sealed.get();
+      snapshotWriter.write(snapshot);
+      // Сегменты удаляются только после того, как снимок надёжно записан
+      for (Path segment : segments) Files.deleteIfExists(segment);
+    } catch (IOException e) {
+      // Сегменты остаются на диске, следующая контрольная точка повторит попытку
+      errors.accept(e);
+    } catch (ExecutionException e) {
+      errors.accept(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,437 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал изменений кошелька: каждая операция дописывается в конец файла одной короткой записью.
+// Запись: длина, тип, версия кошелька, данные, CRC32. Записи сначала копятся в буфере в памяти,
+// а на диск их пачкой (одна запись в файл и один fsync) сбрасывает фоновый WalletWriter, так что
+// команда пользователя не ждёт диска. При контрольной точке текущий файл закрывается как сегмент
+// <файл>.<номер> и начинается новый.
+public class WalletJournal implements WalletListener, Flushable, Closeable {
+  private static final byte ADD_CATEGORY = 1;
+  private static final byte SAVE_BUDGET = 2;
+  private static final byte INCOME = 3;
+  private static final byte EXPENSE = 4;
+  private static final byte BATCH = 5;
+
+  private static final int HEADER_BYTES = Integer.BYTES + Byte.BYTES + Long.BYTES;
+  private static final int MAX_RECORD_BYTES = 128 * 1024;
+  private static final int INITIAL_PENDING_BYTES = 4 * 1024;
+
+  // Размер сброса для метрик — число записей в пачке
+  private static final LatencyTimer FLUSH = Metrics.global().timer("journal.flush");
+  private static final LongAdder FLUSHED_BYTES = Metrics.global().counter("journal.bytes");
+
+  private final Path file;
+  // Без фонового писателя записи попадают на диск только при flush(), rotate() и close()
+  private final WalletWriter writer;
+  private final ByteBuffer buffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+  private final CRC32 crc = new CRC32();
+  // Записи и счётчики ниже меняет только поток, изменяющий кошелёк
+  private int recordCount;
+  private long bytes;
+
+  // Буфер записей, ещё не отданных в файл; меняется под блокировкой this
+  private byte[] pending = new byte[INITIAL_PENDING_BYTES];
+  private byte[] spare = new byte[INITIAL_PENDING_BYTES];
+  private int pendingBytes;
+  private int pendingRecords;
+  // Граница контрольной точки в буфере: записи до неё уходят в закрываемый сегмент
+  private int rotateAt = -1;
+  private CompletableFuture<List<Path>> rotation;
+  private boolean closing;
+  private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+  // Файл и номера сегментов трогает только сброс, под блокировкой io
+  private final Object io = new Object();
+  private FileChannel channel;
+  private long lastSegment;
+
+  private WalletJournal(Path file, FileChannel channel, WalletWriter writer) {
+    this.file = file;
+    this.channel = channel;
+    this.writer = writer;
+  }
+
+  public static WalletJournal open(Path file, Wallet wallet) throws IOException {
+    return open(file, wallet, null);
+  }
+
+  // Применяет к кошельку записи новее его версии и открывает журнал для дописывания
+  public static WalletJournal open(Path file, Wallet wallet, WalletWriter writer)
+      throws IOException {
+    List<Path> segments = sealedSegments(file);
+    for (Path segment : segments) {
+      try (FileChannel sealed = FileChannel.open(segment, StandardOpenOption.READ)) {
+        replay(sealed, wallet);
+      }
+    }
+
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    WalletJournal journal = new WalletJournal(file, channel, writer);
+    try {
+      long validBytes = journal.replayActive(wallet);
+      // Обрезаем недописанный хвост, оставшийся после аварийного завершения
+      if (validBytes < channel.size()) channel.truncate(validBytes);
+      channel.position(validBytes);
+      journal.bytes = validBytes;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    journal.lastSegment =
+        segments.isEmpty() ? 0 : segmentNumber(file, segments.get(segments.size() - 1));
+    return journal;
+  }
+
+  // Закрытые сегменты журнала в порядке записи
+  public static List<Path> sealedSegments(Path file) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    List<Path> segments = new ArrayList<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      files.filter(path -> segmentNumber(file, path) > 0).forEach(segments::add);
+    }
+    segments.sort(Comparator.comparingLong(path -> segmentNumber(file, path)));
+    return segments;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  // Размер текущего сегмента вместе с ещё не записанными записями
+  public long size() {
+    return bytes;
+  }
+
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  // Отмечает конец текущего сегмента: записи до этого места уйдут в закрытый сегмент, следующие —
+  // в новый файл. Возвращает все закрытые сегменты, когда сброс дойдёт до отметки
+  public CompletableFuture<List<Path>> rotate() {
+    CompletableFuture<List<Path>> sealed = new CompletableFuture<>();
+    synchronized (this) {
+      rotateAt = pendingBytes;
+      rotation = sealed;
+    }
+    recordCount = 0;
+    bytes = 0;
+    flushLater();
+    return sealed;
+  }
+
+  @Override
+  public void onCategoryAdded(Wallet wallet, Category category) {
+    byte[] name = category.getName().getBytes(StandardCharsets.UTF_8);
+    begin(ADD_CATEGORY, wallet.getVersion());
+    buffer.putInt(name.length).put(name);
+    append();
+  }
+
+  @Override
+  public void onBudgetSaved(Wallet wallet, Category category) {
+    begin(SAVE_BUDGET, wallet.getVersion());
+    buffer.putInt(category.getId()).putLong(category.getBudget());
+    append();
+  }
+
+  @Override
+  public void onTransactionAdded(
+      Wallet wallet, long sum, Currency currency, int categoryId, TransactionType type, int day) {
+    begin(type == TransactionType.INCOME ? INCOME : EXPENSE, wallet.getVersion());
+    buffer.putInt(categoryId).putLong(sum).putInt(day);
+    // Номер валюты дописывается только для операций не в основной валюте
+    if (currency != Currency.BASE) buffer.put((byte) currency.ordinal());
+    append();
+  }
+
+  // Вся пачка — одна запись: число операций, затем (номер категории << 1 | признак расхода),
+  // сумма и номер дня каждой операции. Если в пачке есть другие валюты, после операций идут
+  // номера их валют, по байту на операцию
+  @Override
+  public void onTransactionsAdded(Wallet wallet, TransactionBatch batch) {
+    begin(BATCH, wallet.getVersion());
+    buffer.putInt(batch.size());
+    boolean foreign = false;
+    for (int i = 0; i < batch.size(); i++) {
+      int expense = batch.type(i) == TransactionType.EXPENSE ? 1 : 0;
+      buffer.putInt((batch.category(i) << 1) | expense).putLong(batch.sum(i)).putInt(batch.day(i));
+      foreign |= batch.currency(i) != Currency.BASE;
+    }
+    if (foreign) {
+      for (int i = 0; i < batch.size(); i++) buffer.put((byte) batch.currency(i).ordinal());
+    }
+    append();
+  }
+
+  public synchronized boolean hasPending() {
+    return pendingRecords > 0 || rotation != null;
+  }
+
+  // Просит фоновый поток сбросить накопленное, не дожидаясь порога. Возвращает false, если
+  // сбрасывать нечего
+  public boolean flushLater() {
+    if (!hasPending() && !isClosing()) return false;
+    if (writer != null) {
+      writer.flushSoon(this);
+      return true;
+    }
+    try {
+      flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return true;
+  }
+
+  // Записывает накопленные записи в файл одной записью и сбрасывает их на диск
+  @Override
+  public void flush() throws IOException {
+    synchronized (io) {
+      long started = LatencyTimer.start();
+      byte[] data;
+      int length;
+      int records;
+      int split;
+      CompletableFuture<List<Path>> sealed;
+      boolean close;
+      synchronized (this) {
+        data = pending;
+        pending = spare;
+        spare = data;
+        length = pendingBytes;
+        records = pendingRecords;
+        split = rotateAt;
+        sealed = rotation;
+        close = closing;
+        pendingBytes = 0;
+        pendingRecords = 0;
+        rotateAt = -1;
+        rotation = null;
+      }
+      if (!channel.isOpen()) {
+        // Журнал уже закрыт или файл потерян после ошибки при закрытии сегмента
+        if (sealed != null) sealed.completeExceptionally(new IOException("Журнал закрыт: " + file));
+        if (close) closed.complete(null);
+        return;
+      }
+
+      try {
+        if (sealed != null) {
+          write(data, 0, split);
+          sealed.complete(seal());
+          write(data, split, length);
+        } else {
+          write(data, 0, length);
+        }
+        if (length > Math.max(split, 0)) channel.force(false);
+        if (length > 0) {
+          FLUSHED_BYTES.add(length);
+          FLUSH.stop(started, records);
+        }
+      } catch (IOException e) {
+        if (sealed != null) sealed.completeExceptionally(e);
+        throw new IOException("Не удалось записать журнал кошелька: " + file, e);
+      } finally {
+        if (close) {
+          try {
+            channel.close();
+          } finally {
+            closed.complete(null);
+          }
+        }
+      }
+    }
+  }
+
+  // Закрывает журнал после того, как фоновый поток допишет накопленное; сам не ждёт записи
+  public CompletableFuture<Void> closeLater() {
+    synchronized (this) {
+      closing = true;
+    }
+    flushLater();
+    return closed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeLater().join();
+  }
+
+  private synchronized boolean isClosing() {
+    return closing;
+  }
+
+  private void begin(byte type, long version) {
+    buffer.clear();
+    buffer.position(Integer.BYTES);
+    buffer.put(type).putLong(version);
+  }
+
+  private void append() {
+    int length = buffer.position() - Integer.BYTES;
+    buffer.putInt(0, length);
+    crc.reset();
+    crc.update(buffer.array(), Integer.BYTES, length);
+    buffer.putInt((int) crc.getValue());
+
+    int recordBytes = buffer.position();
+    int pendingNow;
+    synchronized (this) {
+      if (pendingBytes + recordBytes > pending.length) {
+        pending = Arrays.copyOf(pending, Math.max(2 * pending.length, pendingBytes + recordBytes));
+      }
+      System.arraycopy(buffer.array(), 0, pending, pendingBytes, recordBytes);
+      pendingBytes += recordBytes;
+      pendingNow = ++pendingRecords;
+    }
+    recordCount++;
+    bytes += recordBytes;
+    if (writer != null) writer.changed(this, pendingNow);
+  }
+
+  // Вызывается под блокировкой io
+  private void write(byte[] data, int from, int to) throws IOException {
+    ByteBuffer chunk = ByteBuffer.wrap(data, from, to - from);
+    while (chunk.hasRemaining()) channel.write(chunk);
+  }
+
+  // Вызывается под блокировкой io
+  private List<Path> seal() throws IOException {
+    channel.force(false);
+    channel.close();
+    Path sealed = file.resolveSibling(file.getFileName() + "." + (++lastSegment));
+    Files.move(file, sealed, StandardCopyOption.ATOMIC_MOVE);
+    channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return sealedSegments(file);
+  }
+
+  private long replayActive(Wallet wallet) throws IOException {
+    Replayed replayed = replay(channel, wallet);
+    recordCount = replayed.records();
+    return replayed.validBytes();
+  }
+
+  // Номер сегмента <файл>.<номер> или -1. После "<файл>." должно идти только число: иначе
+  // a.journal.journal.7 пользователя "a.journal" считался бы сегментом журнала a.journal
+  private static long segmentNumber(Path file, Path segment) {
+    String prefix = file.getFileName() + ".";
+    String name = segment.getFileName().toString();
+    if (!name.startsWith(prefix)) return -1;
+    String number = name.substring(prefix.length());
+    if (number.isEmpty() || number.charAt(0) == '0') return -1;
+    for (int i = 0; i < number.length(); i++) {
+      if (number.charAt(i) < '0' || number.charAt(i) > '9') return -1;
+    }
+    try {
+      return Long.parseLong(number);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static Replayed replay(FileChannel channel, Wallet wallet) throws IOException {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+    byte[] record = new byte[MAX_RECORD_BYTES];
+    CRC32 crc = new CRC32();
+    long validBytes = 0;
+    int records = 0;
+    long remaining = channel.size();
+    while (remaining >= Integer.BYTES) {
+      int length = in.readInt();
+      if (length < HEADER_BYTES - Integer.BYTES
+          || length > MAX_RECORD_BYTES
+          || length + 2L * Integer.BYTES > remaining) break;
+
+      in.readFully(record, 0, length);
+      crc.reset();
+      crc.update(record, 0, length);
+      if ((int) crc.getValue() != in.readInt()) break;
+
+      ByteBuffer data = ByteBuffer.wrap(record, 0, length);
+      byte type = data.get();
+      long version = data.getLong();
+      if (version > wallet.getVersion()) {
+        apply(wallet, type, data);
+        wallet.restoreVersion(version);
+      }
+
+      validBytes += length + 2L * Integer.BYTES;
+      remaining -= length + 2L * Integer.BYTES;
+      records++;
+    }
+    return new Replayed(validBytes, records);
+  }
+
+  private static void apply(Wallet wallet, byte type, ByteBuffer data) {
+    switch (type) {
+      case ADD_CATEGORY -> {
+        byte[] name = new byte[data.getInt()];
+        data.get(name);
+        wallet.addCategory(new String(name, StandardCharsets.UTF_8));
+      }
+      case SAVE_BUDGET -> {
+        Category category = wallet.getCategory(data.getInt());
+        wallet.saveCategoryBudget(category.getName(), data.getLong());
+      }
+      case INCOME, EXPENSE -> {
+        int categoryId = data.getInt();
+        long sum = data.getLong();
+        int day = data.getInt();
+        // Номер валюты пишется только для операций не в основной валюте
+        Currency currency = data.hasRemaining() ? Currency.of(data.get()) : Currency.BASE;
+        wallet.addTransaction(
+            sum,
+            currency,
+            categoryId,
+            type == INCOME ? TransactionType.INCOME : TransactionType.EXPENSE,
+            day);
+      }
+      case BATCH -> {
+        TransactionBatch batch = new TransactionBatch();
+        int count = data.getInt();
+        // Номера валют, если они есть, лежат после всех операций пачки
+        int currencies = data.position() + count * (2 * Integer.BYTES + Long.BYTES);
+        boolean foreign = data.limit() - currencies >= count;
+        for (int i = 0; i < count; i++) {
+          int tag = data.getInt();
+          TransactionType transactionType =
+              (tag & 1) == 1 ? TransactionType.EXPENSE : TransactionType.INCOME;
+          long sum = data.getLong();
+          Currency currency = foreign ? Currency.of(data.get(currencies + i)) : Currency.BASE;
+          batch.add(sum, currency, tag >>> 1, transactionType, data.getInt());
+        }
+        wallet.addTransactions(batch);
+      }
+      default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+    }
+  }
+
+  private record Replayed(long validBytes, int records) {}
+}
@@ -0,0 +1,22 @@
+// Получает уведомления об изменениях кошелька после того, как они применены
+public interface WalletListener {
+  default void onCategoryAdded(Wallet wallet, Category category) {}
+
+  default void onBudgetSaved(Wallet wallet, Category category) {}
+
+  default void onTransactionAdded(
+      Wallet wallet, long sum, Currency currency, int categoryId, TransactionType type, int day) {}
+
+  // Пачка применяется одним изменением; по умолчанию о каждой операции сообщается отдельно
+  default void onTransactionsAdded(Wallet wallet, TransactionBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      onTransactionAdded(
+          wallet,
+          batch.sum(i),
+          batch.currency(i),
+          batch.category(i),
+          batch.type(i),
+          batch.day(i));
+    }
+  }
+}
@@ -0,0 +1,230 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Формат снимка для отображения в память:
+//   заголовок: "FFWM", версия формата, версия кошелька, число категорий и операций,
+//   смещение сегмента операций;
+//   таблица категорий: имя (UTF-8) и бюджет;
+//   итоги: общие доходы и расходы, затем доходы и расходы по каждой категории;
+//   итоги по месяцам: количество месяцев, затем для каждого номер месяца, общие доходы и расходы
+//   и доходы и расходы по каждой категории;
+//   итоги других валют: их количество, затем для каждой номер валюты, общие итоги, итоги по
+//   категориям и по месяцам в том же виде;
+//   CRC32 всего перечисленного;
+//   сегмент операций фиксированной ширины (см. MappedTransactionSegment), выровненный по 8 байтам,
+//   и за ним номера валют операций, по байту на операцию.
+// При чтении разбираются только заголовок, категории и итоги, операции остаются в файле.
+// Суммы, бюджеты и итоги — в копейках (long).
+public final class WalletMappedCodec {
+  static final int MAGIC = 0x4646574D;
+  static final int FORMAT_VERSION = 1;
+
+  private static final int HEADER_BYTES = 5 * Integer.BYTES + Long.BYTES;
+  private static final int ALIGNMENT = 8;
+
+  private WalletMappedCodec() {}
+
+  public static void write(Path file, Wallet wallet) throws IOException {
+    ByteArrayOutputStream meta = new ByteArrayOutputStream();
+    DataOutputStream metaOut = new DataOutputStream(meta);
+    long[] incomes = new long[wallet.getCategories().size()];
+    long[] expenses = new long[incomes.length];
+    for (Category category : wallet.getCategories()) {
+      byte[] name = category.getName().getBytes(StandardCharsets.UTF_8);
+      metaOut.writeInt(name.length);
+      metaOut.write(name);
+      metaOut.writeLong(category.getBudget());
+      incomes[category.getId()] = wallet.getIncomesByCategory(category.getName());
+      expenses[category.getId()] = wallet.getExpensesByCategory(category.getName());
+    }
+    metaOut.writeLong(wallet.getTotalIncomes());
+    metaOut.writeLong(wallet.getTotalExpenses());
+    for (int i = 0; i < incomes.length; i++) {
+      metaOut.writeLong(incomes[i]);
+      metaOut.writeLong(expenses[i]);
+    }
+    writeMonths(metaOut, wallet.getMonthlyTotals(), incomes.length);
+    metaOut.writeInt(wallet.getCurrencyTotals().size());
+    for (CurrencyTotals totals : wallet.getCurrencyTotals()) {
+      metaOut.writeInt(totals.getCurrency().ordinal());
+      metaOut.writeLong(totals.getTotalIncomes());
+      metaOut.writeLong(totals.getTotalExpenses());
+      for (int i = 0; i < incomes.length; i++) {
+        metaOut.writeLong(totals.getIncomes(i));
+        metaOut.writeLong(totals.getExpenses(i));
+      }
+      writeMonths(metaOut, totals.getMonthlyTotals(), incomes.length);
+    }
+
+    long unaligned = HEADER_BYTES + meta.size() + Integer.BYTES;
+    int padding = (int) ((ALIGNMENT - unaligned % ALIGNMENT) % ALIGNMENT);
+    long transactionsOffset = unaligned + padding;
+
+    CRC32 crc = new CRC32();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(wallet.getVersion());
+    header.putInt(incomes.length).putInt(wallet.getTransactionCount());
+    header.putInt((int) transactionsOffset);
+    crc.update(header.array());
+    crc.update(meta.toByteArray());
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+      out.write(header.array());
+      meta.writeTo(out);
+      out.writeInt((int) crc.getValue());
+      out.write(new byte[padding]);
+      for (int i = 0; i < wallet.getTransactionCount(); i++) {
+        Transaction transaction = wallet.getTransaction(i);
+        int expense = transaction.type() == TransactionType.EXPENSE ? 1 : 0;
+        out.writeLong(transaction.sum());
+        out.writeInt((transaction.categoryId() << 1) | expense);
+        out.writeInt((int) transaction.date().toEpochDay());
+      }
+      for (int i = 0; i < wallet.getTransactionCount(); i++) {
+        out.writeByte(wallet.getTransaction(i).currency().ordinal());
+      }
+    }
+  }
+
+  public static Wallet read(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // Отображение остаётся действительным после закрытия канала
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Файл не является отображаемым кошельком: " + file);
+    }
+    int formatVersion = buffer.getInt(Integer.BYTES);
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException("Неподдерживаемая версия формата кошелька: " + file);
+    }
+
+    buffer.position(2 * Integer.BYTES);
+    long version = buffer.getLong();
+    int categoryCount = buffer.getInt();
+    int transactionCount = buffer.getInt();
+    int transactionsOffset = buffer.getInt();
+
+    Wallet wallet = new Wallet();
+    for (int i = 0; i < categoryCount; i++) {
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      Category category = wallet.internCategory(new String(name, StandardCharsets.UTF_8));
+      category.setBudget(buffer.getLong());
+    }
+    long totalIncomes = buffer.getLong();
+    long totalExpenses = buffer.getLong();
+    long[] incomes = new long[categoryCount];
+    long[] expenses = new long[categoryCount];
+    for (int i = 0; i < categoryCount; i++) {
+      incomes[i] = buffer.getLong();
+      expenses[i] = buffer.getLong();
+    }
+    List<MonthlyTotals> months = readMonths(buffer, categoryCount);
+    int currencyCount = buffer.getInt();
+    List<CurrencyTotals> currencyTotals = new ArrayList<>(currencyCount);
+    for (int c = 0; c < currencyCount; c++) {
+      Currency currency = Currency.of(buffer.getInt());
+      long currencyIncomes = buffer.getLong();
+      long currencyExpenses = buffer.getLong();
+      long[] currencyIncomesByCategory = new long[categoryCount];
+      long[] currencyExpensesByCategory = new long[categoryCount];
+      for (int i = 0; i < categoryCount; i++) {
+        currencyIncomesByCategory[i] = buffer.getLong();
+        currencyExpensesByCategory[i] = buffer.getLong();
+      }
+      currencyTotals.add(
+          new CurrencyTotals(
+              currency,
+              currencyIncomes,
+              currencyExpenses,
+              currencyIncomesByCategory,
+              currencyExpensesByCategory,
+              readMonths(buffer, categoryCount)));
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(buffer.duplicate().position(0).limit(buffer.position()));
+    if ((int) crc.getValue() != buffer.getInt()) {
+      throw new IOException("Контрольная сумма кошелька не совпадает: " + file);
+    }
+
+    long segmentBytes = (long) transactionCount * MappedTransactionSegment.RECORD_BYTES;
+    long currencyBytes = transactionCount;
+    if (transactionCount < 0
+        || transactionsOffset < 0
+        || transactionsOffset + segmentBytes + currencyBytes > buffer.limit()) {
+      throw new IOException("Сегмент операций обрезан: " + file);
+    }
+    ByteBuffer segment =
+        buffer
+            .duplicate()
+            .position(transactionsOffset)
+            .limit((int) (transactionsOffset + segmentBytes))
+            .slice();
+    ByteBuffer currencies =
+        buffer
+            .duplicate()
+            .position((int) (transactionsOffset + segmentBytes))
+            .limit((int) (transactionsOffset + segmentBytes + currencyBytes))
+            .slice();
+    wallet.restoreHistory(
+        new MappedTransactionSegment(segment, transactionCount, currencies),
+        totalIncomes,
+        totalExpenses,
+        incomes,
+        expenses,
+        months,
+        currencyTotals);
+    wallet.restoreVersion(version);
+    return wallet;
+  }
+
+  private static void writeMonths(
+      DataOutputStream out, Collection<MonthlyTotals> months, int categoryCount)
+      throws IOException {
+    out.writeInt(months.size());
+    for (MonthlyTotals month : months) {
+      out.writeInt(month.getMonth());
+      out.writeLong(month.getTotalIncomes());
+      out.writeLong(month.getTotalExpenses());
+      for (int i = 0; i < categoryCount; i++) {
+        out.writeLong(month.getIncomes(i));
+        out.writeLong(month.getExpenses(i));
+      }
+    }
+  }
+
+  private static List<MonthlyTotals> readMonths(ByteBuffer buffer, int categoryCount) {
+    int monthCount = buffer.getInt();
+    List<MonthlyTotals> months = new ArrayList<>(monthCount);
+    for (int m = 0; m < monthCount; m++) {
+      int month = buffer.getInt();
+      long monthIncomes = buffer.getLong();
+      long monthExpenses = buffer.getLong();
+      long[] monthIncomesByCategory = new long[categoryCount];
+      long[] monthExpensesByCategory = new long[categoryCount];
+      for (int i = 0; i < categoryCount; i++) {
+        monthIncomesByCategory[i] = buffer.getLong();
+        monthExpensesByCategory[i] = buffer.getLong();
+      }
+      months.add(
+          new MonthlyTotals(
+              month, monthIncomes, monthExpenses, monthIncomesByCategory, monthExpensesByCategory));
+    }
+    return months;
+  }
+}
@@ -0,0 +1,120 @@
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Потоковое чтение и запись кошелька без рефлексии. Категории пишутся один раз перед операциями,
+// операции ссылаются на номер категории. Файлы прежнего формата (словарь категорий и категория
+// целиком внутри каждой операции) читаются с дедупликацией категорий по имени.
+public class WalletTypeAdapter extends TypeAdapter<Wallet> {
+  private static final String VERSION = "version";
+  private static final String CATEGORIES = "categories";
+  private static final String TRANSACTIONS = "transactions";
+
+  private final CategoryTypeAdapter categoryAdapter = new CategoryTypeAdapter();
+  private final TransactionTypeAdapter transactionAdapter = new TransactionTypeAdapter();
+
+  @Override
+  public void write(JsonWriter out, Wallet wallet) throws IOException {
+    if (wallet == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    out.name(VERSION).value(wallet.getVersion());
+
+    out.name(CATEGORIES).beginArray();
+    for (Category category : wallet.getCategories()) categoryAdapter.write(out, category);
+    out.endArray();
+
+    out.name(TRANSACTIONS).beginArray();
+    for (int i = 0; i < wallet.getTransactionCount(); i++) {
+      transactionAdapter.write(out, wallet.getTransaction(i));
+    }
+    out.endArray();
+
+    out.endObject();
+  }
+
+  @Override
+  public Wallet read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    Wallet wallet = new Wallet();
+    Map<Integer, Category> categoriesById = new HashMap<>();
+    TransactionTypeAdapter transactions =
+        new TransactionTypeAdapter(
+            embedded -> {
+              Category category = readCategory(wallet, embedded);
+              categoriesById.put(category.getId(), category);
+              return category.getId();
+            });
+    Long version = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case VERSION -> version = in.nextLong();
+        case CATEGORIES -> readCategories(in, wallet, categoriesById);
+        case TRANSACTIONS -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            Transaction transaction = transactions.read(in);
+            Category category = categoriesById.get(transaction.categoryId());
+            if (category == null) {
+              throw new JsonParseException("Неизвестный номер категории: " + in.getPath());
+            }
+            wallet.addTransaction(
+                transaction.sum(),
+                transaction.currency(),
+                category.getId(),
+                transaction.type(),
+                (int) transaction.date().toEpochDay());
+          }
+          in.endArray();
+        }
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+
+    if (version != null) wallet.restoreVersion(version);
+    return wallet;
+  }
+
+  private void readCategories(JsonReader in, Wallet wallet, Map<Integer, Category> categoriesById)
+      throws IOException {
+    if (in.peek() == JsonToken.BEGIN_ARRAY) {
+      in.beginArray();
+      while (in.hasNext()) {
+        Category stored = categoryAdapter.read(in);
+        categoriesById.put(stored.getId(), readCategory(wallet, stored));
+      }
+      in.endArray();
+    } else {
+      in.beginObject();
+      while (in.hasNext()) {
+        in.nextName();
+        readCategory(wallet, categoryAdapter.read(in));
+      }
+      in.endObject();
+    }
+  }
+
+  private Category readCategory(Wallet wallet, Category stored) {
+    Category existing = wallet.getCategory(stored.getName());
+    if (existing != null) return existing;
+
+    Category category = wallet.internCategory(stored.getName());
+    category.setBudget(stored.getBudget());
+    return category;
+  }
+}
@@ -0,0 +1,106 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Фоновая запись кошельков на диск (write-behind). Изменения копятся в памяти (например, в буфере
+// журнала), а один фоновый поток сбрасывает их одной записью и одним fsync: через delayMillis
+// после первого несохранённого изменения или сразу, когда их накопилось maxPending. Команды
+// пользователя не ждут диска. Задачи выполняются строго по очереди, поэтому запись, поставленная
+// раньше, и на диск попадает раньше.
+public class WalletWriter implements Closeable {
+  static final long DEFAULT_DELAY_MILLIS = Long.getLong("finflow.writebehind.millis", 1000);
+  static final int DEFAULT_MAX_PENDING = Integer.getInteger("finflow.writebehind.records", 256);
+
+  public interface Task {
+    void run() throws IOException;
+  }
+
+  private final ScheduledThreadPoolExecutor executor =
+      new ScheduledThreadPoolExecutor(
+          1,
+          task -> {
+            Thread thread = new Thread(task, "wallet-writer");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final long delayMillis;
+  private final int maxPending;
+  private final Consumer<IOException> errors;
+  // Цели, для которых уже запланирован отложенный сброс
+  private final Set<Flushable> scheduled = ConcurrentHashMap.newKeySet();
+
+  public WalletWriter(long delayMillis, int maxPending, Consumer<IOException> errors) {
+    this.delayMillis = delayMillis;
+    this.maxPending = maxPending;
+    this.errors = errors;
+    // Отложенные сбросы при остановке не ждём: close() сбрасывает их цели сразу
+    executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+  // Вызывается после каждого изменения цели с числом несохранённых изменений
+  public void changed(Flushable target, int pending) {
+    if (pending == maxPending) {
+      flushSoon(target);
+    } else if (scheduled.add(target)) {
+      try {
+        executor.schedule(() -> flush(target), delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        flush(target);
+      }
+    }
+  }
+
+  public void flushSoon(Flushable target) {
+    submit(target::flush);
+  }
+
+  // Ставит задачу в очередь записи. После close() задача выполняется сразу в вызывающем потоке
+  public CompletableFuture<Void> submit(Task task) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    Runnable run =
+        () -> {
+          try {
+            task.run();
+          } catch (IOException e) {
+            errors.accept(e);
+          } finally {
+            done.complete(null);
+          }
+        };
+    try {
+      executor.execute(run);
+    } catch (RejectedExecutionException e) {
+      run.run();
+    }
+    return done;
+  }
+
+  // Сбрасывает всё накопленное и дожидается окончания записи
+  @Override
+  public void close() {
+    for (Flushable target : scheduled) flushSoon(target);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flush(Flushable target) {
+    // Снимаем отметку до сброса: изменение, сделанное во время сброса, запланирует новый
+    scheduled.remove(target);
+    try {
+      target.flush();
+    } catch (IOException e) {
+      errors.accept(e);
+    }
+  }
+}
@@ -1,18 +1,46 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class AuthServiceTest {
+  private static final String FILE_USERS = "users.db";
+
   private final String login = "login";
   private final String password = "password";
   private final String otherLogin = "other login";
   private final String otherPassword = "other password";
 
+  @TempDir Path dir;
+
+  private UserStore store;
+
+  @BeforeEach
+  void openStore() throws Exception {
+    store = UserStore.open(dir.resolve(FILE_USERS));
+  }
+
+  @AfterEach
+  void closeStore() throws Exception {
+    store.close();
+  }
+
   @Test
-  void saveUserAndCheckLogin() {
-    AuthService auth = new AuthService();
-    User u = new User(login, password);
-    auth.saveUser(u);
+  void registerAndCheckLogin() {
+    AuthService auth = new AuthService(store);
+    assertTrue(auth.register(login, password));
+    assertFalse(auth.register(login, otherPassword));
 
     assertTrue(auth.checkLogin(login));
     assertFalse(auth.checkLogin(otherLogin));
@@ -20,8 +48,8 @@ public class AuthServiceTest {
 
   @Test
   void checkPasswordWorks() {
-    AuthService auth = new AuthService();
-    auth.saveUser(new User(login, password));
+    AuthService auth = new AuthService(store);
+    auth.register(login, password);
 
     assertTrue(auth.checkPassword(login, password));
     assertFalse(auth.checkPassword(login, otherPassword));
@@ -29,16 +57,69 @@ public class AuthServiceTest {
   }
 
   @Test
-  void setAndGetCurrentUser() {
-    AuthService auth = new AuthService();
-    auth.saveUser(new User(login, password));
-    auth.saveUser(new User(otherLogin, otherPassword));
+  void usersSurviveReopenWithoutPlainPasswords() throws Exception {
+    AuthService auth = new AuthService(store);
+    auth.register(login, password);
+    auth.register(otherLogin, otherPassword);
+    store.close();
+    // Оборванная запись в конце файла, как после сбоя во время регистрации
+    Files.write(dir.resolve(FILE_USERS), new byte[] {0, 0, 0, 42, 1}, StandardOpenOption.APPEND);
+
+    store = UserStore.open(dir.resolve(FILE_USERS));
+    AuthService reopened = new AuthService(store);
+    assertEquals(2, store.size());
+    assertTrue(reopened.checkPassword(login, password));
+    assertTrue(reopened.checkPassword(otherLogin, otherPassword));
+    assertFalse(reopened.checkPassword(login, otherPassword));
+    assertFalse(new String(Files.readAllBytes(dir.resolve(FILE_USERS))).contains(password));
+    assertTrue(reopened.register("third", password));
+  }
+
+  @Test
+  void sessionsAreIndependent() {
+    AuthService auth = new AuthService(store);
+    User user = new User(login);
+    User other = new User(otherLogin);
+
+    String first = auth.openSession(user);
+    String second = auth.openSession(user);
+    String otherSession = auth.openSession(other);
+    assertNotEquals(first, second);
+    assertSame(user, auth.getSessionUser(first));
+    assertSame(other, auth.getSessionUser(otherSession));
 
-    auth.setCurrentUser(login);
-    assertNotNull(auth.getCurrentUser());
-    assertEquals(login, auth.getCurrentUser().getLogin());
+    assertSame(user, auth.closeSession(first));
+    assertNull(auth.getSessionUser(first));
+    assertTrue(auth.hasSessions(login));
+
+    auth.closeSession(second);
+    assertFalse(auth.hasSessions(login));
+    assertTrue(auth.hasSessions(otherLogin));
+    assertNull(auth.closeSession(second));
+  }
+
+  @Test
+  void concurrentRegistrationAcceptsOneUser() throws Exception {
+    AuthService auth = new AuthService(store);
+    int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      String threadPassword = password + i;
+      results.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return auth.register(login, threadPassword);
+              }));
+    }
+    start.countDown();
 
-    auth.logout();
-    assertNull(auth.getCurrentUser());
+    int accepted = 0;
+    for (Future<Boolean> result : results) if (result.get()) accepted++;
+    executor.shutdown();
+    assertEquals(1, accepted);
+    assertEquals(1, store.size());
   }
 }
@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BudgetAlertsTest {
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final String CATEGORY_TAXI = "Такси";
+  private static final String CATEGORY_SALARY = "Зарплата";
+
+  private static final int BUDGET_FOOD = 1000;
+  private static final int BUDGET_TAXI = 500;
+  private static final int INCOME_SALARY = 5000;
+
+  private static final LocalDate DATE_TODAY = LocalDate.of(2024, 3, 15);
+  private static final LocalDate DATE_LAST_MONTH = LocalDate.of(2024, 2, 10);
+  private static final LocalDate DATE_NEXT_MONTH = LocalDate.of(2024, 4, 2);
+
+  private Wallet wallet;
+  private BudgetAlerts alerts;
+
+  @BeforeEach
+  void setUp() {
+    wallet = new Wallet();
+    wallet.setClock(fixedClock(DATE_TODAY));
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addCategory(CATEGORY_TAXI);
+    wallet.addCategory(CATEGORY_SALARY);
+    wallet.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    wallet.saveCategoryBudget(CATEGORY_TAXI, BUDGET_TAXI);
+    wallet.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+    alerts = new BudgetAlerts(wallet, 120, 80, 100);
+    wallet.addListener(alerts);
+  }
+
+  @Test
+  void alertFiresOnceWhenThresholdIsCrossed() {
+    wallet.addExpenseTransaction(700, CATEGORY_FOOD);
+    assertTrue(alerts.takeAlerts().isEmpty());
+
+    wallet.addExpenseTransaction(200, CATEGORY_FOOD);
+    assertEquals(
+        List.of(new BudgetAlert(CATEGORY_FOOD, 80, BUDGET_FOOD, 900)), alerts.takeAlerts());
+
+    // Порог уже пройден: следующие операции ниже 100% молчат
+    wallet.addExpenseTransaction(50, CATEGORY_FOOD);
+    assertTrue(alerts.takeAlerts().isEmpty());
+
+    // Через два порога сразу — одно оповещение о старшем
+    wallet.addExpenseTransaction(500, CATEGORY_FOOD);
+    assertEquals(
+        List.of(new BudgetAlert(CATEGORY_FOOD, 120, BUDGET_FOOD, 1450)), alerts.takeAlerts());
+  }
+
+  @Test
+  void expensesOfOtherMonthsDoNotCountAndNewMonthRearms() {
+    wallet.addExpenseTransaction(BUDGET_TAXI * 2, CATEGORY_TAXI, DATE_LAST_MONTH);
+    assertTrue(alerts.takeAlerts().isEmpty());
+
+    wallet.addExpenseTransaction(BUDGET_TAXI + 1, CATEGORY_TAXI);
+    assertEquals(100, alerts.takeAlerts().get(0).threshold());
+
+    wallet.setClock(fixedClock(DATE_NEXT_MONTH));
+    assertTrue(alerts.getExceededBudgets().isEmpty());
+    wallet.addExpenseTransaction(BUDGET_TAXI + 1, CATEGORY_TAXI);
+    assertEquals(100, alerts.takeAlerts().get(0).threshold());
+  }
+
+  @Test
+  void loweredBudgetAndOverspendingRaiseAlerts() {
+    wallet.addExpenseTransaction(400, CATEGORY_TAXI);
+    wallet.saveCategoryBudget(CATEGORY_TAXI, 300);
+    assertEquals(List.of(new BudgetAlert(CATEGORY_TAXI, 120, 300, 400)), alerts.takeAlerts());
+
+    wallet.addExpenseTransaction(INCOME_SALARY, CATEGORY_FOOD);
+    List<BudgetAlert> taken = alerts.takeAlerts();
+    assertEquals(2, taken.size());
+    assertTrue(taken.get(1).isTotal());
+    assertEquals(INCOME_SALARY + 400, taken.get(1).amount());
+
+    wallet.addExpenseTransaction(1, CATEGORY_SALARY);
+    assertTrue(alerts.takeAlerts().isEmpty());
+  }
+
+  @Test
+  void exceededBudgetsAreOrderedByOverspending() {
+    wallet.addExpenseTransaction(BUDGET_TAXI + 300, CATEGORY_TAXI);
+    wallet.addExpenseTransaction(BUDGET_FOOD + 100, CATEGORY_FOOD);
+    wallet.addExpenseTransaction(BUDGET_FOOD, CATEGORY_SALARY);
+
+    List<BudgetAlert> exceeded = alerts.getExceededBudgets();
+    assertEquals(2, exceeded.size());
+    assertEquals(CATEGORY_TAXI, exceeded.get(0).category());
+    assertEquals(BUDGET_TAXI + 300, exceeded.get(0).amount());
+    assertEquals(CATEGORY_FOOD, exceeded.get(1).category());
+  }
+
+  @Test
+  void foreignExpensesAreConvertedIntoBudget() {
+    FxRates rates = new FxRates(List.of("EUR = 100"));
+    BudgetAlerts converted = new BudgetAlerts(wallet, () -> rates, 100);
+    wallet.addListener(converted);
+
+    // 9 и 2 евроцента по 100 — 900 и 200 копеек
+    wallet.addExpenseTransaction(9, Currency.EUR, CATEGORY_FOOD, DATE_TODAY);
+    assertTrue(converted.takeAlerts().isEmpty());
+    wallet.addExpenseTransaction(2, Currency.EUR, CATEGORY_FOOD, DATE_TODAY);
+    assertEquals(
+        List.of(new BudgetAlert(CATEGORY_FOOD, 100, BUDGET_FOOD, 1100)), converted.takeAlerts());
+    assertEquals(BUDGET_FOOD - 1100, wallet.getRemainingBudget(CATEGORY_FOOD, rates));
+    assertEquals(1100, converted.getExceededBudgets().get(0).amount());
+
+    // Без курсов учитываются только расходы в основной валюте
+    assertTrue(alerts.takeAlerts().isEmpty());
+    assertEquals(BUDGET_FOOD, wallet.getRemainingBudget(CATEGORY_FOOD));
+  }
+
+  private static Clock fixedClock(LocalDate date) {
+    return Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,128 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Сквозной нагрузочный прогон CLI: FinFlowApp выполняет сценарий WalletGenerator в пакетном
+// режиме на сгенерированных кошельках, а для каждой команды замеряется время выполнения.
+// В конце печатаются перцентили задержки по видам команд. По умолчанию журнал включён, как в
+// интерактивном режиме; вывод приложения отбрасывается, но форматируется как обычно.
+//
+//   gradle cliLoadTest [-Dfinflow.load.dir=data] [-Dfinflow.load.script=data/load-script.txt]
+//       [-Dfinflow.load.journal=true] [-Dfinflow.storage.format=json]
+public class CliLoadHarness {
+  private static final String STATS = "stats";
+  private static final Set<String> STATS_SUBCOMMANDS =
+      Set.of("cat", "cats", "range", "last", "file");
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  // Время команды — от выдачи её строки приложению до запроса следующей строки
+  private static final class TimingReader extends BufferedReader {
+    private final Map<String, Latencies> latencies = new TreeMap<>();
+    private String command;
+    private long started;
+
+    TimingReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+      long now = System.nanoTime();
+      if (command != null) {
+        latencies.computeIfAbsent(command, key -> new Latencies()).add(now - started);
+      }
+      String line = super.readLine();
+      command = line == null ? null : commandOf(line.trim());
+      started = System.nanoTime();
+      return line;
+    }
+  }
+
+  private static final class Latencies {
+    private long[] nanos = new long[1024];
+    private int count;
+
+    void add(long value) {
+      if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+      nanos[count++] = value;
+    }
+
+    long[] sorted() {
+      long[] sorted = Arrays.copyOf(nanos, count);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path dir = Paths.get(System.getProperty("finflow.load.dir", "data"));
+    Path script =
+        Paths.get(
+            System.getProperty(
+                "finflow.load.script", dir.resolve(WalletGenerator.SCRIPT_FILE).toString()));
+    boolean journal = Boolean.parseBoolean(System.getProperty("finflow.load.journal", "true"));
+
+    FileService fileService =
+        new FileService(
+            dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.fromSystemProperties());
+    fileService.setJournalEnabled(journal);
+    FinFlowApp app = new FinFlowApp(fileService, new Output(Writer.nullWriter()));
+
+    long started = System.nanoTime();
+    int errors;
+    TimingReader reader = new TimingReader(Files.newBufferedReader(script, StandardCharsets.UTF_8));
+    try (reader) {
+      errors = app.runBatch(reader);
+    }
+    long totalMillis = (System.nanoTime() - started) / 1_000_000;
+
+    System.out.printf(
+        "Сценарий: %s, журнал: %s, время: %d мс, ошибок: %d%n",
+        script, journal ? "да" : "нет", totalMillis, errors);
+    System.out.printf("%-12s %8s", "Команда", "Кол-во");
+    for (double p : PERCENTILES) System.out.printf(" %10s", "p" + format(p) + ", мс");
+    System.out.printf(" %10s%n", "max, мс");
+    reader.latencies.forEach(
+        (command, latencies) -> {
+          long[] sorted = latencies.sorted();
+          System.out.printf("%-12s %8d", command, sorted.length);
+          for (double p : PERCENTILES) System.out.printf(" %10.3f", millis(percentile(sorted, p)));
+          System.out.printf(" %10.3f%n", millis(sorted[sorted.length - 1]));
+        });
+  }
+
+  private static String commandOf(String line) {
+    if (line.isEmpty() || line.startsWith("#")) return null;
+    String[] words = line.split("\\s+", 3);
+    String command = words[0].toLowerCase();
+    if (command.equals(STATS)
+        && words.length > 1
+        && STATS_SUBCOMMANDS.contains(words[1].toLowerCase())) {
+      command += " " + words[1].toLowerCase();
+    }
+    return command;
+  }
+
+  // Перцентиль по ближайшему рангу
+  private static long percentile(long[] sorted, double p) {
+    int rank = (int) Math.ceil(p / 100 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static String format(double p) {
+    return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+  }
+}
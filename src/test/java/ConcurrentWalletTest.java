@@ -0,0 +1,161 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentWalletTest {
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final String CATEGORY_TAXI = "Такси";
+  private static final String CATEGORY_SALARY = "Зарплата";
+  private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+  private static final int THREADS = 8;
+  private static final int OPERATIONS_PER_THREAD = 20_000;
+  private static final int EXPENSE_FOOD = 3;
+  private static final int EXPENSE_TAXI = 5;
+  private static final int INCOME_SALARY = 7;
+  private static final int INITIAL_EXPENSE = 100;
+
+  @Test
+  void parallelWritersLoseNothing() throws Exception {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addExpenseTransaction(INITIAL_EXPENSE, CATEGORY_FOOD, DATE);
+    ConcurrentWallet concurrent = new ConcurrentWallet(wallet);
+    concurrent.addCategory(CATEGORY_TAXI);
+    concurrent.addCategory(CATEGORY_SALARY);
+
+    AtomicBoolean writing = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      writers.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                  concurrent.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE);
+                  concurrent.addExpenseTransaction(EXPENSE_TAXI, CATEGORY_TAXI, DATE);
+                  concurrent.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY, DATE);
+                }
+                return null;
+              }));
+    }
+    // Снимки и переносы в кошелёк идут одновременно с записью
+    Future<Integer> reader =
+        executor.submit(
+            () -> {
+              start.await();
+              int inconsistent = 0;
+              while (writing.get()) {
+                ConcurrentWallet.Totals totals = concurrent.getTotals();
+                long expenses = 0;
+                for (long sum : totals.expensesByCategory()) expenses += sum;
+                if (expenses != totals.totalExpenses()) inconsistent++;
+                concurrent.flush();
+              }
+              return inconsistent;
+            });
+    start.countDown();
+    for (Future<?> writer : writers) writer.get();
+    writing.set(false);
+
+    assertEquals(0, (int) reader.get());
+    executor.shutdown();
+
+    long operations = (long) THREADS * OPERATIONS_PER_THREAD;
+    long foodExpenses = INITIAL_EXPENSE + operations * EXPENSE_FOOD;
+    assertEquals(foodExpenses, concurrent.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(operations * EXPENSE_TAXI, concurrent.getExpensesByCategory(CATEGORY_TAXI));
+    assertEquals(operations * INCOME_SALARY, concurrent.getTotalIncomes());
+    assertEquals(foodExpenses + operations * EXPENSE_TAXI, concurrent.getTotalExpenses());
+
+    int transactions = concurrent.withWallet(Wallet::getTransactionCount);
+    assertEquals(1 + 3 * operations, transactions);
+    assertEquals(concurrent.getTotalExpenses(), wallet.getTotalExpenses());
+    assertEquals(concurrent.getTotalIncomes(), wallet.getTotalIncomes());
+    assertEquals(foodExpenses, wallet.getExpensesByCategory(CATEGORY_FOOD, DATE, DATE));
+  }
+
+  @Test
+  void overflowingAmountIsRejectedBeforeItIsAccepted() {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addExpenseTransaction(Long.MAX_VALUE - EXPENSE_FOOD, CATEGORY_FOOD, DATE);
+    ConcurrentWallet concurrent = new ConcurrentWallet(wallet);
+
+    assertThrows(
+        ArithmeticException.class,
+        () -> concurrent.addExpenseTransaction(EXPENSE_TAXI, CATEGORY_FOOD, DATE));
+    assertEquals(Long.MAX_VALUE - EXPENSE_FOOD, concurrent.getTotalExpenses());
+    assertEquals(0, concurrent.flush());
+    assertEquals(1, wallet.getTransactionCount());
+  }
+
+  @Test
+  void overflowingOperationIsDroppedAndNextFlushSucceeds() {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addCategory(CATEGORY_SALARY);
+    ConcurrentWallet concurrent = new ConcurrentWallet(wallet);
+    concurrent.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE);
+    // Кошелёк меняется в обход счётчиков ConcurrentWallet, и следующий расход его переполнит
+    concurrent.withWallet(
+        w -> {
+          w.addExpenseTransaction(Long.MAX_VALUE - EXPENSE_FOOD, CATEGORY_FOOD, DATE);
+          return null;
+        });
+    concurrent.addExpenseTransaction(EXPENSE_TAXI, CATEGORY_FOOD, DATE);
+    concurrent.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY, DATE);
+
+    // Доход из той же пачки принят, переполняющий расход отброшен и вычтен из итогов
+    assertThrows(ArithmeticException.class, concurrent::flush);
+    assertEquals(3, wallet.getTransactionCount());
+    assertEquals(EXPENSE_FOOD, concurrent.getTotalExpenses());
+    assertEquals(wallet.getTotalIncomes(), concurrent.getTotalIncomes());
+
+    assertEquals(0, concurrent.flush());
+    concurrent.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY, DATE);
+    assertEquals(1, concurrent.flush());
+    assertEquals(2 * INCOME_SALARY, wallet.getTotalIncomes());
+  }
+
+  @Test
+  void batchAcceptedByWalletIsNotRepeatedAfterListenerFailure() {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    AtomicBoolean fail = new AtomicBoolean(true);
+    wallet.addListener(
+        new WalletListener() {
+          @Override
+          public void onTransactionsAdded(Wallet w, TransactionBatch batch) {
+            if (batch.size() > 0 && fail.getAndSet(false)) {
+              throw new IllegalStateException("Журнал недоступен");
+            }
+          }
+        });
+    ConcurrentWallet concurrent = new ConcurrentWallet(wallet);
+    concurrent.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE);
+
+    assertThrows(IllegalStateException.class, concurrent::flush);
+    assertEquals(0, concurrent.flush());
+    assertEquals(1, wallet.getTransactionCount());
+    assertEquals(concurrent.getTotalExpenses(), wallet.getTotalExpenses());
+  }
+
+  @Test
+  void unknownCategoryIsRejected() {
+    ConcurrentWallet concurrent = new ConcurrentWallet(new Wallet());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> concurrent.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE));
+    assertEquals(0, concurrent.flush());
+  }
+}
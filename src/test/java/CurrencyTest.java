@@ -0,0 +1,224 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CurrencyTest {
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final String CATEGORY_SALARY = "Зарплата";
+
+  private static final long INCOME_SALARY = 100_000_00;
+  private static final long EXPENSE_FOOD = 1_000_00;
+  private static final long EXPENSE_FOOD_EUR = 10_00;
+  private static final long EXPENSE_FOOD_USD = 5_50;
+  private static final long BUDGET_FOOD = 5_000_00;
+
+  private static final List<String> RATES = List.of("# курсы", "EUR = 100", "USD = 90,5");
+  // 10 EUR по 100 и 5.50 USD по 90.5
+  private static final long EXPECTED_FOOD_RUB = 1_000_00 + 1_000_00 + 497_75;
+  private static final long EXPECTED_FOOD_EUR = 10_00 + 10_00 + 4_98;
+
+  private static final LocalDate DATE_TODAY = LocalDate.of(2024, 3, 15);
+  private static final LocalDate DATE_LAST_MONTH = LocalDate.of(2024, 2, 10);
+
+  private static final String FILE_RATES = "fx-rates.txt";
+  private static final String FILE_JOURNAL = "login.journal";
+  private static final String FILE_BINARY_SNAPSHOT = "login.wallet.bin";
+  private static final String FILE_MAPPED_SNAPSHOT = "login.wallet.map";
+
+  @TempDir Path dir;
+
+  private Wallet wallet;
+
+  @BeforeEach
+  void setUp() {
+    wallet = new Wallet();
+    wallet.setClock(
+        Clock.fixed(DATE_TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+  }
+
+  @Test
+  void foreignTransactionsAreKeptApartAndConvertedInReports() {
+    fillWallet(wallet);
+    FxRates rates = new FxRates(RATES);
+
+    // Итоги основной валюты, бюджеты и периоды считаются без других валют
+    assertEquals(EXPENSE_FOOD, wallet.getTotalExpenses());
+    assertEquals(EXPENSE_FOOD, wallet.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(BUDGET_FOOD - EXPENSE_FOOD, wallet.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(EXPENSE_FOOD_EUR, wallet.getTotalExpenses(Currency.EUR));
+    assertEquals(2, wallet.getCurrencyTotals().size());
+
+    assertEquals(EXPECTED_FOOD_RUB, wallet.getTotalExpenses(rates, Currency.RUB));
+    assertEquals(EXPECTED_FOOD_EUR, wallet.getTotalExpenses(rates, Currency.EUR));
+    assertEquals(INCOME_SALARY, wallet.getTotalIncomes(rates, Currency.RUB));
+
+    CategorySummary food = wallet.getCategorySummaries(rates, Currency.EUR).get(0);
+    assertEquals(EXPECTED_FOOD_EUR, food.expense());
+    // Расход в долларах сделан в прошлом месяце
+    assertEquals(20_00, food.monthExpense());
+    assertEquals(50_00, food.budget());
+    assertEquals(30_00, food.remaining());
+  }
+
+  @Test
+  void rangeTotalsIncludeForeignTransactions() {
+    fillWallet(wallet);
+    FxRates rates = new FxRates(RATES);
+
+    assertEquals(EXPENSE_FOOD, wallet.getTotalExpenses(DATE_TODAY, DATE_TODAY));
+    assertEquals(
+        2 * EXPENSE_FOOD, wallet.getTotalExpenses(DATE_TODAY, DATE_TODAY, rates, Currency.RUB));
+    assertEquals(
+        EXPECTED_FOOD_EUR,
+        wallet.getExpensesByCategory(
+            CATEGORY_FOOD, DATE_LAST_MONTH, DATE_TODAY, rates, Currency.EUR));
+
+    // Индекс уже построен и дополняется новыми операциями в любой валюте
+    wallet.addExpenseTransaction(EXPENSE_FOOD_EUR, Currency.EUR, CATEGORY_FOOD, DATE_TODAY);
+    assertEquals(
+        3 * EXPENSE_FOOD, wallet.getTotalExpenses(DATE_TODAY, DATE_TODAY, rates, Currency.RUB));
+  }
+
+  @Test
+  void missingRateIsReported() {
+    fillWallet(wallet);
+    FxRates rates = new FxRates(List.of("EUR = 100"));
+
+    assertFalse(rates.hasRate(Currency.USD));
+    assertThrows(
+        IllegalStateException.class, () -> wallet.getTotalExpenses(rates, Currency.RUB));
+    assertThrows(IllegalArgumentException.class, () -> new FxRates(List.of("GBP = 120")));
+  }
+
+  @Test
+  void changedRatesFileIsReloadedWithoutRescan() throws Exception {
+    fillWallet(wallet);
+    Path file = dir.resolve(FILE_RATES);
+    Files.write(file, RATES, StandardCharsets.UTF_8);
+    FxRateCache cache = new FxRateCache(file);
+
+    FxRates first = cache.get();
+    assertSame(first, cache.get());
+    assertEquals(EXPECTED_FOOD_RUB, wallet.getTotalExpenses(first, Currency.RUB));
+
+    Files.write(file, List.of("EUR = 110", "USD = 90,5"), StandardCharsets.UTF_8);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+    FxRates second = cache.get();
+    assertNotEquals(first, second);
+    assertEquals(EXPECTED_FOOD_RUB + 100_00, wallet.getTotalExpenses(second, Currency.RUB));
+  }
+
+  @Test
+  void currencySurvivesEveryFormat() throws Exception {
+    Path journalFile = dir.resolve(FILE_JOURNAL);
+    try (WalletJournal journal = WalletJournal.open(journalFile, wallet)) {
+      wallet.addListener(journal);
+      fillWallet(wallet);
+      TransactionBatch batch = new TransactionBatch();
+      batch.add(EXPENSE_FOOD_EUR, Currency.EUR, 0, TransactionType.EXPENSE, day(DATE_TODAY));
+      batch.add(EXPENSE_FOOD, Currency.RUB, 0, TransactionType.EXPENSE, day(DATE_TODAY));
+      wallet.addTransactions(batch);
+    }
+
+    Path mapped = dir.resolve(FILE_MAPPED_SNAPSHOT);
+    WalletMappedCodec.write(mapped, wallet);
+    Path binary = dir.resolve(FILE_BINARY_SNAPSHOT);
+    try (OutputStream out = Files.newOutputStream(binary)) {
+      WalletBinaryCodec.write(out, wallet);
+    }
+    Gson gson =
+        new GsonBuilder().registerTypeAdapter(Wallet.class, new WalletTypeAdapter()).create();
+
+    Wallet fromJournal = new Wallet();
+    WalletJournal.open(journalFile, fromJournal).close();
+    Wallet fromBinary;
+    try (InputStream in = Files.newInputStream(binary)) {
+      fromBinary = WalletBinaryCodec.read(in);
+    }
+    Wallet fromJson = gson.fromJson(gson.toJson(wallet), Wallet.class);
+    Wallet fromMapped = WalletMappedCodec.read(mapped);
+
+    FxRates rates = new FxRates(RATES);
+    for (Wallet loaded : new Wallet[] {fromJournal, fromBinary, fromJson, fromMapped}) {
+      assertEquals(Currency.EUR, loaded.getTransaction(2).currency());
+      assertEquals(Currency.RUB, loaded.getTransaction(5).currency());
+      assertEquals(2 * EXPENSE_FOOD, loaded.getTotalExpenses());
+      assertEquals(2 * EXPENSE_FOOD_EUR, loaded.getTotalExpenses(Currency.EUR));
+      assertEquals(
+          wallet.getTotalExpenses(rates, Currency.EUR),
+          loaded.getTotalExpenses(rates, Currency.EUR));
+    }
+    // Итоги отображённого снимка читаются из файла, а не из истории
+    fromMapped.addExpenseTransaction(EXPENSE_FOOD_USD, Currency.USD, CATEGORY_FOOD, DATE_TODAY);
+    assertEquals(2 * EXPENSE_FOOD_USD, fromMapped.getTotalExpenses(Currency.USD));
+  }
+
+  @Test
+  void appRecordsInlineCurrencyAndReportsConvertedTotals() throws Exception {
+    Path rates = dir.resolve(FILE_RATES);
+    Files.write(rates, RATES, StandardCharsets.UTF_8);
+    String script =
+        "register login password\n"
+            + "login login password\n"
+            + "addcat Еда\n"
+            + "addexp Еда 1000\n"
+            + "addexp Еда 10 eur 2024-03-01\n"
+            + "addexp Еда 10 GBP\n"
+            + "stats\n"
+            + "stats cats Еда\n"
+            + "stats range 2024-03-01 2024-03-01\n";
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setJournalEnabled(false);
+    StringBuilder output = new StringBuilder();
+
+    System.setProperty("finflow.fx.rates", rates.toString());
+    System.setProperty("finflow.report.currency", "EUR");
+    int errors;
+    try {
+      errors =
+          new FinFlowApp(fileService, new Output(output))
+              .runBatch(new BufferedReader(new StringReader(script)));
+    } finally {
+      System.clearProperty("finflow.fx.rates");
+      System.clearProperty("finflow.report.currency");
+    }
+    fileService.shutdown();
+
+    String text = output.toString();
+    // Неизвестный код валюты принимается за дату
+    assertEquals(0, errors);
+    assertTrue(text.contains("Неверная дата операции: GBP"));
+    assertTrue(text.contains("Валюта отчёта: EUR"));
+    assertTrue(text.contains("Общие расходы: 20"));
+    assertTrue(text.contains("Суммарные расходы по выбранным категориям: 20"));
+    assertTrue(text.contains("Расходы за период: 10"));
+  }
+
+  private static void fillWallet(Wallet wallet) {
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addCategory(CATEGORY_SALARY);
+    wallet.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    wallet.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY, DATE_TODAY);
+    wallet.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE_TODAY);
+    wallet.addExpenseTransaction(EXPENSE_FOOD_EUR, Currency.EUR, CATEGORY_FOOD, DATE_TODAY);
+    wallet.addExpenseTransaction(EXPENSE_FOOD_USD, Currency.USD, CATEGORY_FOOD, DATE_LAST_MONTH);
+  }
+
+  private static int day(LocalDate date) {
+    return (int) date.toEpochDay();
+  }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FinFlowAppTest {
+
+  private static final String SCRIPT =
+      "# сценарий\n"
+          + "register login password\n"
+          + "login login password\n"
+          + "addcat \"Коммунальные услуги\"\n"
+          + "setbudget \"Коммунальные услуги\" 3000\n"
+          + "addexp \"Коммунальные услуги\" 3500 2024-03-01\n"
+          + "addexp Еда 100\n"
+          + "addinc \"Коммунальные услуги\"\n"
+          + "stats range 2024-03-01 2024-03-31\n";
+
+  private static final String FILE_SNAPSHOT = "login.wallet.json";
+  private static final String FILE_JOURNAL = "login.journal";
+
+  private static final int REPORT_CATEGORIES = 500;
+
+  private static final WalletGenerator.Settings GENERATED =
+      new WalletGenerator.Settings(
+          2, 12, 5000, 200, WalletGenerator.Distribution.LOGNORMAL, 1000, 365, 42);
+
+  @TempDir Path dir;
+
+  @Test
+  void batchScriptRunsWithoutPromptsAndSavesOnce() throws Exception {
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setJournalEnabled(false);
+    StringBuilder output = new StringBuilder();
+    FinFlowApp app = new FinFlowApp(fileService, new Output(output));
+
+    int errors = app.runBatch(new BufferedReader(new StringReader(SCRIPT)));
+
+    String text = output.toString();
+    assertEquals(2, errors);
+    assertTrue(text.contains("Строка 7: команда не выполнена: addexp Еда 100"));
+    assertTrue(text.contains("Строка 8: команда не выполнена"));
+    assertTrue(text.contains("Расходы за период: 3500"));
+    assertFalse(text.contains("Сумма:"));
+    assertTrue(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+    assertFalse(Files.exists(dir.resolve(FILE_JOURNAL)));
+  }
+
+  @Test
+  void largeReportIsWrittenInOneBlock() throws Exception {
+    StringBuilder script = new StringBuilder("register login password\nlogin login password\n");
+    for (int i = 0; i < REPORT_CATEGORIES; i++) {
+      script.append("addcat Категория").append(i).append('\n');
+    }
+    script.append("stats cat\n");
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setJournalEnabled(false);
+    CountingAppendable target = new CountingAppendable();
+
+    new FinFlowApp(fileService, new Output(target))
+        .runBatch(new BufferedReader(new StringReader(script.toString())));
+
+    assertEquals(1, target.appends);
+    assertTrue(target.text.toString().contains("Категория" + (REPORT_CATEGORIES - 1) + ": 0"));
+  }
+
+  @Test
+  void generatedScriptRunsOnGeneratedWallets() throws Exception {
+    Path script = new WalletGenerator(GENERATED).generate(dir);
+    assertTrue(Files.exists(dir.resolve(WalletGenerator.login(1) + ".wallet.json")));
+
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    StringBuilder output = new StringBuilder();
+    int errors =
+        new FinFlowApp(fileService, new Output(output))
+            .runBatch(Files.newBufferedReader(script, StandardCharsets.UTF_8));
+
+    assertEquals(0, errors);
+    assertTrue(output.toString().contains("Добро пожаловать, " + WalletGenerator.login(1)));
+  }
+
+  private static class CountingAppendable implements Appendable {
+    private final StringBuilder text = new StringBuilder();
+    private int appends;
+
+    @Override
+    public Appendable append(CharSequence csq) {
+      appends++;
+      text.append(csq);
+      return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+      return append(csq.subSequence(start, end));
+    }
+
+    @Override
+    public Appendable append(char c) {
+      return append(String.valueOf(c));
+    }
+  }
+}
@@ -0,0 +1,177 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FinFlowServerTest {
+  private static final String LOGIN = "login";
+  private static final String PASSWORD = "password";
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final String CATEGORY_SALARY = "Зарплата";
+  private static final int BUDGET_FOOD = 1000;
+  private static final int EXPENSE_FOOD = 250;
+  private static final int INCOME_SALARY = 5000;
+  private static final int USERS = 8;
+  private static final int TRANSACTIONS_PER_USER = 50;
+  private static final String[] UNSAFE_LOGINS = {
+    "../../escaped", "..", "a/b", "a\\b", "", " ", "line\nbreak", "nul\u0000byte"
+  };
+
+  @TempDir Path dir;
+
+  private final HttpClient client = HttpClient.newHttpClient();
+  private FinFlowServer server;
+
+  @BeforeEach
+  void startServer() throws Exception {
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    AuthService authService = new AuthService(fileService.getUserStore());
+    server = new FinFlowServer(new InetSocketAddress("127.0.0.1", 0), authService, fileService);
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop();
+  }
+
+  @Test
+  void userSessionRoundTrip() throws Exception {
+    assertEquals(200, post("/register", null, credentials(LOGIN, PASSWORD)).statusCode());
+    assertEquals(409, post("/register", null, credentials(LOGIN, PASSWORD)).statusCode());
+    assertEquals(401, post("/login", null, credentials(LOGIN, "wrong")).statusCode());
+    assertEquals(401, get("/stats", "no-such-token").statusCode());
+
+    String token = login(LOGIN);
+    addCategory(token, CATEGORY_FOOD);
+    addCategory(token, CATEGORY_SALARY);
+    JsonObject budget = new JsonObject();
+    budget.addProperty("category", CATEGORY_FOOD);
+    budget.addProperty("budget", BUDGET_FOOD);
+    assertEquals(200, post("/budgets", token, budget).statusCode());
+    addTransaction(token, "income", CATEGORY_SALARY, INCOME_SALARY);
+    HttpResponse<String> expense = addTransaction(token, "expense", CATEGORY_FOOD, EXPENSE_FOOD);
+    assertEquals(BUDGET_FOOD - EXPENSE_FOOD, json(expense).get("remaining").getAsInt());
+
+    JsonObject stats = json(get("/stats", token));
+    assertEquals(INCOME_SALARY, stats.get("totalIncomes").getAsInt());
+    assertEquals(EXPENSE_FOOD, stats.get("totalExpenses").getAsInt());
+    assertEquals(2, stats.getAsJsonArray("categories").size());
+    assertEquals(400, get("/stats/range?from=2024-13-01&to=2024-12-31", token).statusCode());
+
+    assertEquals(200, post("/logout", token, new JsonObject()).statusCode());
+    assertEquals(401, get("/stats", token).statusCode());
+
+    String reloaded = login(LOGIN);
+    assertEquals(EXPENSE_FOOD, json(get("/stats", reloaded)).get("totalExpenses").getAsInt());
+  }
+
+  @Test
+  void unsafeLoginsAreRejectedBeforeTouchingFiles() throws Exception {
+    for (String login : UNSAFE_LOGINS) {
+      assertEquals(400, post("/register", null, credentials(login, PASSWORD)).statusCode());
+      assertNotEquals(200, post("/login", null, credentials(login, PASSWORD)).statusCode());
+    }
+    assertFalse(Files.exists(dir.getParent().getParent().resolve("escaped.journal")));
+    try (var files = Files.list(dir)) {
+      assertEquals(List.of(dir.resolve("users.db")), files.toList());
+    }
+  }
+
+  @Test
+  void concurrentUsersKeepSeparateWallets() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(USERS);
+    List<Future<JsonObject>> results = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      String login = LOGIN + i;
+      int sum = i + 1;
+      results.add(
+          executor.submit(
+              () -> {
+                post("/register", null, credentials(login, PASSWORD));
+                String token = login(login);
+                addCategory(token, CATEGORY_FOOD);
+                for (int t = 0; t < TRANSACTIONS_PER_USER; t++) {
+                  addTransaction(token, "expense", CATEGORY_FOOD, sum);
+                }
+                return json(get("/stats", token));
+              }));
+    }
+
+    for (int i = 0; i < USERS; i++) {
+      JsonObject stats = results.get(i).get();
+      assertEquals((i + 1) * TRANSACTIONS_PER_USER, stats.get("totalExpenses").getAsInt());
+    }
+    executor.shutdown();
+  }
+
+  private String login(String login) throws Exception {
+    HttpResponse<String> response = post("/login", null, credentials(login, PASSWORD));
+    assertEquals(200, response.statusCode());
+    return json(response).get("token").getAsString();
+  }
+
+  private void addCategory(String token, String name) throws Exception {
+    JsonObject body = new JsonObject();
+    body.addProperty("name", name);
+    assertEquals(200, post("/categories", token, body).statusCode());
+  }
+
+  private HttpResponse<String> addTransaction(String token, String type, String category, int sum)
+      throws Exception {
+    JsonObject body = new JsonObject();
+    body.addProperty("type", type);
+    body.addProperty("category", category);
+    body.addProperty("sum", sum);
+    HttpResponse<String> response = post("/transactions", token, body);
+    assertEquals(200, response.statusCode());
+    return response;
+  }
+
+  private static JsonObject credentials(String login, String password) {
+    JsonObject body = new JsonObject();
+    body.addProperty("login", login);
+    body.addProperty("password", password);
+    return body;
+  }
+
+  private static JsonObject json(HttpResponse<String> response) {
+    return JsonParser.parseString(response.body()).getAsJsonObject();
+  }
+
+  private HttpResponse<String> post(String path, String token, JsonObject body) throws Exception {
+    return send(request(path, token).POST(HttpRequest.BodyPublishers.ofString(body.toString())));
+  }
+
+  private HttpResponse<String> get(String path, String token) throws Exception {
+    return send(request(path, token).GET());
+  }
+
+  private HttpRequest.Builder request(String path, String token) {
+    HttpRequest.Builder builder =
+        HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path));
+    if (token != null) builder.header("Authorization", "Bearer " + token);
+    return builder;
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+    return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetricsTest {
+  private static final String SCRIPT =
+      "register metrics password\n"
+          + "login metrics password\n"
+          + "addcat Еда\n"
+          + "addexp Еда 100 2024-03-01\n"
+          + "addexp Еда 200 2024-03-02\n"
+          + "metrics\n";
+
+  @TempDir Path dir;
+
+  @Test
+  void histogramBucketsKeepRelativeErrorSmall() {
+    for (long value : new long[] {0, 7, 8, 1000, 123_456_789L, 1L << 40}) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertTrue(LatencyHistogram.lowerBound(bucket) <= value);
+      assertTrue(value < LatencyHistogram.lowerBound(bucket + 1));
+      assertTrue(LatencyHistogram.lowerBound(bucket + 1) - 1 - value <= value / 8);
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  void percentilesAreTakenAcrossSizeClasses() {
+    LatencyTimer timer = new LatencyTimer("test");
+    for (int i = 1; i <= 99; i++) timer.record(1000, 10);
+    timer.record(1_000_000, 5_000_000);
+
+    assertEquals(100, timer.getCount());
+    assertEquals(1, timer.getHistogram(LatencyTimer.SIZE_CLASSES.length - 1).getCount());
+    long p50 = timer.percentile(50);
+    assertTrue(p50 >= 1000 && p50 < 1000 + 1000 / 8);
+    assertEquals(1_000_000, timer.percentile(100));
+  }
+
+  @Test
+  void sizeClassesGrowTenfold() {
+    assertEquals(0, LatencyTimer.sizeClass(0));
+    assertEquals(0, LatencyTimer.sizeClass(999));
+    assertEquals(1, LatencyTimer.sizeClass(1000));
+    assertEquals(3, LatencyTimer.sizeClass(999_999));
+    assertEquals(4, LatencyTimer.sizeClass(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void metricsCommandReportsCommandLatencies() throws Exception {
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setJournalEnabled(false);
+    StringBuilder output = new StringBuilder();
+
+    new FinFlowApp(fileService, new Output(output))
+        .runBatch(new BufferedReader(new StringReader(SCRIPT)));
+    fileService.shutdown();
+
+    String text = output.toString();
+    assertTrue(text.contains("cmd.addexp"));
+    assertTrue(text.contains("wallet.addTransaction"));
+    assertTrue(Metrics.global().getCounts().getOrDefault("cmd.addexp", 0L) >= 2);
+  }
+
+  @Test
+  void dumperWritesReportAndReportsErrorsToOutput() throws Exception {
+    StringBuilder output = new StringBuilder();
+    Path file = dir.resolve("metrics.txt");
+    new MetricsDumper(Metrics.global(), file, 0, new Output(output, 0)).close();
+    assertTrue(Files.readString(file).startsWith("Метрики FinFlow"));
+    assertEquals("", output.toString());
+
+    // Каталог файла метрик занят обычным файлом
+    new MetricsDumper(Metrics.global(), file.resolve("metrics.txt"), 0, new Output(output, 0))
+        .close();
+    assertTrue(output.toString().startsWith("Ошибка записи метрик"));
+  }
+}
@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class MoneyTest {
+  private static final String CATEGORY_SALARY = "Зарплата";
+
+  @Test
+  void sumsAreParsedIntoMinorUnitsAndFormattedBack() {
+    assertEquals(120_050, Money.parse("1 200,5"));
+    assertEquals(-45_040, Money.parse("-450.40"));
+    assertEquals(350_000, Money.parse("+3500"));
+
+    assertEquals("1200.50", Money.format(120_050));
+    assertEquals("3500", Money.format(350_000));
+    assertEquals("-0.05", Money.format(-5));
+    assertEquals("0", Money.format(0));
+  }
+
+  @Test
+  void malformedSumsAreRejected() {
+    for (String text : new String[] {"", "-", ",5", " 12", "12.345", "1.2.3", "сто", "1e3"}) {
+      assertThrows(NumberFormatException.class, () -> Money.parse(text));
+    }
+    assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+  }
+
+  @Test
+  void overflowingTotalsLeaveWalletUnchanged() {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_SALARY);
+    wallet.addIncomeTransaction(Long.MAX_VALUE - 1, CATEGORY_SALARY);
+
+    assertThrows(
+        ArithmeticException.class, () -> wallet.addIncomeTransaction(2, CATEGORY_SALARY));
+    TransactionBatch batch = new TransactionBatch();
+    batch.add(1, 0, TransactionType.INCOME, 0);
+    batch.add(1, 0, TransactionType.INCOME, 0);
+    assertThrows(ArithmeticException.class, () -> wallet.addTransactions(batch));
+
+    assertEquals(1, wallet.getTransactionCount());
+    assertEquals(Long.MAX_VALUE - 1, wallet.getTotalIncomes());
+  }
+}
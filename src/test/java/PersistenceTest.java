@@ -1,7 +1,19 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -11,7 +23,6 @@ public class PersistenceTest {
   private static final String CATEGORY_SALARY = "Зарплата";
 
   private static final String USER_LOGIN = "login";
-  private static final String USER_PASSWORD = "password";
 
   private static final int BUDGET_FOOD = 1000;
   private static final int EXPENSE_FOOD = 250;
@@ -23,6 +34,17 @@ public class PersistenceTest {
 
   private static final String FILE_WALLET = "wallet.bin";
   private static final String FILE_USER = "user.bin";
+  private static final String FILE_JOURNAL = "login.journal";
+  private static final String FILE_SNAPSHOT = "login.wallet.json";
+  private static final String FILE_BINARY_SNAPSHOT = "login.wallet.bin";
+  private static final String FILE_MAPPED_SNAPSHOT = "login.wallet.map";
+  private static final int CHECKPOINT_RECORDS = 3;
+  private static final int WRITE_BEHIND_RECORDS = 3;
+  private static final long WRITE_BEHIND_DELAY_MILLIS = 60_000;
+  private static final int EXPENSES_COUNT = 10;
+  private static final int EXPECTED_EXPENSES_TOTAL = EXPENSE_FOOD * EXPENSES_COUNT;
+  private static final LocalDate DATE_PREVIOUS_MONTH = LocalDate.of(2024, 1, 31);
+  private static final LocalDate DATE_CURRENT_MONTH = LocalDate.of(2024, 2, 1);
 
   @Test
   void walletSerializeDeserialize(@TempDir Path dir) throws Exception {
@@ -51,7 +73,7 @@ public class PersistenceTest {
 
   @Test
   void userSerializeDeserializeWithWallet(@TempDir Path dir) throws Exception {
-    User u = new User(USER_LOGIN, USER_PASSWORD);
+    User u = new User(USER_LOGIN);
     Wallet w = u.getWallet();
     w.addCategory(CATEGORY_SALARY);
     w.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
@@ -69,9 +91,473 @@ public class PersistenceTest {
 
     assertNotNull(loaded);
     assertEquals(USER_LOGIN, loaded.getLogin());
-    assertEquals(USER_PASSWORD, loaded.getPassword());
     assertEquals(EXPECTED_TOTAL_INCOMES, loaded.getWallet().getTotalIncomes());
     assertEquals(
         EXPECTED_INCOME_BY_CATEGORY, loaded.getWallet().getIncomesByCategory(CATEGORY_SALARY));
   }
+
+  @Test
+  void walletJsonStoresCategoryIds() {
+    Gson gson =
+        new GsonBuilder().registerTypeAdapter(Wallet.class, new WalletTypeAdapter()).create();
+    Wallet w = new Wallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    w.addCategory(CATEGORY_SALARY);
+    w.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+
+    JsonObject json = gson.toJsonTree(w).getAsJsonObject();
+    assertEquals(2, json.getAsJsonArray("categories").size());
+    JsonObject transaction = json.getAsJsonArray("transactions").get(1).getAsJsonObject();
+    assertEquals(1, transaction.get("categoryId").getAsInt());
+    assertFalse(transaction.has("category"));
+
+    Wallet loaded = gson.fromJson(json, Wallet.class);
+    assertEquals(EXPECTED_REMAINING_BUDGET, loaded.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(EXPECTED_TOTAL_INCOMES, loaded.getTotalIncomes());
+    assertEquals(EXPENSE_FOOD, loaded.getTotalExpenses());
+  }
+
+  @Test
+  void legacyWalletJsonIsInternedOnLoad() {
+    Gson gson =
+        new GsonBuilder().registerTypeAdapter(Wallet.class, new WalletTypeAdapter()).create();
+    String legacy =
+        "{\"transactions\":["
+            + "{\"sum\":250,\"type\":\"EXPENSE\","
+            + "\"category\":{\"name\":\"Еда\",\"budget\":1000}},"
+            + "{\"sum\":5000,\"type\":\"INCOME\","
+            + "\"category\":{\"name\":\"Зарплата\",\"budget\":0}}],"
+            + "\"categories\":{\"Еда\":{\"name\":\"Еда\",\"budget\":1000},"
+            + "\"Зарплата\":{\"name\":\"Зарплата\",\"budget\":0}}}";
+
+    Wallet loaded = gson.fromJson(legacy, Wallet.class);
+
+    assertEquals(2, loaded.getCategories().size());
+    assertEquals(0, loaded.getTransaction(0).categoryId());
+    assertEquals(1, loaded.getTransaction(1).categoryId());
+    // Операции без даты не относятся к текущему месяцу и не тратят его бюджет
+    assertEquals(LocalDate.EPOCH, loaded.getTransaction(0).date());
+    // Суммы в старых файлах — в целых единицах
+    assertEquals(Money.ofUnits(EXPENSE_FOOD), loaded.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(Money.ofUnits(BUDGET_FOOD), loaded.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(
+        Money.ofUnits(EXPECTED_INCOME_BY_CATEGORY), loaded.getIncomesByCategory(CATEGORY_SALARY));
+  }
+
+  @Test
+  void journalReplaysMutations(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve(FILE_JOURNAL);
+    Wallet w = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, w)) {
+      w.addListener(journal);
+      w.addCategory(CATEGORY_FOOD);
+      w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+      w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+      w.addCategory(CATEGORY_SALARY);
+      w.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+    }
+
+    // Недописанная запись в конце журнала после аварийного завершения
+    Files.write(file, new byte[] {0, 0, 0, 42, 3}, StandardOpenOption.APPEND);
+
+    Wallet loaded = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, loaded)) {
+      assertEquals(w.getVersion(), loaded.getVersion());
+      assertEquals(EXPECTED_REMAINING_BUDGET, loaded.getRemainingBudget(CATEGORY_FOOD));
+      assertEquals(EXPECTED_TOTAL_INCOMES, loaded.getTotalIncomes());
+      assertEquals(journal.size(), Files.size(file));
+    }
+  }
+
+  @Test
+  void journalReplaysTransactionBatch(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve(FILE_JOURNAL);
+    Wallet w = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, w)) {
+      w.addListener(journal);
+      w.addCategory(CATEGORY_FOOD);
+      TransactionBatch batch = new TransactionBatch();
+      for (int i = 0; i < EXPENSES_COUNT; i++) {
+        batch.add(EXPENSE_FOOD, 0, TransactionType.EXPENSE, (int) DATE_CURRENT_MONTH.toEpochDay());
+      }
+      w.addTransactions(batch);
+      assertEquals(2, journal.getRecordCount());
+    }
+
+    Wallet loaded = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, loaded)) {
+      assertEquals(w.getVersion(), loaded.getVersion());
+      assertEquals(EXPECTED_EXPENSES_TOTAL, loaded.getTotalExpenses());
+      assertEquals(DATE_CURRENT_MONTH, loaded.getTransaction(EXPENSES_COUNT - 1).date());
+    }
+  }
+
+  @Test
+  void journalSkipsRecordsCoveredBySnapshot(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve(FILE_JOURNAL);
+    Wallet w = new Wallet();
+    Wallet snapshot = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, w)) {
+      w.addListener(journal);
+      w.addCategory(CATEGORY_FOOD);
+      w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+      snapshot.copyFrom(w);
+      w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    }
+
+    try (WalletJournal ignored = WalletJournal.open(file, snapshot)) {
+      assertEquals(EXPENSE_FOOD * 2, snapshot.getExpensesByCategory(CATEGORY_FOOD));
+      assertEquals(w.getVersion(), snapshot.getVersion());
+    }
+  }
+
+  @Test
+  void checkpointCompactsJournal(@TempDir Path dir) throws Exception {
+    CheckpointPolicy policy = new CheckpointPolicy(CHECKPOINT_RECORDS, Long.MAX_VALUE);
+    FileService fileService = new FileService(dir, policy);
+    User u = new User(USER_LOGIN);
+    fileService.loadWallet(USER_LOGIN, u.getWallet());
+
+    Wallet w = u.getWallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    for (int i = 0; i < EXPENSES_COUNT; i++) w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    fileService.saveCurrentWallet(u);
+    fileService.closeWallet(u);
+    fileService.shutdown();
+
+    Path journal = dir.resolve(FILE_JOURNAL);
+    assertTrue(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+    assertTrue(WalletJournal.sealedSegments(journal).isEmpty());
+
+    FileService reopened = new FileService(dir, policy);
+    Wallet loaded = new Wallet();
+    reopened.loadWallet(USER_LOGIN, loaded);
+    assertEquals(w.getVersion(), loaded.getVersion());
+    assertEquals(EXPENSE_FOOD * EXPENSES_COUNT, loaded.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(BUDGET_FOOD, loaded.getBudgetByCategory(CATEGORY_FOOD));
+    reopened.shutdown();
+  }
+
+  @Test
+  void journalSegmentsOfLoginWithJournalSuffixAreNotShared(@TempDir Path dir) throws Exception {
+    // Журнал пользователя "a.journal" — a.journal.journal, его сегменты начинаются с a.journal.
+    Path other = dir.resolve("a.journal.journal");
+    Wallet otherWallet = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(other, otherWallet)) {
+      otherWallet.addListener(journal);
+      otherWallet.addCategory(CATEGORY_FOOD);
+      assertEquals(1, journal.rotate().join().size());
+    }
+
+    Path file = dir.resolve("a.journal");
+    Wallet w = new Wallet();
+    try (WalletJournal journal = WalletJournal.open(file, w)) {
+      w.addListener(journal);
+      w.addCategory(CATEGORY_SALARY);
+      assertEquals(List.of(dir.resolve("a.journal.1")), journal.rotate().join());
+    }
+    assertEquals(List.of(dir.resolve("a.journal.journal.1")), WalletJournal.sealedSegments(other));
+
+    Wallet loaded = new Wallet();
+    WalletJournal.open(file, loaded).close();
+    assertFalse(loaded.hasCategory(CATEGORY_FOOD));
+    assertTrue(loaded.hasCategory(CATEGORY_SALARY));
+  }
+
+  @Test
+  void failedSnapshotIsReportedThroughErrorCallback(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve(FILE_JOURNAL);
+    Wallet w = new Wallet();
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (WalletJournal journal = WalletJournal.open(file, w)) {
+      w.addListener(journal);
+      w.addCategory(CATEGORY_FOOD);
+      WalletCheckpointer checkpointer =
+          new WalletCheckpointer(
+              journal,
+              new CheckpointPolicy(CHECKPOINT_RECORDS, Long.MAX_VALUE),
+              executor,
+              snapshot -> {
+                throw new IOException("Диск заполнен");
+              },
+              errors::add);
+      checkpointer.checkpoint(w);
+      checkpointer.awaitPending();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1, errors.size());
+    assertEquals("Диск заполнен", errors.get(0).getMessage());
+    // Снимок не записан: закрытый сегмент журнала остаётся на диске
+    assertEquals(1, WalletJournal.sealedSegments(file).size());
+  }
+
+  @Test
+  void journalWritesRecordsBehindInOneFlush(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve(FILE_JOURNAL);
+    List<IOException> errors = new CopyOnWriteArrayList<>();
+    WalletWriter writer =
+        new WalletWriter(WRITE_BEHIND_DELAY_MILLIS, WRITE_BEHIND_RECORDS, errors::add);
+    Wallet w = new Wallet();
+    WalletJournal journal = WalletJournal.open(file, w, writer);
+    w.addListener(journal);
+    w.addCategory(CATEGORY_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    // Порог не достигнут, а до срока ещё далеко: на диск ничего не записано
+    assertEquals(0, Files.size(file));
+    assertTrue(journal.hasPending());
+
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    journal.closeLater();
+    writer.close();
+    assertTrue(errors.isEmpty());
+    assertEquals(journal.size(), Files.size(file));
+
+    Wallet loaded = new Wallet();
+    try (WalletJournal ignored = WalletJournal.open(file, loaded)) {
+      assertEquals(w.getVersion(), loaded.getVersion());
+      assertEquals(EXPENSE_FOOD * 2, loaded.getExpensesByCategory(CATEGORY_FOOD));
+    }
+  }
+
+  @Test
+  void cleanWalletIsNotWrittenAgain(@TempDir Path dir) {
+    FileService fileService = new FileService(dir, CheckpointPolicy.fromSystemProperties());
+    fileService.setJournalEnabled(false);
+    User u = new User(USER_LOGIN);
+    fileService.loadWallet(USER_LOGIN, u.getWallet());
+    fileService.saveCurrentWallet(u);
+    fileService.shutdown();
+    assertFalse(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+
+    FileService restarted = new FileService(dir, CheckpointPolicy.fromSystemProperties());
+    restarted.setJournalEnabled(false);
+    restarted.loadWallet(USER_LOGIN, u.getWallet());
+    u.getWallet().addCategory(CATEGORY_FOOD);
+    restarted.saveCurrentWallet(u);
+    restarted.shutdown();
+    assertTrue(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+  }
+
+  @Test
+  void legacyWalletFileIsReadableAndRewrittenCompact(@TempDir Path dir) throws Exception {
+    String legacy =
+        "{\n"
+            + "  \"transactions\": [\n"
+            + "    {\n"
+            + "      \"sum\": 250,\n"
+            + "      \"category\": {\n"
+            + "        \"name\": \"Еда\",\n"
+            + "        \"budget\": 1000\n"
+            + "      },\n"
+            + "      \"type\": \"EXPENSE\"\n"
+            + "    }\n"
+            + "  ],\n"
+            + "  \"categories\": {\n"
+            + "    \"Еда\": {\n"
+            + "      \"name\": \"Еда\",\n"
+            + "      \"budget\": 1000\n"
+            + "    }\n"
+            + "  }\n"
+            + "}";
+    Files.writeString(dir.resolve(FILE_SNAPSHOT), legacy);
+
+    CheckpointPolicy policy = new CheckpointPolicy(1, Long.MAX_VALUE);
+    FileService fileService = new FileService(dir, policy);
+    User u = new User(USER_LOGIN);
+    fileService.loadWallet(USER_LOGIN, u.getWallet());
+    assertEquals(Money.ofUnits(EXPENSE_FOOD), u.getWallet().getExpensesByCategory(CATEGORY_FOOD));
+
+    u.getWallet().addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    fileService.closeWallet(u);
+    fileService.shutdown();
+
+    String rewritten = Files.readString(dir.resolve(FILE_SNAPSHOT));
+    assertFalse(rewritten.contains("\n"));
+    assertFalse(rewritten.contains("\"category\""));
+  }
+
+  @Test
+  void walletBinaryRoundTrip(@TempDir Path dir) throws Exception {
+    Wallet w = new Wallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    w.addCategory(CATEGORY_SALARY);
+    w.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+
+    Path file = dir.resolve(FILE_WALLET);
+    try (OutputStream out = Files.newOutputStream(file)) {
+      WalletBinaryCodec.write(out, w);
+    }
+
+    Wallet loaded;
+    try (InputStream in = Files.newInputStream(file)) {
+      loaded = WalletBinaryCodec.read(in);
+    }
+
+    assertEquals(w.getVersion(), loaded.getVersion());
+    assertEquals(BUDGET_FOOD, loaded.getBudgetByCategory(CATEGORY_FOOD));
+    assertEquals(EXPECTED_REMAINING_BUDGET, loaded.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(EXPECTED_INCOME_BY_CATEGORY, loaded.getIncomesByCategory(CATEGORY_SALARY));
+
+    byte[] corrupted = Files.readAllBytes(file);
+    corrupted[corrupted.length - 6] ^= 1;
+    assertThrows(
+        IOException.class, () -> WalletBinaryCodec.read(new ByteArrayInputStream(corrupted)));
+  }
+
+  @Test
+  void binaryWalletOfUnknownVersionIsRejected() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(WalletBinaryCodec.MAGIC);
+    out.write(WalletBinaryCodec.FORMAT_VERSION + 1);
+
+    assertThrows(
+        IOException.class,
+        () -> WalletBinaryCodec.read(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+
+  @Test
+  void jsonWalletIsMigratedToBinaryOnLoad(@TempDir Path dir) throws Exception {
+    CheckpointPolicy policy = new CheckpointPolicy(1, Long.MAX_VALUE);
+    FileService jsonService = new FileService(dir, policy, StorageFormat.JSON);
+    User u = new User(USER_LOGIN);
+    jsonService.loadWallet(USER_LOGIN, u.getWallet());
+    u.getWallet().addCategory(CATEGORY_SALARY);
+    u.getWallet().addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+    jsonService.closeWallet(u);
+    jsonService.shutdown();
+    assertTrue(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+
+    FileService binaryService = new FileService(dir, policy, StorageFormat.BINARY);
+    Wallet loaded = new Wallet();
+    binaryService.loadWallet(USER_LOGIN, loaded);
+    binaryService.shutdown();
+
+    assertFalse(Files.exists(dir.resolve(FILE_SNAPSHOT)));
+    assertTrue(Files.exists(dir.resolve(FILE_BINARY_SNAPSHOT)));
+    assertEquals(u.getWallet().getVersion(), loaded.getVersion());
+    assertEquals(EXPECTED_INCOME_BY_CATEGORY, loaded.getIncomesByCategory(CATEGORY_SALARY));
+  }
+
+  @Test
+  void walletMappedRoundTripKeepsHistoryOffHeap(@TempDir Path dir) throws Exception {
+    Wallet w = new Wallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    w.addCategory(CATEGORY_SALARY);
+    w.addIncomeTransaction(INCOME_SALARY, CATEGORY_SALARY);
+
+    Path file = dir.resolve(FILE_MAPPED_SNAPSHOT);
+    WalletMappedCodec.write(file, w);
+    Wallet loaded = WalletMappedCodec.read(file);
+
+    assertEquals(w.getVersion(), loaded.getVersion());
+    assertEquals(EXPECTED_REMAINING_BUDGET, loaded.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(EXPECTED_TOTAL_INCOMES, loaded.getTotalIncomes());
+    assertEquals(w.getTransaction(1), loaded.getTransaction(1));
+
+    // Новые операции дописываются после отображённой истории
+    loaded.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD);
+    assertEquals(3, loaded.getTransactionCount());
+    assertEquals(EXPENSE_FOOD * 2, loaded.getExpensesByCategory(CATEGORY_FOOD));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(loaded);
+    }
+    Wallet copy;
+    try (ObjectInputStream ois =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (Wallet) ois.readObject();
+    }
+    assertEquals(3, copy.getTransactionCount());
+    assertEquals(w.getTransaction(0), copy.getTransaction(0));
+    assertEquals(EXPENSE_FOOD * 2, copy.getExpensesByCategory(CATEGORY_FOOD));
+  }
+
+  @Test
+  void mappedSegmentLargerThanMappingIsRejected() {
+    int recordBytes = MappedTransactionSegment.RECORD_BYTES;
+    ByteBuffer buffer = ByteBuffer.allocate(2 * recordBytes);
+    buffer.putLong(recordBytes, EXPENSE_FOOD);
+
+    MappedTransactionSegment segment = new MappedTransactionSegment(buffer, 2);
+    assertEquals(EXPENSE_FOOD, segment.sum(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> segment.sum(2));
+
+    assertThrows(IllegalArgumentException.class, () -> new MappedTransactionSegment(buffer, 3));
+    // Размер, на котором index * recordBytes переполняет int
+    int overflowing = Integer.MAX_VALUE / recordBytes + 1;
+    assertThrows(
+        IllegalArgumentException.class, () -> new MappedTransactionSegment(buffer, overflowing));
+  }
+
+  @Test
+  void serializingStoreKeepsHistoryInSegment() throws Exception {
+    int recordBytes = MappedTransactionSegment.RECORD_BYTES;
+    ByteBuffer buffer = ByteBuffer.allocate(recordBytes);
+    buffer.putLong(0, EXPENSE_FOOD);
+    TransactionStore store = new TransactionStore();
+    store.restoreHistory(new MappedTransactionSegment(buffer, 1));
+    store.add(INCOME_SALARY, Currency.BASE, 0, TransactionType.INCOME, 0);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(store);
+    }
+    TransactionStore copy;
+    try (ObjectInputStream ois =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (TransactionStore) ois.readObject();
+    }
+    assertEquals(2, copy.size());
+    assertEquals(EXPENSE_FOOD, copy.sum(0));
+    assertEquals(INCOME_SALARY, copy.sum(1));
+
+    // Хранилище по-прежнему читает историю из сегмента, а не из копии в куче
+    buffer.putLong(0, EXPENSE_FOOD * 2);
+    assertEquals(EXPENSE_FOOD * 2, store.sum(0));
+    assertEquals(INCOME_SALARY, store.sum(1));
+  }
+
+  @Test
+  void transactionDatesSurviveEveryFormat(@TempDir Path dir) throws Exception {
+    Wallet w = new Wallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE_PREVIOUS_MONTH);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE_CURRENT_MONTH);
+    w.addExpenseTransaction(EXPENSE_FOOD, CATEGORY_FOOD, DATE_CURRENT_MONTH);
+    YearMonth previous = YearMonth.from(DATE_PREVIOUS_MONTH);
+    YearMonth current = YearMonth.from(DATE_CURRENT_MONTH);
+
+    Path mapped = dir.resolve(FILE_MAPPED_SNAPSHOT);
+    WalletMappedCodec.write(mapped, w);
+    Path binary = dir.resolve(FILE_BINARY_SNAPSHOT);
+    try (OutputStream out = Files.newOutputStream(binary)) {
+      WalletBinaryCodec.write(out, w);
+    }
+    Gson gson =
+        new GsonBuilder().registerTypeAdapter(Wallet.class, new WalletTypeAdapter()).create();
+
+    Wallet fromJson = gson.fromJson(gson.toJson(w), Wallet.class);
+    Wallet fromBinary;
+    try (InputStream in = Files.newInputStream(binary)) {
+      fromBinary = WalletBinaryCodec.read(in);
+    }
+    for (Wallet loaded : new Wallet[] {fromJson, fromBinary, WalletMappedCodec.read(mapped)}) {
+      assertEquals(DATE_PREVIOUS_MONTH, loaded.getTransaction(0).date());
+      assertEquals(DATE_CURRENT_MONTH, loaded.getTransaction(2).date());
+      assertEquals(EXPENSE_FOOD, loaded.getExpensesByCategory(CATEGORY_FOOD, previous));
+      assertEquals(EXPENSE_FOOD * 2, loaded.getExpensesByCategory(CATEGORY_FOOD, current));
+    }
+  }
 }
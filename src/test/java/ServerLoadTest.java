@@ -0,0 +1,126 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Нагрузочный тест сервера: клиенты в отдельных потоках добавляют расходы, пока не истечёт время
+// замера. Число клиентов растёт от одного до удвоенного числа ядер. В первом режиме у каждого
+// клиента свой пользователь, во втором все пишут в один кошелёк и ждут его блокировку.
+//
+//   gradle serverLoadTest [-Dfinflow.load.seconds=5]
+public class ServerLoadTest {
+  private static final int SECONDS = Integer.getInteger("finflow.load.seconds", 5);
+  private static final long WARMUP_MILLIS = 1000;
+  private static final String PASSWORD = "password";
+  private static final String CATEGORY = "Еда";
+
+  public static void main(String[] args) throws Exception {
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.printf("Ядер: %d, замер: %d с на точку%n", cores, SECONDS);
+    System.out.printf(
+        "%8s %22s %10s %22s%n", "Клиенты", "Свой кошелёк, зап/с", "Рост", "Общий кошелёк, зап/с");
+
+    // Прогрев JIT, чтобы первая точка не оказалась заниженной
+    measure(1, false);
+    double base = 0;
+    for (int clients = 1; clients <= cores * 2; clients *= 2) {
+      double separate = measure(clients, false);
+      double shared = measure(clients, true);
+      if (clients == 1) base = separate;
+      System.out.printf("%8d %22.0f %9.2fx %22.0f%n", clients, separate, separate / base, shared);
+    }
+  }
+
+  private static double measure(int clients, boolean sharedWallet) throws Exception {
+    Path dir = Files.createTempDirectory("finflow-load");
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.BINARY);
+    fileService.setOutput(new Output(new StringBuilder()));
+    AuthService authService = new AuthService(fileService.getUserStore());
+    FinFlowServer server =
+        new FinFlowServer(new InetSocketAddress("127.0.0.1", 0), authService, fileService);
+    server.start();
+
+    ExecutorService executor = Executors.newFixedThreadPool(clients);
+    try {
+      CountDownLatch ready = new CountDownLatch(clients);
+      long start = System.currentTimeMillis() + WARMUP_MILLIS;
+      long end = start + SECONDS * 1000L;
+      List<Future<Long>> results = new ArrayList<>();
+      for (int i = 0; i < clients; i++) {
+        String login = sharedWallet ? "user" : "user" + i;
+        boolean owner = !sharedWallet || i == 0;
+        results.add(
+            executor.submit(
+                () -> new Client(server.getPort()).run(login, owner, ready, start, end)));
+      }
+
+      long requests = 0;
+      for (Future<Long> result : results) requests += result.get();
+      return requests / (double) SECONDS;
+    } finally {
+      executor.shutdown();
+      server.stop();
+    }
+  }
+
+  private static class Client {
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String baseUrl;
+    private String token;
+
+    Client(int port) {
+      baseUrl = "http://127.0.0.1:" + port;
+    }
+
+    // Возвращает число запросов, завершённых за время замера
+    long run(String login, boolean owner, CountDownLatch ready, long start, long end)
+        throws Exception {
+      String credentials = "{\"login\":\"" + login + "\",\"password\":\"" + PASSWORD + "\"}";
+      if (owner) {
+        post("/register", credentials);
+        token = login(credentials);
+        post("/categories", "{\"name\":\"" + CATEGORY + "\"}");
+      }
+      ready.countDown();
+      ready.await();
+      if (!owner) token = login(credentials);
+
+      String expense = "{\"type\":\"expense\",\"category\":\"" + CATEGORY + "\",\"sum\":1}";
+      long count = 0;
+      long now;
+      while ((now = System.currentTimeMillis()) < end) {
+        post("/transactions", expense);
+        if (now >= start) count++;
+      }
+      return count;
+    }
+
+    private String login(String credentials) throws Exception {
+      return post("/login", credentials).replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+    }
+
+    private String post(String path, String body) throws Exception {
+      HttpRequest.Builder request =
+          HttpRequest.newBuilder(URI.create(baseUrl + path))
+              .POST(HttpRequest.BodyPublishers.ofString(body));
+      if (token != null) request.header("Authorization", "Bearer " + token);
+      HttpResponse<String> response =
+          http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(
+            path + ": " + response.statusCode() + " " + response.body());
+      }
+      return response.body();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class StatementImporterTest {
+
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final String CATEGORY_TAXI = "Такси";
+  private static final String CATEGORY_SALARY = "Зарплата";
+
+  private static final List<String> RULES =
+      List.of("# правила импорта", "пятёрочка => Еда", "YANDEX GO => Такси", "", "ООО => Зарплата");
+
+  private static final String STATEMENT =
+      "\uFEFFДата;Сумма;Описание;Категория\n"
+          + "01.03.2024;-450,40;Пятёрочка 123;\n"
+          + "01.03.2024;-1 200;\"Yandex Go; поездка\";\n"
+          + "02.03.2024;50000;ООО Ромашка;\n"
+          + "2024-03-03;-99.50;Аптека;\n"
+          + "2024-03-04;-300;Кафе;Еда\n"
+          + "31.02.2024;-100;Неверная дата;\n"
+          + "05.03.2024;сто;Неверная сумма;\n"
+          + "05.03.2024;-100\n";
+
+  private static final int EXPECTED_IMPORTED = 5;
+  private static final int EXPECTED_REJECTED = 3;
+  // В копейках
+  private static final long EXPECTED_EXPENSE_FOOD = 75_040;
+  private static final long EXPECTED_EXPENSE_TAXI = 120_000;
+  private static final long EXPECTED_EXPENSE_OTHER = 9_950;
+  private static final long EXPECTED_INCOME_SALARY = 5_000_000;
+  private static final int BATCHED_ROWS = TransactionBatch.MAX_SIZE * 2 + 1;
+
+  @Test
+  void statementRowsAreCategorizedAndRejectedRowsReported() throws Exception {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    StatementImporter importer = new StatementImporter(new ImportRules(RULES));
+
+    ImportResult result =
+        importer.importFrom(new BufferedReader(new StringReader(STATEMENT)), wallet);
+
+    assertEquals(EXPECTED_IMPORTED, result.imported());
+    assertEquals(EXPECTED_REJECTED, result.rejected());
+    assertEquals(EXPECTED_REJECTED, result.rejectedSamples().size());
+    assertTrue(result.rejectedSamples().get(0).startsWith("строка 7"));
+    // Такси, Зарплата и категория по умолчанию для расходов
+    assertEquals(3, result.createdCategories());
+
+    assertEquals(EXPECTED_EXPENSE_FOOD, wallet.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(EXPECTED_EXPENSE_TAXI, wallet.getExpensesByCategory(CATEGORY_TAXI));
+    assertEquals(EXPECTED_INCOME_SALARY, wallet.getIncomesByCategory(CATEGORY_SALARY));
+    assertEquals(
+        EXPECTED_EXPENSE_OTHER,
+        wallet.getExpensesByCategory(StatementImporter.DEFAULT_EXPENSE_CATEGORY));
+    assertEquals(LocalDate.of(2024, 3, 4), wallet.getTransaction(4).date());
+  }
+
+  @Test
+  void firstRowWithBadDateIsRejectedNotTakenForHeader() throws Exception {
+    String statement = "2024-13-01,-100,Пятёрочка\n2024-03-01,-200,Пятёрочка\n";
+    Wallet wallet = new Wallet();
+    StatementImporter importer = new StatementImporter(new ImportRules(RULES));
+
+    ImportResult result =
+        importer.importFrom(new BufferedReader(new StringReader(statement)), wallet);
+
+    assertEquals(1, result.imported());
+    assertEquals(1, result.rejected());
+    assertTrue(result.rejectedSamples().get(0).startsWith("строка 1"));
+  }
+
+  @Test
+  void overflowingRowIsRejectedAndOthersImported() throws Exception {
+    Wallet wallet = new Wallet();
+    wallet.addCategory(CATEGORY_FOOD);
+    wallet.addExpenseTransaction(Long.MAX_VALUE - 100, CATEGORY_FOOD);
+    // Переполняющая строка стоит между строками, которые помещаются
+    String statement =
+        "Date,Amount,Description\n"
+            + "2024-03-01,-0.50,Пятёрочка\n"
+            + "2024-03-01,-1,Пятёрочка\n"
+            + "2024-03-01,-0.50,Пятёрочка\n"
+            + "2024-03-01,10,ООО Ромашка\n";
+    StatementImporter importer = new StatementImporter(new ImportRules(RULES));
+
+    ImportResult result =
+        importer.importFrom(new BufferedReader(new StringReader(statement)), wallet);
+
+    assertEquals(3, result.imported());
+    assertEquals(1, result.rejected());
+    assertTrue(result.rejectedSamples().get(0).startsWith("строка 3"));
+    assertEquals(Long.MAX_VALUE, wallet.getTotalExpenses());
+    assertEquals(Money.ofUnits(10), wallet.getTotalIncomes());
+  }
+
+  @Test
+  void largeStatementIsAppliedInBatches() throws Exception {
+    StringBuilder statement = new StringBuilder();
+    for (int i = 0; i < BATCHED_ROWS; i++) statement.append("2024-03-01,-1,Пятёрочка\n");
+    Wallet wallet = new Wallet();
+    StatementImporter importer = new StatementImporter(new ImportRules(RULES));
+
+    ImportResult result =
+        importer.importFrom(new BufferedReader(new StringReader(statement.toString())), wallet);
+
+    assertEquals(BATCHED_ROWS, result.imported());
+    assertEquals(
+        Money.ofUnits(BATCHED_ROWS),
+        wallet.getExpensesByCategory(CATEGORY_FOOD, YearMonth.of(2024, 3)));
+    // Одна версия на категорию и по одной на каждую из трёх пачек
+    assertEquals(4, wallet.getVersion());
+  }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WalletCacheTest {
+  private static final String CATEGORY_FOOD = "Еда";
+  private static final int EXPENSE_FOOD = 250;
+  private static final int CAPACITY = 2;
+  private static final int USERS = 5;
+  private static final Duration SESSION_IDLE = Duration.ofMinutes(30);
+  private static final Instant LOGIN_TIME = Instant.parse("2024-03-01T10:00:00Z");
+
+  @TempDir Path dir;
+
+  @Test
+  void leastRecentlyUsedWalletIsSavedAndEvicted() {
+    FileService fileService = newFileService();
+    Set<String> pinned = new HashSet<>();
+    WalletCache cache = new WalletCache(fileService, pinned::contains, CAPACITY);
+
+    pinned.add(login(0));
+    for (int i = 0; i < USERS; i++) {
+      int sum = EXPENSE_FOOD + i;
+      cache.withUser(
+          login(i),
+          user -> {
+            user.getWallet().addCategory(CATEGORY_FOOD);
+            user.getWallet().addExpenseTransaction(sum, CATEGORY_FOOD);
+            return null;
+          });
+    }
+
+    // Закреплённый пользователь остаётся, остальные вытесняются по давности обращения
+    assertEquals(CAPACITY, cache.size());
+    assertTrue(cache.isResident(login(0)));
+    assertTrue(cache.isResident(login(USERS - 1)));
+    assertFalse(cache.isResident(login(1)));
+
+    long reloaded =
+        cache.withUser(login(1), user -> user.getWallet().getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(EXPENSE_FOOD + 1, reloaded);
+    assertFalse(cache.isResident(login(USERS - 1)));
+    cache.close();
+    fileService.shutdown();
+
+    FileService restarted = newFileService();
+    WalletCache fresh = new WalletCache(restarted, login -> false, CAPACITY);
+    for (int i = 0; i < USERS; i++) {
+      long expected = EXPENSE_FOOD + i;
+      long stored =
+          fresh.withUser(login(i), user -> user.getWallet().getExpensesByCategory(CATEGORY_FOOD));
+      assertEquals(expected, stored);
+    }
+    fresh.close();
+    restarted.shutdown();
+  }
+
+  @Test
+  void walletIsEvictedAfterItsSessionExpires() throws Exception {
+    FileService fileService = newFileService();
+    AuthService authService = new AuthService(fileService.getUserStore(), SESSION_IDLE);
+    authService.setClock(Clock.fixed(LOGIN_TIME, ZoneOffset.UTC));
+    WalletCache cache = new WalletCache(fileService, authService::hasSessions, CAPACITY);
+
+    String[] tokens = new String[USERS];
+    for (int i = 0; i < USERS; i++) {
+      tokens[i] = cache.withUser(login(i), authService::openSession);
+    }
+    // Все кошельки закреплены сессиями, ёмкость превышена
+    assertEquals(USERS, cache.size());
+
+    // Первый пользователь продолжает работать, остальные ушли, не выйдя
+    Instant later = LOGIN_TIME.plus(SESSION_IDLE).plusSeconds(1);
+    authService.setClock(Clock.fixed(LOGIN_TIME.plus(SESSION_IDLE), ZoneOffset.UTC));
+    assertNotNull(authService.getSessionUser(tokens[0]));
+    authService.setClock(Clock.fixed(later, ZoneOffset.UTC));
+    cache.withUser(login(0), user -> null);
+
+    assertEquals(CAPACITY, cache.size());
+    assertTrue(cache.isResident(login(0)));
+    assertFalse(cache.isResident(login(1)));
+    assertNull(authService.getSessionUser(tokens[1]));
+    assertNotNull(authService.getSessionUser(tokens[0]));
+    cache.close();
+    fileService.shutdown();
+  }
+
+  private FileService newFileService() {
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setOutput(new Output(new StringBuilder()));
+    return fileService;
+  }
+
+  private static String login(int index) {
+    return "user" + index;
+  }
+}
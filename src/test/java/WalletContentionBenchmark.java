@@ -0,0 +1,91 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Сравнение ConcurrentWallet с обычным кошельком под общей блокировкой (synchronized): потоки
+// добавляют расходы в один кошелёк, число потоков растёт от одного до удвоенного числа ядер.
+// Время ConcurrentWallet включает перенос операций в кошелёк в конце замера.
+//
+//   gradle walletContentionBenchmark [-Dfinflow.bench.operations=2000000]
+public class WalletContentionBenchmark {
+  private static final int OPERATIONS = Integer.getInteger("finflow.bench.operations", 2_000_000);
+  private static final int ROUNDS = 3;
+  private static final String[] CATEGORIES = {"Еда", "Такси", "Дом", "Связь"};
+  private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+
+  private interface Writer {
+    void addExpense(int sum, String category);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.printf("Ядер: %d, операций на замер: %d%n", cores, OPERATIONS);
+    System.out.printf(
+        "%8s %24s %28s%n", "Потоки", "synchronized, млн оп/с", "ConcurrentWallet, млн оп/с");
+
+    // Прогрев JIT
+    measureSynchronized(cores);
+    measureConcurrent(cores);
+    for (int threads = 1; threads <= cores * 2; threads *= 2) {
+      double locked = 0;
+      double concurrent = 0;
+      for (int round = 0; round < ROUNDS; round++) {
+        locked = Math.max(locked, measureSynchronized(threads));
+        concurrent = Math.max(concurrent, measureConcurrent(threads));
+      }
+      System.out.printf("%8d %24.2f %28.2f%n", threads, locked, concurrent);
+    }
+  }
+
+  private static double measureSynchronized(int threads) throws Exception {
+    Wallet wallet = newWallet();
+    long started = System.nanoTime();
+    run(
+        threads,
+        (sum, category) -> {
+          synchronized (wallet) {
+            wallet.addExpenseTransaction(sum, category, DATE);
+          }
+        });
+    return OPERATIONS * 1e3 / (System.nanoTime() - started);
+  }
+
+  private static double measureConcurrent(int threads) throws Exception {
+    ConcurrentWallet wallet = new ConcurrentWallet(newWallet());
+    long started = System.nanoTime();
+    run(threads, (sum, category) -> wallet.addExpenseTransaction(sum, category, DATE));
+    wallet.flush();
+    return OPERATIONS * 1e3 / (System.nanoTime() - started);
+  }
+
+  private static Wallet newWallet() {
+    Wallet wallet = new Wallet();
+    for (String category : CATEGORIES) wallet.addCategory(category);
+    return wallet;
+  }
+
+  private static void run(int threads, Writer writer) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> results = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      results.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = first; i < OPERATIONS; i += threads) {
+                  writer.addExpense(1 + (i & 7), CATEGORIES[i & (CATEGORIES.length - 1)]);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> result : results) result.get();
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,231 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+// Генератор синтетических данных для нагрузочного прогона CLI: регистрирует пользователей,
+// сохраняет их кошельки (data/<login>.wallet.json) и пишет сценарий команд для пакетного режима
+// (data/load-script.txt), который прогоняет CliLoadHarness. Данные воспроизводимы при том же зерне.
+//
+// Категории выбираются по закону Ципфа: несколько категорий собирают большую часть операций, как
+// в настоящих выписках. Суммы — равномерные или логнормальные (много мелких покупок и редкие
+// крупные) со средним finflow.gen.sum.
+//
+//   gradle generateWallets [-Dfinflow.gen.users=10] [-Dfinflow.gen.categories=20]
+//       [-Dfinflow.gen.transactions=100000] [-Dfinflow.gen.commands=1000]
+//       [-Dfinflow.gen.distribution=lognormal|uniform] [-Dfinflow.gen.sum=1000]
+//       [-Dfinflow.gen.days=365] [-Dfinflow.gen.seed=42] [-Dfinflow.load.dir=data]
+public class WalletGenerator {
+  static final String PASSWORD = "load-password";
+  static final String SCRIPT_FILE = "load-script.txt";
+  static final String INCOME_CATEGORY = "Зарплата";
+
+  private static final String[] CATEGORY_NAMES = {
+    "Еда", "Транспорт", "Дом", "Связь", "Здоровье", "Кафе", "Одежда", "Развлечения", "Подарки"
+  };
+  // Доля доходов среди операций и команд
+  private static final double INCOME_SHARE = 0.1;
+  // Разброс логнормального распределения: медиана примерно вдвое меньше среднего
+  private static final double LOGNORMAL_SIGMA = 1.2;
+  // Суммы в целых единицах, как их вводит пользователь; в кошелёк они попадают в копейках
+  private static final int MAX_SUM = 100_000;
+  private static final int ROLLING_DAYS = 30;
+
+  public enum Distribution {
+    UNIFORM,
+    LOGNORMAL
+  }
+
+  public record Settings(
+      int users,
+      int categories,
+      int transactions,
+      int commands,
+      Distribution distribution,
+      int meanSum,
+      int days,
+      long seed) {
+    static Settings fromSystemProperties() {
+      return new Settings(
+          Integer.getInteger("finflow.gen.users", 10),
+          Integer.getInteger("finflow.gen.categories", 20),
+          Integer.getInteger("finflow.gen.transactions", 100_000),
+          Integer.getInteger("finflow.gen.commands", 1000),
+          Distribution.valueOf(
+              System.getProperty("finflow.gen.distribution", "lognormal").toUpperCase()),
+          Integer.getInteger("finflow.gen.sum", 1000),
+          Integer.getInteger("finflow.gen.days", 365),
+          Long.getLong("finflow.gen.seed", 42));
+    }
+  }
+
+  private final Settings settings;
+  private final Random random;
+  private final String[] categories;
+  // Накопленные веса категорий расходов для выбора по Ципфу
+  private final double[] weights;
+  private final LocalDate today = LocalDate.now();
+
+  public WalletGenerator(Settings settings) {
+    this.settings = settings;
+    this.random = new Random(settings.seed());
+    categories = new String[settings.categories()];
+    weights = new double[settings.categories()];
+    double total = 0;
+    for (int i = 0; i < categories.length; i++) {
+      categories[i] = categoryName(i);
+      total += 1.0 / (i + 1);
+      weights[i] = total;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    Settings settings = Settings.fromSystemProperties();
+    Path dir = Paths.get(System.getProperty("finflow.load.dir", "data"));
+    long started = System.nanoTime();
+    Path script = new WalletGenerator(settings).generate(dir);
+    System.out.printf(
+        "Пользователей: %d, операций на кошелёк: %d, команд в сценарии: %d (%d мс)%n",
+        settings.users(),
+        settings.transactions(),
+        settings.users() * (settings.commands() + 2),
+        (System.nanoTime() - started) / 1_000_000);
+    System.out.println("Сценарий: " + script);
+  }
+
+  public static String login(int user) {
+    return String.format("load%04d", user);
+  }
+
+  // Создаёт пользователей и их кошельки в dir и возвращает путь к сценарию команд
+  public Path generate(Path dir) throws IOException {
+    FileService fileService =
+        new FileService(dir, CheckpointPolicy.fromSystemProperties(), StorageFormat.JSON);
+    fileService.setJournalEnabled(false);
+    fileService.setOutput(new Output(Writer.nullWriter(), 0));
+    try {
+      for (int i = 0; i < settings.users(); i++) {
+        String login = login(i);
+        fileService.getUserStore().register(login, PASSWORD);
+        User user = new User(login);
+        fill(user.getWallet());
+        fileService.saveCurrentWallet(user);
+      }
+    } finally {
+      fileService.shutdown();
+    }
+
+    Path script = dir.resolve(SCRIPT_FILE);
+    try (BufferedWriter writer = Files.newBufferedWriter(script, StandardCharsets.UTF_8);
+        PrintWriter out = new PrintWriter(writer)) {
+      writeScript(out);
+    }
+    return script;
+  }
+
+  private void fill(Wallet wallet) {
+    wallet.addCategory(INCOME_CATEGORY);
+    // Бюджет — около среднего месячного расхода категории, так что часть бюджетов превышена
+    long monthlyExpenses =
+        (long) settings.transactions() * settings.meanSum() * 30 / Math.max(1, settings.days());
+    for (String category : categories) {
+      wallet.addCategory(category);
+      wallet.saveCategoryBudget(category, Money.ofUnits(budget(monthlyExpenses)));
+    }
+
+    int incomeId = wallet.getCategory(INCOME_CATEGORY).getId();
+    TransactionBatch batch = new TransactionBatch();
+    int firstDay = (int) today.minusDays(settings.days() - 1).toEpochDay();
+    for (int i = 0; i < settings.transactions(); i++) {
+      int day = firstDay + random.nextInt(settings.days());
+      if (random.nextDouble() < INCOME_SHARE) {
+        // Доходы реже и крупнее: в сумме они покрывают расходы
+        batch.add(Money.ofUnits(sum() * 9), incomeId, TransactionType.INCOME, day);
+      } else {
+        int categoryId = wallet.getCategory(nextCategory()).getId();
+        batch.add(Money.ofUnits(sum()), categoryId, TransactionType.EXPENSE, day);
+      }
+      if (batch.isFull()) {
+        wallet.addTransactions(batch);
+        batch.clear();
+      }
+    }
+    wallet.addTransactions(batch);
+  }
+
+  // Сессия каждого пользователя: вход, смесь команд как у живого пользователя, выход
+  private void writeScript(PrintWriter out) {
+    out.println("# Сгенерировано WalletGenerator: " + settings);
+    for (int i = 0; i < settings.users(); i++) {
+      out.println("login " + login(i) + " " + PASSWORD);
+      for (int c = 0; c < settings.commands(); c++) out.println(nextCommand());
+      out.println("logout");
+    }
+  }
+
+  private String nextCommand() {
+    int roll = random.nextInt(100);
+    if (roll < 60) return "addexp " + quote(nextCategory()) + " " + sum() + " " + nextDate();
+    if (roll < 70) return "addinc " + quote(INCOME_CATEGORY) + " " + sum() * 9 + " " + nextDate();
+    if (roll < 80) return "stats";
+    if (roll < 85) return "stats cat";
+    if (roll < 90) {
+      LocalDate from = nextDate();
+      return "stats range " + from + " " + from.plusDays(random.nextInt(ROLLING_DAYS * 3));
+    }
+    if (roll < 95) return "stats last " + (1 + random.nextInt(ROLLING_DAYS * 3));
+    if (roll < 98) return "setbudget " + quote(nextCategory()) + " " + sum() * ROLLING_DAYS;
+    return "stats cats " + quote(nextCategory()) + "," + quote(nextCategory());
+  }
+
+  private String nextCategory() {
+    double point = random.nextDouble() * weights[weights.length - 1];
+    int low = 0;
+    int high = weights.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (weights[mid] < point) low = mid + 1;
+      else high = mid;
+    }
+    return categories[low];
+  }
+
+  private LocalDate nextDate() {
+    return today.minusDays(random.nextInt(settings.days()));
+  }
+
+  private int sum() {
+    double value =
+        switch (settings.distribution()) {
+          case UNIFORM -> 1 + random.nextDouble() * (2.0 * settings.meanSum() - 1);
+          // Среднее логнормального распределения: exp(mu + sigma^2 / 2)
+          case LOGNORMAL ->
+              Math.exp(
+                  Math.log(settings.meanSum())
+                      - LOGNORMAL_SIGMA * LOGNORMAL_SIGMA / 2
+                      + LOGNORMAL_SIGMA * random.nextGaussian());
+        };
+    return (int) Math.max(1, Math.min(MAX_SUM, Math.round(value)));
+  }
+
+  private int budget(long monthlyExpenses) {
+    long perCategory = monthlyExpenses / Math.max(1, categories.length);
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, perCategory));
+  }
+
+  private static String categoryName(int index) {
+    return index < CATEGORY_NAMES.length
+        ? CATEGORY_NAMES[index]
+        : CATEGORY_NAMES[index % CATEGORY_NAMES.length] + " " + (index / CATEGORY_NAMES.length);
+  }
+
+  private static String quote(String value) {
+    return value.contains(" ") ? "\"" + value + "\"" : value;
+  }
+}
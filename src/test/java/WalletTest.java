@@ -1,7 +1,13 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -48,6 +54,13 @@ public class WalletTest {
   private static final int EXPECTED_REMAINING_BUDGET_UTILITIES = -500;
   private static final int EXPECTED_REMAINING_BUDGET_X = 5;
 
+  private static final LocalDate DATE_TODAY = LocalDate.of(2024, 3, 15);
+  private static final LocalDate DATE_LAST_MONTH = LocalDate.of(2024, 2, 29);
+  private static final LocalDate DATE_NEXT_MONTH = LocalDate.of(2024, 4, 1);
+  private static final int RANGE_TRANSACTIONS = 500;
+  private static final int PARALLEL_TRANSACTIONS = 100_000;
+  private static final int PARALLEL_THREADS = 4;
+
   @BeforeEach
   void setUp() {
     wallet = new Wallet();
@@ -170,5 +183,155 @@ public class WalletTest {
     assertEquals(BUDGET_X, target.getBudgetByCategory(CATEGORY_X));
     assertEquals(EXPENSE_X, target.getExpensesByCategory(CATEGORY_X));
     assertEquals(EXPECTED_REMAINING_BUDGET_X, target.getRemainingBudget(CATEGORY_X));
+
+    // Копия не видит бюджетов, заданных после копирования
+    w2.saveCategoryBudget(CATEGORY_X, BUDGET_FOOD);
+    assertEquals(BUDGET_X, target.getBudgetByCategory(CATEGORY_X));
+  }
+
+  @Test
+  void categorySummariesForAllCategories() {
+    List<CategorySummary> summaries = wallet.getCategorySummaries();
+    assertEquals(wallet.getAllCategories().size(), summaries.size());
+
+    CategorySummary food = summaries.get(0);
+    assertEquals(CATEGORY_FOOD, food.name());
+    assertEquals(0, food.income());
+    assertEquals(EXPECTED_EXPENSE_FOOD, food.expense());
+    assertEquals(BUDGET_FOOD, food.budget());
+    assertEquals(EXPECTED_REMAINING_BUDGET_FOOD, food.remaining());
+  }
+
+  @Test
+  void categorySummariesForSelectedCategories() {
+    List<CategorySummary> summaries =
+        wallet.getCategorySummaries(List.of(CATEGORY_SALARY, CATEGORY_UTILITIES, CATEGORY_NEW));
+    assertEquals(2, summaries.size());
+
+    assertEquals(CATEGORY_SALARY, summaries.get(0).name());
+    assertEquals(EXPECTED_INCOME_SALARY, summaries.get(0).income());
+    assertEquals(CATEGORY_UTILITIES, summaries.get(1).name());
+    assertEquals(EXPECTED_REMAINING_BUDGET_UTILITIES, summaries.get(1).remaining());
+  }
+
+  @Test
+  void remainingBudgetCountsOnlyCurrentMonth() {
+    Wallet w = new Wallet();
+    w.setClock(fixedClock(DATE_TODAY));
+    w.addCategory(CATEGORY_FOOD);
+    w.saveCategoryBudget(CATEGORY_FOOD, BUDGET_FOOD);
+    w.addExpenseTransaction(EXPENSE_FOOD_1, CATEGORY_FOOD, DATE_LAST_MONTH);
+    w.addExpenseTransaction(EXPENSE_FOOD_2, CATEGORY_FOOD);
+
+    assertEquals(EXPECTED_EXPENSE_FOOD, w.getExpensesByCategory(CATEGORY_FOOD));
+    assertEquals(
+        EXPENSE_FOOD_1, w.getExpensesByCategory(CATEGORY_FOOD, YearMonth.from(DATE_LAST_MONTH)));
+    assertEquals(BUDGET_FOOD - EXPENSE_FOOD_2, w.getRemainingBudget(CATEGORY_FOOD));
+    assertEquals(EXPENSE_FOOD_2, w.getCategorySummaries().get(0).monthExpense());
+
+    // С началом следующего месяца бюджет снова доступен целиком
+    w.setClock(fixedClock(DATE_NEXT_MONTH));
+    assertEquals(BUDGET_FOOD, w.getRemainingBudget(CATEGORY_FOOD));
+  }
+
+  @Test
+  void rangeQueriesMatchFullScan() {
+    Wallet w = new Wallet();
+    w.addCategory(CATEGORY_FOOD);
+    w.addCategory(CATEGORY_SALARY);
+    // Даты идут не по порядку и далеко друг от друга, чтобы индекс расширялся в обе стороны
+    for (int i = 0; i < RANGE_TRANSACTIONS; i++) {
+      LocalDate date = DATE_TODAY.plusDays((i * 37L) % 400 - 200);
+      w.addExpenseTransaction(EXPENSE_FOOD_1 + i, CATEGORY_FOOD, date);
+      if (i % 3 == 0) w.addIncomeTransaction(INCOME_BONUS, CATEGORY_SALARY, date);
+    }
+
+    LocalDate from = DATE_LAST_MONTH.minusDays(45);
+    LocalDate to = DATE_NEXT_MONTH;
+    long expected = 0;
+    for (int i = 0; i < w.getTransactionCount(); i++) {
+      Transaction t = w.getTransaction(i);
+      boolean inRange = !t.date().isBefore(from) && !t.date().isAfter(to);
+      if (inRange && t.type() == TransactionType.EXPENSE) expected += t.sum();
+    }
+
+    assertEquals(expected, w.getExpensesByCategory(CATEGORY_FOOD, from, to));
+    assertEquals(expected, w.getTotalExpenses(from, to));
+    assertEquals(0, w.getExpensesByCategory(CATEGORY_SALARY, from, to));
+    assertEquals(w.getTotalIncomes(), w.getTotalIncomes(from.minusYears(1), to.plusYears(1)));
+
+    // Индекс поддерживается и для операций, добавленных после первого запроса
+    w.addExpenseTransaction(EXPENSE_FOOD_2, CATEGORY_FOOD, from);
+    assertEquals(expected + EXPENSE_FOOD_2, w.getExpensesByCategory(CATEGORY_FOOD, from, to));
+  }
+
+  @Test
+  void parallelAggregationMatchesSequentialGetters() {
+    Wallet w = new Wallet();
+    String[] names = {CATEGORY_FOOD, CATEGORY_TAXI, CATEGORY_SALARY, CATEGORY_BONUS};
+    for (String name : names) w.addCategory(name);
+    TransactionBatch batch = new TransactionBatch();
+    for (int i = 0; i < PARALLEL_TRANSACTIONS; i++) {
+      int category = i % names.length;
+      TransactionType type = category < 2 ? TransactionType.EXPENSE : TransactionType.INCOME;
+      batch.add(EXPENSE_X + i % 1000, category, type, (int) DATE_TODAY.toEpochDay() - i % 400);
+      if (batch.isFull()) {
+        w.addTransactions(batch);
+        batch.clear();
+      }
+    }
+    w.addTransactions(batch);
+
+    ForkJoinPool pool = new ForkJoinPool(PARALLEL_THREADS);
+    try {
+      ParallelAggregator parallel = new ParallelAggregator(pool, 1);
+      CategoryTotals all = w.aggregate(TransactionFilter.ALL, parallel);
+      assertEquals(w.getTotalIncomes(), all.getTotalIncomes());
+      assertEquals(w.getTotalExpenses(), all.getTotalExpenses());
+      for (String name : names) {
+        int id = w.getCategory(name).getId();
+        assertEquals(w.getIncomesByCategory(name), all.getIncomes(id));
+        assertEquals(w.getExpensesByCategory(name), all.getExpenses(id));
+      }
+
+      int from = (int) DATE_LAST_MONTH.toEpochDay();
+      int to = (int) DATE_TODAY.toEpochDay();
+      CategoryTotals range =
+          w.aggregate((sum, categoryId, type, day) -> day >= from && day <= to, parallel);
+      assertEquals(
+          w.getExpensesByCategory(CATEGORY_TAXI, DATE_LAST_MONTH, DATE_TODAY),
+          range.getExpenses(w.getCategory(CATEGORY_TAXI).getId()));
+      assertEquals(w.getTotalIncomes(DATE_LAST_MONTH, DATE_TODAY), range.getTotalIncomes());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void overflowingAggregationThrowsInParallelAsSequentially() {
+    // Кошелёк такого не примет, но хранилище может прийти из повреждённого файла
+    TransactionStore store = new TransactionStore();
+    long sum = Long.MAX_VALUE / (PARALLEL_TRANSACTIONS - 1);
+    for (int i = 0; i < PARALLEL_TRANSACTIONS; i++) {
+      store.add(sum, Currency.BASE, 0, TransactionType.EXPENSE, (int) DATE_TODAY.toEpochDay());
+    }
+
+    ParallelAggregator sequential =
+        new ParallelAggregator(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+    ForkJoinPool pool = new ForkJoinPool(PARALLEL_THREADS);
+    try {
+      ParallelAggregator parallel = new ParallelAggregator(pool, 1);
+      assertThrows(
+          ArithmeticException.class, () -> parallel.aggregate(store, 1, TransactionFilter.ALL));
+      assertThrows(
+          ArithmeticException.class,
+          () -> sequential.aggregate(store, 1, TransactionFilter.ALL));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static Clock fixedClock(LocalDate date) {
+    return Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
   }
 }